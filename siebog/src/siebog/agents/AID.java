@@ -38,6 +38,9 @@ public final class AID implements Serializable {
 	private final String host;
 	private final String str; // string representation
 	private final AgentClass agClass;
+	// compact cluster-wide identifier, see AIDTable
+	private transient volatile long id;
+	private transient String json;
 	public static final String HOST_NAME = "xjaf"; // TODO Get cluster/host name.
 	public static final AID EXTERNAL_CLIENT = new AID("", "", new AgentClass("", ""));
 
@@ -91,12 +94,14 @@ public final class AID implements Serializable {
 			return false;
 		if (getClass() != obj.getClass())
 			return false;
-		AID other = (AID) obj;
-		return str.equals(other.str);
+		// the id is only a compact encoding, so it doesn't take part in the equality
+		return str.equals(((AID) obj).str);
 	}
 
 	@Override
 	public String toString() {
+		if (json != null)
+			return json;
 		JSONObject obj = new JSONObject();
 		try {
 			obj.put("name", name);
@@ -107,7 +112,8 @@ public final class AID implements Serializable {
 			obj.put("str", str);
 		} catch (JSONException ex) {
 		}
-		return obj.toString();
+		json = obj.toString();
+		return json;
 	}
 
 	public String getName() {
@@ -125,4 +131,12 @@ public final class AID implements Serializable {
 	public String getStr() {
 		return str;
 	}
+
+	public long getId() {
+		return id;
+	}
+
+	void setId(long id) {
+		this.id = id;
+	}
 }
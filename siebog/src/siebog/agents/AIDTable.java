@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.infinispan.Cache;
+import siebog.utils.GlobalCache;
+import siebog.utils.NearCache;
+
+/**
+ * Cluster-wide interning table for the AIDs of running agents. Each registered AID is assigned a
+ * compact numeric identifier, which is used instead of the full descriptor inside the runtime
+ * (e.g. on the wire), while the full AID is resolved lazily from a node-local table, and only on
+ * a miss from the clustered one.
+ * <p>
+ * Identifiers are handed out to each node in blocks, so that a node needs to contact the cluster
+ * only once per {@link #BLOCK_SIZE} registrations. An identifier is never re-used; when an agent
+ * stops, its mapping is kept in the cluster for {@link #GRACE_PERIOD} milliseconds, so that
+ * messages which are still in flight can be resolved.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class AIDTable {
+	public static final long NO_ID = 0;
+	private static final String NEXT_BLOCK = "#next-block";
+	private static final long BLOCK_SIZE = 1024;
+	private static final long GRACE_PERIOD = 5 * 60 * 1000;
+	private static final int KNOWN_SIZE = Integer.getInteger("siebog.aidtable.size", 10000);
+	// no longer than the L1 lifespan of the aid-ids cache, so that a missed invalidation
+	// can't keep a stale entry around for longer than the cache itself would
+	private static final long KNOWN_TTL = Long.getLong("siebog.aidtable.knownttl", 60000);
+	// how long to remember that an AID has no identifier, e.g. for external clients
+	private static final long MISS_TTL = Long.getLong("siebog.aidtable.missttl", 5000);
+	private static volatile AIDTable instance;
+	// keys are either strings (AID.getStr() -> id) or longs (id -> AID)
+	private final Cache<Object, Object> cache;
+	// agents registered through this node
+	private final ConcurrentMap<String, AID> byStr = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, AID> byId = new ConcurrentHashMap<>();
+	// recently used AIDs of agents registered elsewhere
+	private final NearCache<Object, AID> known;
+	// AIDs without an identifier, invalidated as soon as one is registered
+	private final NearCache<Object, Boolean> unknown;
+	private long nextId;
+	private long blockEnd;
+
+	public static AIDTable get() {
+		if (instance == null) {
+			synchronized (AIDTable.class) {
+				if (instance == null)
+					instance = new AIDTable();
+			}
+		}
+		return instance;
+	}
+
+	@SuppressWarnings("unchecked")
+	private AIDTable() {
+		cache = (Cache<Object, Object>) GlobalCache.get().getCache(GlobalCache.AID_IDS);
+		known = new NearCache<>(KNOWN_SIZE, KNOWN_TTL);
+		GlobalCache.get().addListener(cache, known);
+		unknown = new NearCache<>(KNOWN_SIZE, MISS_TTL);
+		GlobalCache.get().addListener(cache, unknown);
+	}
+
+	/**
+	 * Assigns an identifier to the AID of a newly started agent, or re-uses the existing one if
+	 * the agent is being restarted.
+	 * 
+	 * @return The canonical (interned) instance, with the identifier set.
+	 */
+	public AID register(AID aid) {
+		Long id = (Long) cache.get(aid.getStr());
+		if (id == null) {
+			id = allocate();
+			Long existing = (Long) cache.putIfAbsent(aid.getStr(), id);
+			if (existing != null)
+				id = existing;
+		} else {
+			// refresh the mapping, in case it is expiring after a previous stop
+			cache.put(aid.getStr(), id);
+		}
+		cache.put(id, aid);
+		aid.setId(id);
+		AID canon = byStr.putIfAbsent(aid.getStr(), aid);
+		if (canon == null)
+			canon = aid;
+		byId.put(id, canon);
+		return canon;
+	}
+
+	/**
+	 * Removes the AID from the node-local table and schedules its removal from the cluster.
+	 */
+	public void release(AID aid) {
+		AID canon = byStr.remove(aid.getStr());
+		if (canon != null)
+			byId.remove(canon.getId());
+		long id = idOf(aid);
+		if (id != NO_ID) {
+			cache.put(aid.getStr(), id, GRACE_PERIOD, TimeUnit.MILLISECONDS);
+			cache.put(id, aid, GRACE_PERIOD, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return The identifier of the AID, or {@link #NO_ID} if no running agent has this AID.
+	 */
+	public long idOf(AID aid) {
+		long id = aid.getId();
+		if (id != NO_ID)
+			return id;
+		AID canon = canonical(aid);
+		if (canon != aid)
+			return canon.getId();
+		if (unknown.get(aid.getStr()) != null)
+			return NO_ID;
+		long stamp = unknown.stamp();
+		Long stored = (Long) cache.get(aid.getStr());
+		if (stored == null) {
+			unknown.put(aid.getStr(), Boolean.TRUE, stamp);
+			return NO_ID;
+		}
+		aid.setId(stored);
+		remember(aid);
+		return stored;
+	}
+
+	/**
+	 * @return The full AID with the given identifier, or null if no such AID is known.
+	 */
+	public AID resolve(long id) {
+		AID aid = byId.get(id);
+		if (aid == null) {
+			aid = known.get(id);
+			if (aid == null) {
+				aid = (AID) cache.get(id);
+				if (aid != null) {
+					aid.setId(id);
+					remember(aid);
+				}
+			}
+		}
+		return aid;
+	}
+
+	/**
+	 * @return The canonical instance of the AID if it is known on this node, or the AID itself.
+	 */
+	public AID canonical(AID aid) {
+		AID canon = byStr.get(aid.getStr());
+		if (canon == null) {
+			canon = known.get(aid.getStr());
+			if (canon == null)
+				canon = aid;
+		}
+		return canon;
+	}
+
+	private void remember(AID aid) {
+		known.put(aid.getStr(), aid);
+		known.put(aid.getId(), aid);
+	}
+
+	private synchronized long allocate() {
+		if (nextId == NO_ID || nextId >= blockEnd) {
+			nextId = allocateBlock();
+			blockEnd = nextId + BLOCK_SIZE;
+		}
+		return nextId++;
+	}
+
+	private long allocateBlock() {
+		while (true) {
+			Long curr = (Long) cache.putIfAbsent(NEXT_BLOCK, BLOCK_SIZE + 1);
+			if (curr == null)
+				return 1;
+			if (cache.replace(NEXT_BLOCK, curr, curr + BLOCK_SIZE))
+				return curr;
+		}
+	}
+}
@@ -22,6 +22,7 @@ package siebog.agents;
 
 import java.util.HashSet;
 import java.util.Set;
+import siebog.agents.lite.LiteAgent;
 import siebog.utils.ObjectFactory;
 
 /**
@@ -57,6 +58,18 @@ public class AgentBuilder {
 		return this;
 	}
 
+	/**
+	 * A lightweight agent, see {@link LiteAgent}. The module name is ignored.
+	 */
+	public AgentBuilder lite(Class<? extends LiteAgent> liteClass) {
+		if (agClass != null) {
+			throw new IllegalStateException("Agent class already set.");
+		}
+		agClass = LiteAgent.agentClass(liteClass);
+		radigost = false;
+		return this;
+	}
+
 	public AgentBuilder js(String jsFileName) {
 		if (agClass != null) {
 			throw new IllegalStateException("Agent class already set.");
@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.inject.Inject;
+import javax.naming.Binding;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.event.EventContext;
+import javax.naming.event.NamespaceChangeListener;
+import javax.naming.event.NamingEvent;
+import javax.naming.event.NamingExceptionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.utils.ContextFactory;
+
+/**
+ * In-memory registry of deployed agent classes. The JNDI tree is walked only once, after which
+ * the registry is updated incrementally, as agent modules are deployed and undeployed. Each
+ * change produces a new immutable {@link Snapshot}, identified by a tag which depends only on its
+ * contents, so that clients can skip results they have already seen.
+ * <p>
+ * If the naming context does not support event notifications, or the initial walk fails, the
+ * deployed modules and their agent classes are re-checked at most every {@link #REFRESH_PERIOD}
+ * milliseconds. This also catches modules redeployed under the same name.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@Startup
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AgentClassRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(AgentClassRegistry.class);
+	private static final String EXP = "java:jboss/exported";
+	public static final long REFRESH_PERIOD = Long.getLong("siebog.agentclasses.refresh", 10000);
+	@Inject
+	private JndiTreeParser parser;
+	private volatile EventContext eventContext;
+	private NamespaceChangeListener listener;
+	private final Map<String, List<AgentClass>> modules = new TreeMap<>();
+	private long version;
+	private volatile Snapshot snapshot;
+	private volatile long lastCheck;
+	// set if the initial walk has failed, so that the events alone are not enough
+	private volatile boolean polling;
+
+	/**
+	 * Immutable view of the registered agent classes.
+	 */
+	public static final class Snapshot {
+		private final long version;
+		private final String tag;
+		private final List<AgentClass> classes;
+
+		private Snapshot(long version, List<AgentClass> classes) {
+			this.version = version;
+			this.classes = Collections.unmodifiableList(classes);
+			this.tag = Integer.toHexString(classes.hashCode()) + "-" + classes.size();
+		}
+
+		/**
+		 * Node-local version, increased on each change.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Content-based tag, the same on all nodes with the same set of agent classes.
+		 */
+		public String getTag() {
+			return tag;
+		}
+
+		public List<AgentClass> getClasses() {
+			return classes;
+		}
+	}
+
+	@PostConstruct
+	public void postConstruct() {
+		listener = new NamespaceChangeListener() {
+			@Override
+			public void objectAdded(NamingEvent evt) {
+				bindingAdded(evt.getNewBinding());
+			}
+
+			@Override
+			public void objectRemoved(NamingEvent evt) {
+				bindingRemoved(evt.getOldBinding());
+			}
+
+			@Override
+			public void objectRenamed(NamingEvent evt) {
+				bindingRemoved(evt.getOldBinding());
+				bindingAdded(evt.getNewBinding());
+			}
+
+			@Override
+			public void namingExceptionThrown(NamingExceptionEvent evt) {
+				LOG.warn("Naming listener failed, switching to periodic checks.", evt.getException());
+				eventContext = null;
+			}
+		};
+		try {
+			Context ctx = ContextFactory.get();
+			if (ctx instanceof EventContext) {
+				eventContext = (EventContext) ctx;
+				eventContext.addNamingListener(EXP, EventContext.SUBTREE_SCOPE, listener);
+			} else {
+				Object exp = ctx.lookup(EXP);
+				if (exp instanceof EventContext) {
+					eventContext = (EventContext) exp;
+					eventContext.addNamingListener("", EventContext.SUBTREE_SCOPE, listener);
+				}
+			}
+		} catch (NamingException | UnsupportedOperationException ex) {
+			LOG.info("Naming events not supported, agent classes will be checked periodically.");
+			eventContext = null;
+		}
+		try {
+			rebuild();
+		} catch (IllegalStateException ex) {
+			LOG.error("Cannot read the deployed agent classes, will retry periodically.", ex);
+			polling = true;
+			lastCheck = 0;
+			publish();
+		}
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		if (eventContext != null) {
+			try {
+				eventContext.removeNamingListener(listener);
+			} catch (NamingException ex) {
+			}
+		}
+	}
+
+	public Snapshot getSnapshot() {
+		if ((eventContext == null || polling)
+				&& System.currentTimeMillis() - lastCheck > REFRESH_PERIOD)
+			checkModules();
+		return snapshot;
+	}
+
+	public List<AgentClass> getAgentClasses() {
+		return getSnapshot().getClasses();
+	}
+
+	/**
+	 * Discards the current contents and walks the whole JNDI tree again.
+	 */
+	public synchronized void rebuild() {
+		modules.clear();
+		try {
+			for (String module : parser.listModules())
+				modules.put(module, sorted(parser.parseModule(module)));
+		} catch (NamingException ex) {
+			throw new IllegalStateException(ex);
+		}
+		lastCheck = System.currentTimeMillis();
+		publish();
+	}
+
+	private synchronized void checkModules() {
+		if (System.currentTimeMillis() - lastCheck <= REFRESH_PERIOD)
+			return;
+		try {
+			Set<String> current = new HashSet<>(parser.listModules());
+			boolean changed = modules.keySet().retainAll(current);
+			for (String module : current) {
+				// a module can be redeployed under the same name, with different agents
+				List<AgentClass> classes = sorted(parser.parseModule(module));
+				if (!classes.equals(modules.get(module))) {
+					modules.put(module, classes);
+					changed = true;
+				}
+			}
+			if (changed)
+				publish();
+			polling = false;
+		} catch (NamingException ex) {
+			LOG.warn("Cannot check the deployed modules.", ex);
+		}
+		lastCheck = System.currentTimeMillis();
+	}
+
+	private synchronized void bindingAdded(Binding binding) {
+		if (binding == null)
+			return;
+		String name = binding.getName();
+		if (name.indexOf('/') < 0) {
+			// the module context itself, its agents are (usually) bound afterwards
+			if (!modules.containsKey(name)) {
+				try {
+					modules.put(name, sorted(parser.parseModule(name)));
+				} catch (NamingException ex) {
+					modules.put(name, new ArrayList<AgentClass>());
+				}
+				publish();
+			}
+			return;
+		}
+		AgentClass agClass = parser.parseBinding(name);
+		if (agClass != null) {
+			List<AgentClass> list = modules.get(agClass.getModule());
+			list = list == null ? new ArrayList<AgentClass>() : new ArrayList<>(list);
+			if (!list.contains(agClass)) {
+				list.add(agClass);
+				modules.put(agClass.getModule(), sorted(list));
+				publish();
+			}
+		}
+	}
+
+	private synchronized void bindingRemoved(Binding binding) {
+		if (binding == null)
+			return;
+		String name = binding.getName();
+		if (name.indexOf('/') < 0) {
+			if (modules.remove(name) != null)
+				publish();
+			return;
+		}
+		AgentClass agClass = parser.parseBinding(name);
+		if (agClass != null) {
+			List<AgentClass> list = modules.get(agClass.getModule());
+			if (list != null && list.contains(agClass)) {
+				list = new ArrayList<>(list);
+				list.remove(agClass);
+				modules.put(agClass.getModule(), list);
+				publish();
+			}
+		}
+	}
+
+	private void publish() {
+		List<AgentClass> all = new ArrayList<>();
+		for (List<AgentClass> list : modules.values())
+			all.addAll(list);
+		snapshot = new Snapshot(++version, all);
+		LOG.debug("Agent classes changed, version {}, {} classes.", version, all.size());
+	}
+
+	private static List<AgentClass> sorted(List<AgentClass> list) {
+		Collections.sort(list, new Comparator<AgentClass>() {
+			@Override
+			public int compare(AgentClass o1, AgentClass o2) {
+				return o1.getEjbName().compareTo(o2.getEjbName());
+			}
+		});
+		return list;
+	}
+}
@@ -22,6 +22,8 @@ package siebog.agents;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
+import siebog.utils.PoolStats;
 
 /**
  * Remote interface of the agent manager.
@@ -49,9 +51,37 @@ public interface AgentManager extends Serializable {
 
 	List<AID> getRunningAgents();
 
+	/**
+	 * Returns the changes in the set of running agents since the given position, or a snapshot
+	 * followed by the newer changes, if the position is empty or too old. The position is taken
+	 * from the previous result, see {@link RegistryChanges#getPosition()}.
+	 */
+	RegistryChanges getRunningAgentsChanges(String since, int max);
+
 	AID getAIDByRuntimeName(String runtimeName);
 
 	List<AgentClass> getAvailableAgentClasses();
 
 	void pingAgent(AID aid);
+
+	ReplicationStats getReplicationStats(AID aid);
+
+	/**
+	 * Returns the metrics of the agent, collected by the node executing it, or null if the agent
+	 * hasn't processed any messages yet. The state size is refreshed with the agent's next message.
+	 */
+	AgentStats getAgentStats(AID aid);
+
+	/**
+	 * Returns the top n agents in the cluster, ordered by total handling time ("time"), CPU time
+	 * ("cpu"), number of processed messages ("messages"), current message rate ("rate"), or
+	 * number of errors ("errors").
+	 */
+	List<AgentStats> getHottestAgents(int n, String by);
+
+	/**
+	 * Returns the metrics of the task pools of each node in the cluster, keyed by the node's
+	 * address. Pools which haven't been used on a node are not included.
+	 */
+	Map<String, List<PoolStats>> getPoolStats();
 }
@@ -21,14 +21,21 @@
 package siebog.agents;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.ejb.LocalBean;
 import javax.ejb.Remote;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.naming.NamingException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
@@ -38,14 +45,30 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.remoting.transport.Address;
 import org.jboss.resteasy.annotations.Form;
 
+import siebog.agents.lite.LiteAgent;
+import siebog.agents.lite.LiteAgentContainer;
+import siebog.utils.FailureDetector;
 import siebog.utils.GlobalCache;
 import siebog.utils.LoggerUtil;
+import siebog.utils.NearCache;
 import siebog.utils.ObjectFactory;
+import siebog.utils.PoolStats;
 import siebog.utils.LoggerUtil.SocketMessageType;
 
 /**
@@ -65,8 +88,11 @@ public class AgentManagerBean implements AgentManager {
 	private static final long serialVersionUID = 1L;
 	//private static final Logger LOG = LoggerFactory.getLogger(AgentManagerBean.class);
 	private Cache<AID, Agent> agents;
+	private NearCache<AID, Agent> nearAgents;
 	@Inject
-	private JndiTreeParser jndiTreeParser;
+	private AgentClassRegistry classRegistry;
+	@Inject
+	private LiteAgentContainer liteAgents;
 
 	@Override
 	public void startServerAgent(AID aid, AgentInitArgs args) {
@@ -75,6 +101,11 @@ public class AgentManagerBean implements AgentManager {
 
 	@Override
 	public void startServerAgent(AID aid, AgentInitArgs args, boolean replace) {
+		if (LiteAgent.isLite(aid)) {
+			// lightweight agents are kept out of the cluster-wide directory
+			liteAgents.start(aid, args, replace);
+			return;
+		}
 		if (getCache().containsKey(aid)) {
 			if (!replace) {
 				throw new IllegalStateException("Agent already running: " + aid);
@@ -110,7 +141,9 @@ public class AgentManagerBean implements AgentManager {
 			@PathParam("name") String name, @Form AgentInitArgs args,
 			@QueryParam("replace") @DefaultValue("true") boolean replace) {
 		String host = AID.HOST_NAME;
-		if (args != null) {
+		if (LiteAgent.isLite(agClass)) {
+			host = liteAgents.getHost();
+		} else if (args != null) {
 			host = args.get("host", AID.HOST_NAME);
 		}
 		AID aid = new AID(name, host, agClass);
@@ -127,9 +160,17 @@ public class AgentManagerBean implements AgentManager {
 	@Path("/running/{aid}")
 	@Override
 	public void stopAgent(@PathParam("aid") AID aid) {
+		if (LiteAgent.isLite(aid)) {
+			liteAgents.stop(aid);
+			return;
+		}
 		Agent agent = getCache().get(aid);
 		if (agent != null) {
 			getCache().remove(aid);
+			getNearCache().invalidate(aid);
+			AIDTable.get().release(aid);
+			RegistryLog.get().append(RegistryEvent.Type.STOPPED, aid);
+			FailureDetector.withdraw(aid);
 			// agent.stop();
 			LoggerUtil.log("Stopped agent: " + aid, true);
 			LoggerUtil.logAgent(aid, SocketMessageType.REMOVE);
@@ -137,22 +178,33 @@ public class AgentManagerBean implements AgentManager {
 		}
 	}
 
-	@GET
-	@Path("/classes")
 	@Override
 	public List<AgentClass> getAvailableAgentClasses() {
-		try {
-			return jndiTreeParser.parse();
-		} catch (NamingException ex) {
-			throw new IllegalStateException(ex);
+		return classRegistry.getAgentClasses();
+	}
+
+	@GET
+	@Path("/classes")
+	public Response getAvailableAgentClasses(@Context Request request) {
+		AgentClassRegistry.Snapshot snapshot = classRegistry.getSnapshot();
+		EntityTag tag = new EntityTag(snapshot.getTag());
+		CacheControl cc = new CacheControl();
+		cc.setNoCache(true);
+		ResponseBuilder builder = request.evaluatePreconditions(tag);
+		if (builder == null) {
+			GenericEntity<List<AgentClass>> entity = new GenericEntity<List<AgentClass>>(
+					snapshot.getClasses()) {
+			};
+			builder = Response.ok(entity);
 		}
+		return builder.tag(tag).cacheControl(cc).build();
 	}
 
 	@GET
 	@Path("/running")
 	@Override
 	public List<AID> getRunningAgents() {
-		Set<AID> set = getCache().keySet();
+		Set<AID> set = getAllKeys();
 		if (set.size() > 0) {
 			try {
 				AID aid = set.iterator().next();
@@ -163,12 +215,22 @@ public class AgentManagerBean implements AgentManager {
 				}
 			} catch (Exception ex) {
 				getCache().clear();
+				getNearCache().clear();
 				return new ArrayList<AID>();
 			}
 		}
 		return new ArrayList<AID>(set);
 	}
 
+	@GET
+	@Path("/running/changes")
+	@Override
+	public RegistryChanges getRunningAgentsChanges(
+			@QueryParam("since") @DefaultValue("") String since,
+			@QueryParam("max") @DefaultValue("256") int max) {
+		return RegistryLog.get().changesSince(since, max);
+	}
+
 	@Override
 	public AID getAIDByRuntimeName(String runtimeName) {
 		// don't throw an exception if not found, because it will be intercepted
@@ -178,16 +240,117 @@ public class AgentManagerBean implements AgentManager {
 	@Override
 	public void pingAgent(AID aid) {
 		try {
-			Agent agent = getCache().get(aid);
+			Agent agent = getAgentReference(aid);
 			agent.ping();
 		} catch (Exception ex) {
 			throw new IllegalArgumentException("Unable to ping the agent.", ex);
 		}
 	}
 
+	@GET
+	@Path("/running/{aid}/replication")
+	@Override
+	public ReplicationStats getReplicationStats(@PathParam("aid") AID aid) {
+		if (LiteAgent.isLite(aid))
+			return new ReplicationStats(); // lightweight agents are not replicated
+		ReplicationStats stats = callOnHost(aid, new ReplicationStatsTask(aid));
+		return stats != null ? stats : new ReplicationStats();
+	}
+
+	@GET
+	@Path("/running/{aid}/stats")
+	@Override
+	public AgentStats getAgentStats(@PathParam("aid") AID aid) {
+		if (LiteAgent.isLite(aid))
+			return liteAgents.getStats(aid);
+		// the metrics are kept by the node executing the agent, so the agent itself isn't called
+		return callOnHost(aid, new AgentStatsTask(aid));
+	}
+
+	/**
+	 * Runs the task on the node executing the agent, or on all nodes if the node is unknown.
+	 * 
+	 * @return The first non-null result.
+	 */
+	private <T> T callOnHost(AID aid, DistributedCallable<AID, Agent, T> task) {
+		if (!getCache().containsKey(aid))
+			throw new IllegalArgumentException("No such agent: " + aid);
+		Address host = FailureDetector.hostOf(aid);
+		DistributedExecutorService des = new DefaultExecutorService(getCache());
+		try {
+			List<Future<T>> futures;
+			if (host != null && getCache().getCacheManager().getMembers().contains(host))
+				futures = Collections.singletonList(des.submit(host, task));
+			else
+				futures = des.submitEverywhere(task);
+			for (Future<T> f : futures) {
+				T result = f.get();
+				if (result != null)
+					return result;
+			}
+			return null;
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to reach the node of agent " + aid, ex);
+		} finally {
+			des.shutdown();
+		}
+	}
+
+	@GET
+	@Path("/running/hottest")
+	@Override
+	public List<AgentStats> getHottestAgents(@QueryParam("n") @DefaultValue("10") int n,
+			@QueryParam("by") @DefaultValue("time") String by) {
+		// validates the ordering before going to the other nodes
+		Comparator<AgentStats> cmp = AgentMetrics.comparator(by);
+		List<AgentStats> result = new ArrayList<>();
+		DistributedExecutorService des = new DefaultExecutorService(getCache());
+		try {
+			List<Future<ArrayList<AgentStats>>> futures = des.submitEverywhere(
+					new HottestAgentsTask(n, by));
+			for (Future<ArrayList<AgentStats>> f : futures)
+				result.addAll(f.get());
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to collect the agent statistics.", ex);
+		} finally {
+			des.shutdown();
+		}
+		Collections.sort(result, cmp);
+		return new ArrayList<>(result.subList(0, Math.min(n, result.size())));
+	}
+
+	@GET
+	@Path("/executor")
+	@Override
+	public Map<String, List<PoolStats>> getPoolStats() {
+		Map<String, List<PoolStats>> result = new TreeMap<>();
+		DistributedExecutorService des = new DefaultExecutorService(getCache());
+		try {
+			List<Future<HashMap<String, ArrayList<PoolStats>>>> futures = des
+					.submitEverywhere(new PoolStatsTask());
+			for (Future<HashMap<String, ArrayList<PoolStats>>> f : futures)
+				result.putAll(f.get());
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to collect the pool statistics.", ex);
+		} finally {
+			des.shutdown();
+		}
+		return result;
+	}
+
 	public Agent getAgentReference(AID aid) {
 		// don't throw an exception here if there's no such agent
-		return getCache().get(aid);
+		if (LiteAgent.isLite(aid))
+			return liteAgents.getReference(aid);
+		NearCache<AID, Agent> near = getNearCache();
+		Agent agent = near.get(aid);
+		if (agent == null) {
+			// a removal notification could arrive between the read and the put
+			long stamp = near.stamp();
+			agent = getCache().get(aid);
+			near.put(aid, agent, stamp);
+		}
+		return agent;
 	}
 
 	private Cache<AID, Agent> getCache() {
@@ -196,6 +359,37 @@ public class AgentManagerBean implements AgentManager {
 		return agents;
 	}
 
+	private NearCache<AID, Agent> getNearCache() {
+		if (nearAgents == null)
+			nearAgents = GlobalCache.get().getRunningAgentsNear();
+		return nearAgents;
+	}
+
+	/**
+	 * In the replicated mode, each node holds all the keys. In the distributed mode, the local
+	 * key set contains only the entries owned by (or L1-cached at) this node, so each node is
+	 * asked for the agents it is the primary owner of.
+	 */
+	private Set<AID> getAllKeys() {
+		Cache<AID, Agent> cache = getCache();
+		if (!GlobalCache.get().isDistributed(cache)) {
+			return cache.keySet();
+		}
+		Set<AID> result = new HashSet<>();
+		DistributedExecutorService des = new DefaultExecutorService(cache);
+		try {
+			List<Future<ArrayList<AID>>> futures = des.submitEverywhere(new RunningAgentsTask());
+			for (Future<ArrayList<AID>> f : futures) {
+				result.addAll(f.get());
+			}
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to collect the list of running agents.", ex);
+		} finally {
+			des.shutdown();
+		}
+		return result;
+	}
+
 	private String getAgentLookup(AgentClass agClass, boolean stateful) {
 		if (stateful)
 			return String.format("ejb:/%s//%s!%s?stateful", agClass.getModule(),
@@ -209,7 +403,9 @@ public class AgentManagerBean implements AgentManager {
 		// the order of the next two statements matters. if we call init first and the agent
 		// sends a message from there, it sometimes happens that the reply arrives before we
 		// register the AID. also some agents might wish to terminate themselves inside init.
+		AIDTable.get().register(aid);
 		getCache().put(aid, agent);
+		RegistryLog.get().append(RegistryEvent.Type.STARTED, aid);
 		agent.init(aid, args);
 	}
 
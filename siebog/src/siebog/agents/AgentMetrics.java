@@ -0,0 +1,302 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local runtime metrics of the agents executing on this node. The hot path only touches
+ * striped counters; rates are aggregated once per {@link #WINDOW} milliseconds, when the window
+ * rolls over.
+ * <p>
+ * Per-class quotas are defined with system properties {@code siebog.quota.<EjbName>.rate}
+ * (messages per second) and {@code siebog.quota.<EjbName>.cpu} (CPU milliseconds per second). An
+ * agent that exceeds its quota in one window is throttled for the next one.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class AgentMetrics {
+	public static final long WINDOW = Long.getLong("siebog.metrics.window", 1000);
+	public static final int HISTOGRAM_BUCKETS = 32;
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private final ConcurrentHashMap<AID, Recorder> recorders = new ConcurrentHashMap<>();
+	private final Map<String, Quota> quotas = new ConcurrentHashMap<>();
+
+	private static class Holder {
+		static final AgentMetrics INSTANCE = new AgentMetrics();
+	}
+
+	public static AgentMetrics get() {
+		return Holder.INSTANCE;
+	}
+
+	private AgentMetrics() {
+	}
+
+	public Recorder of(AID aid) {
+		Recorder r = recorders.get(aid);
+		if (r == null) {
+			r = new Recorder(aid, quotaOf(aid.getAgClass()));
+			Recorder prev = recorders.putIfAbsent(aid, r);
+			if (prev != null)
+				r = prev;
+		}
+		return r;
+	}
+
+	/**
+	 * @return Recorder of the agent, or null if the agent hasn't processed any messages on this
+	 *         node.
+	 */
+	public Recorder find(AID aid) {
+		return recorders.get(aid);
+	}
+
+	public void remove(AID aid) {
+		recorders.remove(aid);
+	}
+
+	/**
+	 * Removes the recorder only if it still belongs to the agent, i.e. it hasn't been replaced.
+	 */
+	public void remove(AID aid, Recorder r) {
+		recorders.remove(aid, r);
+	}
+
+	/**
+	 * Counts a message sent by a local agent.
+	 */
+	public void sent(AID sender, int receivers) {
+		if (sender != null) {
+			Recorder r = recorders.get(sender);
+			if (r != null)
+				r.out.add(receivers);
+		}
+	}
+
+	/**
+	 * @param by One of "time", "cpu", "messages", "rate", or "errors".
+	 */
+	public List<AgentStats> top(int n, String by) {
+		final Comparator<AgentStats> cmp = comparator(by);
+		List<AgentStats> all = new ArrayList<>(recorders.size());
+		for (Recorder r : recorders.values())
+			all.add(r.snapshot());
+		Collections.sort(all, cmp);
+		return new ArrayList<>(all.subList(0, Math.min(n, all.size())));
+	}
+
+	public static Comparator<AgentStats> comparator(String by) {
+		switch (by) {
+		case "time":
+			return new Comparator<AgentStats>() {
+				@Override
+				public int compare(AgentStats a, AgentStats b) {
+					return Long.compare(b.getTotalTimeMicros(), a.getTotalTimeMicros());
+				}
+			};
+		case "cpu":
+			return new Comparator<AgentStats>() {
+				@Override
+				public int compare(AgentStats a, AgentStats b) {
+					return Long.compare(b.getCpuTimeMicros(), a.getCpuTimeMicros());
+				}
+			};
+		case "messages":
+			return new Comparator<AgentStats>() {
+				@Override
+				public int compare(AgentStats a, AgentStats b) {
+					return Long.compare(b.getMessagesIn(), a.getMessagesIn());
+				}
+			};
+		case "rate":
+			return new Comparator<AgentStats>() {
+				@Override
+				public int compare(AgentStats a, AgentStats b) {
+					return Double.compare(b.getMessageRate(), a.getMessageRate());
+				}
+			};
+		case "errors":
+			return new Comparator<AgentStats>() {
+				@Override
+				public int compare(AgentStats a, AgentStats b) {
+					return Long.compare(b.getErrors(), a.getErrors());
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown ordering: " + by);
+		}
+	}
+
+	private Quota quotaOf(AgentClass agClass) {
+		String name = agClass.getEjbName();
+		Quota q = quotas.get(name);
+		if (q == null) {
+			q = new Quota(Long.getLong("siebog.quota." + name + ".rate", 0), Long.getLong(
+					"siebog.quota." + name + ".cpu", 0));
+			quotas.put(name, q);
+		}
+		return q;
+	}
+
+	private static class Quota {
+		final long rate;
+		final long cpuMillis;
+
+		Quota(long rate, long cpuMillis) {
+			this.rate = rate;
+			this.cpuMillis = cpuMillis;
+		}
+	}
+
+	public static class Recorder {
+		private final AID aid;
+		private final Quota quota;
+		private final LongAdder in = new LongAdder();
+		private final LongAdder out = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder time = new LongAdder();
+		private final LongAdder cpu = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+		private final LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+		private volatile int mailboxDepth;
+		// measured by the agent itself, on request
+		private volatile long stateSize = -1;
+		private volatile boolean stateSizeRequested;
+		// aggregated once per window
+		private volatile long windowStart = System.currentTimeMillis();
+		private long windowIn;
+		private long windowCpu;
+		private volatile double rate;
+		private volatile boolean throttled;
+
+		Recorder(AID aid, Quota quota) {
+			this.aid = aid;
+			this.quota = quota;
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+				histogram[i] = new LongAdder();
+		}
+
+		/**
+		 * @return Start of the measurement, to be passed to {@link #handled(long, boolean)}.
+		 */
+		public long start() {
+			return System.nanoTime();
+		}
+
+		/**
+		 * @return Thread CPU time, if there's a CPU quota for the agent's class.
+		 */
+		public long startCpu() {
+			return quota.cpuMillis > 0 ? THREADS.getCurrentThreadCpuTime() : 0;
+		}
+
+		public void handled(long start, long startCpu, boolean error) {
+			long nanos = System.nanoTime() - start;
+			in.increment();
+			if (error)
+				errors.increment();
+			time.add(nanos);
+			if (startCpu > 0)
+				cpu.add(THREADS.getCurrentThreadCpuTime() - startCpu);
+			long m;
+			while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+				;
+			long micros = nanos / 1000;
+			int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+			histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+			roll();
+		}
+
+		public void setMailboxDepth(int depth) {
+			mailboxDepth = depth;
+		}
+
+		/**
+		 * Asks the agent to measure the size of its state while handling its next message, so
+		 * that the measurement doesn't compete with the message processing.
+		 */
+		public void requestStateSize() {
+			stateSizeRequested = true;
+		}
+
+		public boolean isStateSizeRequested() {
+			return stateSizeRequested;
+		}
+
+		public void setStateSize(long size) {
+			stateSize = size;
+			stateSizeRequested = false;
+		}
+
+		/**
+		 * @return Milliseconds until the end of the current window if the agent is over its
+		 *         quota, 0 otherwise.
+		 */
+		public long throttleDelay() {
+			roll();
+			if (!throttled)
+				return 0;
+			return Math.max(1, windowStart + WINDOW - System.currentTimeMillis());
+		}
+
+		public AgentStats snapshot() {
+			roll();
+			long[] hist = new long[HISTOGRAM_BUCKETS];
+			for (int i = 0; i < HISTOGRAM_BUCKETS; i++)
+				hist[i] = histogram[i].sum();
+			AgentStats stats = new AgentStats(aid, System.getProperty("jboss.node.name"), in.sum(),
+					out.sum(), errors.sum(), time.sum() / 1000, max.get() / 1000, cpu.sum() / 1000,
+					hist, rate, mailboxDepth, throttled);
+			stats.setStateSize(stateSize);
+			return stats;
+		}
+
+		private void roll() {
+			long now = System.currentTimeMillis();
+			if (now - windowStart < WINDOW)
+				return;
+			synchronized (this) {
+				long elapsed = now - windowStart;
+				if (elapsed < WINDOW)
+					return;
+				long currIn = in.sum();
+				long currCpu = cpu.sum();
+				rate = (currIn - windowIn) * 1000.0 / elapsed;
+				double cpuPerSec = (currCpu - windowCpu) / 1e6 * 1000.0 / elapsed;
+				throttled = (quota.rate > 0 && rate > quota.rate)
+						|| (quota.cpuMillis > 0 && cpuPerSec > quota.cpuMillis);
+				windowIn = currIn;
+				windowCpu = currCpu;
+				windowStart = now;
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the runtime metrics of a single agent, see {@link AgentMetrics}. Handling times are
+ * in microseconds; the histogram has one bucket per power of two.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class AgentStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private AID aid;
+	private String node;
+	private long messagesIn;
+	private long messagesOut;
+	private long errors;
+	private long totalTimeMicros;
+	private long maxTimeMicros;
+	private long cpuTimeMicros;
+	private long[] histogram;
+	private double messageRate;
+	private int mailboxDepth;
+	private long stateSize = -1;
+	private boolean throttled;
+
+	public AgentStats() {
+	}
+
+	public AgentStats(AID aid, String node, long messagesIn, long messagesOut, long errors,
+			long totalTimeMicros, long maxTimeMicros, long cpuTimeMicros, long[] histogram,
+			double messageRate, int mailboxDepth, boolean throttled) {
+		this.aid = aid;
+		this.node = node;
+		this.messagesIn = messagesIn;
+		this.messagesOut = messagesOut;
+		this.errors = errors;
+		this.totalTimeMicros = totalTimeMicros;
+		this.maxTimeMicros = maxTimeMicros;
+		this.cpuTimeMicros = cpuTimeMicros;
+		this.histogram = histogram;
+		this.messageRate = messageRate;
+		this.mailboxDepth = mailboxDepth;
+		this.throttled = throttled;
+	}
+
+	public AID getAid() {
+		return aid;
+	}
+
+	public String getNode() {
+		return node;
+	}
+
+	public long getMessagesIn() {
+		return messagesIn;
+	}
+
+	public long getMessagesOut() {
+		return messagesOut;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalTimeMicros() {
+		return totalTimeMicros;
+	}
+
+	public long getAvgTimeMicros() {
+		return messagesIn == 0 ? 0 : totalTimeMicros / messagesIn;
+	}
+
+	public long getMaxTimeMicros() {
+		return maxTimeMicros;
+	}
+
+	public long getCpuTimeMicros() {
+		return cpuTimeMicros;
+	}
+
+	public long[] getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * @return Upper bound of the bucket holding the given percentile of handling times.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long total = 0;
+		for (long n : histogram)
+			total += n;
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			seen += histogram[i];
+			if (seen >= rank)
+				return 1L << i;
+		}
+		return 1L << (histogram.length - 1);
+	}
+
+	public double getMessageRate() {
+		return messageRate;
+	}
+
+	public int getMailboxDepth() {
+		return mailboxDepth;
+	}
+
+	/**
+	 * @return Approximate size of the agent's serialized state in bytes, or -1 if not measured.
+	 */
+	public long getStateSize() {
+		return stateSize;
+	}
+
+	public void setStateSize(long stateSize) {
+		this.stateSize = stateSize;
+	}
+
+	public boolean isThrottled() {
+		return throttled;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s@%s[in=%d, out=%d, errors=%d, avg=%dus, p99=%dus, rate=%.1f/s]",
+				aid, node, messagesIn, messagesOut, errors, getAvgTimeMicros(),
+				getPercentileMicros(99), messageRate);
+	}
+}
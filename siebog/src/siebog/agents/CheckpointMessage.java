@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+
+/**
+ * Makes a BSP participant write its {@link Replicated} fields to the checkpoint store, or roll
+ * them back from it, see {@link siebog.interaction.bsp.Checkpoint}. It's delivered with a direct
+ * call of {@link Agent#handleMessage(ACLMessage)}, without going through the message broker, so
+ * the agent is done with it once the call returns.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class CheckpointMessage extends ACLMessage {
+	private static final long serialVersionUID = 1L;
+	public final String key;
+	public final boolean restore;
+
+	private CheckpointMessage(AID aid, String key, boolean restore) {
+		super(Performative.REQUEST);
+		sender = aid;
+		receivers.add(aid);
+		this.key = key;
+		this.restore = restore;
+	}
+
+	public static CheckpointMessage save(AID aid, String key) {
+		return new CheckpointMessage(aid, key, false);
+	}
+
+	public static CheckpointMessage restore(AID aid, String key) {
+		return new CheckpointMessage(aid, key, true);
+	}
+}
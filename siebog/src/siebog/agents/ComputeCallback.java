@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+
+/**
+ * Receives the outcome of a computation offloaded with
+ * {@link XjafAgent#offload(java.util.concurrent.Callable, ComputeCallback)}. The methods are
+ * invoked by the agent itself, so they can freely access its state. Callbacks are kept with the
+ * rest of the agent's state, and so must be serializable.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public interface ComputeCallback<T> extends Serializable {
+	void onComplete(T result);
+
+	void onFailure(Throwable error);
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+
+/**
+ * Carries the outcome of an offloaded computation back to the agent, see
+ * {@link XjafAgent#offload(java.util.concurrent.Callable, ComputeCallback)}. Always delivered
+ * locally, without going through the message broker.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ComputeResultMessage extends ACLMessage {
+	private static final long serialVersionUID = 1L;
+	public final long handle;
+	public final Object result;
+	public final Throwable error;
+
+	public ComputeResultMessage(AID aid, long handle, Object result, Throwable error) {
+		super(error == null ? Performative.INFORM : Performative.FAILURE);
+		sender = aid;
+		receivers.add(aid);
+		this.handle = handle;
+		this.result = result;
+		this.error = error;
+	}
+}
@@ -56,14 +56,38 @@ public class JndiTreeParser {
 
 	public List<AgentClass> parse() throws NamingException {
 		List<AgentClass> result = new ArrayList<>();
-		NamingEnumeration<NameClassPair> moduleList = context.list(EXP);
-		while (moduleList.hasMore()) {
-			String module = moduleList.next().getName();
+		for (String module : listModules())
 			processModule(module, result);
-		}
 		return result;
 	}
 
+	public List<String> listModules() throws NamingException {
+		List<String> result = new ArrayList<>();
+		NamingEnumeration<NameClassPair> moduleList = context.list(EXP);
+		while (moduleList.hasMore())
+			result.add(moduleList.next().getName());
+		return result;
+	}
+
+	public List<AgentClass> parseModule(String module) throws NamingException {
+		List<AgentClass> result = new ArrayList<>();
+		processModule(module, result);
+		return result;
+	}
+
+	/**
+	 * Parses a single binding, relative to the exported JNDI context, e.g.
+	 * "module/EjbName!siebog.agents.Agent".
+	 * 
+	 * @return The corresponding agent class, or null if the binding does not represent an agent.
+	 */
+	public AgentClass parseBinding(String name) {
+		int n = name.indexOf('/');
+		if (n <= 0 || name.indexOf('/', n + 1) >= 0)
+			return null;
+		return parseEjbNameIfValid(name.substring(0, n), name.substring(n + 1));
+	}
+
 	private void processModule(String module, List<AgentClass> result) throws NamingException {
 		NamingEnumeration<NameClassPair> agentList = context.list(EXP + "/" + module);
 		while (agentList.hasMore()) {
@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+
+/**
+ * Dispatch table of the {@link OnMessage} handlers of an agent class. The table is built once per
+ * class, when the first message is dispatched. Handlers are indexed by the performative and the
+ * command (the first word of the content), and invoked through pre-adapted method handles, so
+ * the cost of dispatching does not depend on the number of handlers.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class MessageDispatcher {
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class,
+			ACLMessage.class, Object.class);
+	private static final Handler[] NONE = new Handler[0];
+	private static final ClassValue<MessageDispatcher> DISPATCHERS = new ClassValue<MessageDispatcher>() {
+		@Override
+		protected MessageDispatcher computeValue(Class<?> type) {
+			return new MessageDispatcher(type);
+		}
+	};
+	// indexed by performative ordinal, with the last entry for messages without a performative
+	private final Bucket[] buckets;
+	private final boolean empty;
+	private final HashSet<String> readOnlyKeys = new HashSet<>();
+
+	private static class Handler {
+		final Method method;
+		final MethodHandle invoker;
+		final String command;
+		final String protocol;
+		final String ontology;
+		final Class<?> contentType;
+		final boolean bindString;
+		final int specificity;
+
+		Handler(Method method, OnMessage ann, MethodHandle invoker, Class<?> contentType,
+				boolean bindString) {
+			this.method = method;
+			this.invoker = invoker;
+			this.command = ann.command();
+			this.protocol = ann.protocol();
+			this.ontology = ann.ontology();
+			this.contentType = contentType;
+			this.bindString = bindString;
+			specificity = (command.isEmpty() ? 0 : 8) + (protocol.isEmpty() ? 0 : 4)
+					+ (ontology.isEmpty() ? 0 : 2) + (contentType == Object.class ? 0 : 1);
+		}
+
+		boolean matches(ACLMessage msg) {
+			if (!protocol.isEmpty() && !protocol.equals(msg.protocol))
+				return false;
+			if (!ontology.isEmpty() && !ontology.equals(msg.ontology))
+				return false;
+			return contentType == Object.class || contentType.isInstance(msg.contentObj);
+		}
+
+		void invoke(Object agent, ACLMessage msg) throws Throwable {
+			invoker.invokeExact(agent, msg, bindString ? (Object) msg.content : msg.contentObj);
+		}
+	}
+
+	private static class Bucket {
+		final Map<String, Handler[]> byCommand = new HashMap<>();
+		Handler[] generic = NONE;
+
+		void add(Handler h) {
+			if (h.command.isEmpty())
+				generic = append(generic, h);
+			else {
+				Handler[] arr = byCommand.get(h.command);
+				byCommand.put(h.command, append(arr != null ? arr : NONE, h));
+			}
+		}
+	}
+
+	public static MessageDispatcher of(Class<?> agentClass) {
+		return DISPATCHERS.get(agentClass);
+	}
+
+	private MessageDispatcher(Class<?> agentClass) {
+		final int n = Performative.values().length;
+		buckets = new Bucket[n + 1];
+		List<Handler> handlers = collect(agentClass);
+		for (Handler h : handlers) {
+			OnMessage ann = h.method.getAnnotation(OnMessage.class);
+			Performative[] perfs = ann.performative();
+			if (perfs.length == 0) {
+				for (int i = 0; i <= n; i++)
+					bucket(i).add(h);
+				perfs = Performative.values();
+			} else {
+				for (Performative p : perfs)
+					bucket(p.ordinal()).add(h);
+			}
+			if (ann.readOnly())
+				for (Performative p : perfs)
+					readOnlyKeys.add(readOnlyKey(p, h.command));
+		}
+		empty = handlers.isEmpty();
+	}
+
+	/**
+	 * Passes the message to the matching handler, if any.
+	 * 
+	 * @return True if the message was handled.
+	 */
+	public boolean dispatch(Object agent, ACLMessage msg) throws Exception {
+		if (empty)
+			return false;
+		Performative p = msg.performative;
+		Bucket b = buckets[p != null ? p.ordinal() : buckets.length - 1];
+		if (b == null)
+			return false;
+		if (msg.content != null && !b.byCommand.isEmpty()) {
+			Handler[] hs = b.byCommand.get(command(msg.content));
+			if (hs != null && invokeFirst(hs, agent, msg))
+				return true;
+		}
+		return invokeFirst(b.generic, agent, msg);
+	}
+
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @return Keys of the read-only handlers, see {@link #readOnlyKey(Performative, String)}.
+	 */
+	public Set<String> getReadOnlyKeys() {
+		return readOnlyKeys;
+	}
+
+	/**
+	 * Key of a read-only handler: the performative followed by the command, or by '*' if the
+	 * handler accepts any command.
+	 */
+	public static String readOnlyKey(Performative p, String command) {
+		return p + " " + (command.isEmpty() ? "*" : command);
+	}
+
+	public static String command(String content) {
+		int n = content.indexOf(' ');
+		return n < 0 ? content : content.substring(0, n);
+	}
+
+	private static boolean invokeFirst(Handler[] hs, Object agent, ACLMessage msg) throws Exception {
+		for (Handler h : hs) {
+			if (h.matches(msg)) {
+				try {
+					h.invoke(agent, msg);
+				} catch (Exception | Error ex) {
+					throw ex;
+				} catch (Throwable ex) {
+					throw new IllegalStateException(ex);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Bucket bucket(int index) {
+		if (buckets[index] == null)
+			buckets[index] = new Bucket();
+		return buckets[index];
+	}
+
+	private static List<Handler> collect(Class<?> agentClass) {
+		List<Handler> result = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		// most derived first, so that the re-annotated declarations take precedence
+		for (Class<?> c = agentClass; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Method m : c.getDeclaredMethods()) {
+				OnMessage ann = m.getAnnotation(OnMessage.class);
+				if (ann == null || m.isBridge())
+					continue;
+				// handlers are invoked virtually, so an overriding method need not be annotated
+				String sig = m.getName() + Arrays.toString(m.getParameterTypes());
+				if (!seen.add(sig))
+					continue;
+				if (Modifier.isStatic(m.getModifiers()))
+					throw new IllegalArgumentException("Message handler cannot be static: " + m);
+				result.add(compile(lookup, m, ann));
+			}
+		}
+		// stable sort, so that the declaration order decides between equally specific handlers
+		result.sort(new Comparator<Handler>() {
+			@Override
+			public int compare(Handler h1, Handler h2) {
+				return h2.specificity - h1.specificity;
+			}
+		});
+		return result;
+	}
+
+	private static Handler compile(MethodHandles.Lookup lookup, Method m, OnMessage ann) {
+		Class<?>[] params = m.getParameterTypes();
+		MethodHandle mh;
+		try {
+			m.setAccessible(true);
+			mh = lookup.unreflect(m);
+		} catch (IllegalAccessException | SecurityException ex) {
+			throw new IllegalArgumentException("Cannot access message handler " + m, ex);
+		}
+		// adapt to (agent, message, content)
+		Class<?> contentParam = null;
+		if (params.length == 0)
+			mh = MethodHandles.dropArguments(mh, 1, ACLMessage.class, Object.class);
+		else if (params.length == 1 && params[0] == ACLMessage.class)
+			mh = MethodHandles.dropArguments(mh, 2, Object.class);
+		else if (params.length == 1) {
+			contentParam = params[0];
+			mh = MethodHandles.dropArguments(mh, 1, ACLMessage.class);
+		} else if (params.length == 2 && params[0] == ACLMessage.class)
+			contentParam = params[1];
+		else
+			throw new IllegalArgumentException("Invalid message handler signature: " + m);
+		if (contentParam != null && contentParam.isPrimitive())
+			throw new IllegalArgumentException("Content parameter cannot be primitive: " + m);
+		boolean bindString = contentParam == String.class;
+		Class<?> contentType = ann.contentType();
+		if (contentType == Object.class && contentParam != null && !bindString)
+			contentType = contentParam;
+		return new Handler(m, ann, mh.asType(INVOKER_TYPE), contentType, bindString);
+	}
+
+	private static Handler[] append(Handler[] arr, Handler h) {
+		Handler[] res = Arrays.copyOf(arr, arr.length + 1);
+		res[arr.length] = h;
+		return res;
+	}
+}
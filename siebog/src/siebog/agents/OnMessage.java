@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import siebog.interaction.Performative;
+
+/**
+ * Marks a message handler method of an agent. A message is passed to the most specific handler
+ * whose every non-empty attribute matches it, and to {@link XjafAgent#onMessage(ACLMessage)} if
+ * there is no such handler.
+ * <p>
+ * A handler accepts the message itself, its content, or both, e.g.
+ * <code>handle(ACLMessage msg, Event e)</code>. A content parameter of type String is bound to
+ * the content field of the message, while any other type is bound to contentObj, and has to
+ * match its run-time type.
+ * 
+ * @see MessageDispatcher
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnMessage {
+	/**
+	 * Accepted performatives, empty for all.
+	 */
+	Performative[] performative() default {};
+
+	/**
+	 * The first word of the message content, i.e. the part before the first space.
+	 */
+	String command() default "";
+
+	String protocol() default "";
+
+	String ontology() default "";
+
+	/**
+	 * Required type of contentObj, if not already implied by the handler's content parameter.
+	 */
+	Class<?> contentType() default Object.class;
+
+	/**
+	 * Marks a handler that doesn't modify the agent's state, so that its messages can be served
+	 * by read replicas, see {@link ReplicaSet}.
+	 */
+	boolean readOnly() default false;
+}
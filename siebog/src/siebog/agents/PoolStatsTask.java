@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import siebog.utils.ObjectFactory;
+import siebog.utils.PoolStats;
+
+/**
+ * Executed on each node of the cluster, returns the metrics of the node's task pools, keyed by
+ * the node's address, see {@link siebog.utils.ExecutorService#getPoolStats()}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class PoolStatsTask implements
+		DistributedCallable<AID, Agent, HashMap<String, ArrayList<PoolStats>>>, Serializable {
+	private static final long serialVersionUID = 1L;
+	private transient String node;
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+		node = String.valueOf(cache.getCacheManager().getAddress());
+	}
+
+	@Override
+	public HashMap<String, ArrayList<PoolStats>> call() {
+		HashMap<String, ArrayList<PoolStats>> result = new HashMap<>(2);
+		result.put(node, new ArrayList<>(ObjectFactory.getExecutorService().getPoolStats()));
+		return result;
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+
+/**
+ * Self-addressed message which signals that a selective receive has timed out.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ReceiveTimeoutMessage extends ACLMessage {
+	private static final long serialVersionUID = 1L;
+	public long handle;
+
+	public ReceiveTimeoutMessage(AID aid, long handle) {
+		super(Performative.REQUEST);
+		sender = aid;
+		receivers.add(aid);
+		this.handle = handle;
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A batch of changes in the set of running agents. If the requested sequence number is no longer
+ * available, the batch starts with a snapshot of all running agents, and the consumer should
+ * discard its local view and replace it with the snapshot. Events are applied in order, and
+ * applying an event which is already reflected in the view (e.g. STARTED for an agent in the
+ * snapshot) has no effect.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class RegistryChanges implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final boolean snapshot;
+	private final List<AID> agents;
+	private final List<RegistryEvent> events;
+	private final String position;
+
+	public RegistryChanges(List<RegistryEvent> events, String position) {
+		this(false, Collections.<AID> emptyList(), events, position);
+	}
+
+	public RegistryChanges(List<AID> agents, List<RegistryEvent> events, String position) {
+		this(true, agents, events, position);
+	}
+
+	private RegistryChanges(boolean snapshot, List<AID> agents, List<RegistryEvent> events,
+			String position) {
+		this.snapshot = snapshot;
+		this.agents = agents;
+		this.events = events;
+		this.position = position;
+	}
+
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return The full list of running agents, if this is a snapshot.
+	 */
+	public List<AID> getAgents() {
+		return agents;
+	}
+
+	public List<RegistryEvent> getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return Position to be used in the next request. It's opaque to the consumers.
+	 */
+	public String getPosition() {
+		return position;
+	}
+
+	public boolean isEmpty() {
+		return !snapshot && events.isEmpty();
+	}
+
+	/**
+	 * Applies this batch to a local view of the running agents.
+	 */
+	public void applyTo(Set<AID> view) {
+		if (snapshot) {
+			view.clear();
+			view.addAll(agents);
+		}
+		for (RegistryEvent e : events) {
+			if (e.getType() == RegistryEvent.Type.STARTED)
+				view.add(e.getAid());
+			else
+				view.remove(e.getAid());
+		}
+	}
+}
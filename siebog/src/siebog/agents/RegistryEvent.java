@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+
+/**
+ * A single change in the set of running agents, as recorded by the {@link RegistryLog}. The
+ * sequence number is unique within the segment of the node that recorded the event.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class RegistryEvent implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Type {
+		STARTED, STOPPED
+	}
+
+	private final String segment;
+	private final long seq;
+	private final Type type;
+	private final AID aid;
+	private final long timestamp;
+
+	public RegistryEvent(String segment, long seq, Type type, AID aid) {
+		this.segment = segment;
+		this.seq = seq;
+		this.type = type;
+		this.aid = aid;
+		timestamp = System.currentTimeMillis();
+	}
+
+	public String getSegment() {
+		return segment;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public AID getAid() {
+		return aid;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return segment + ":" + seq + ":" + type + ":" + aid.getStr();
+	}
+}
@@ -0,0 +1,451 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
+import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.utils.GlobalCache;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Cluster-wide log of changes in the set of running agents. Each node records the agents started
+ * and stopped through it in its own segment of the log, under a node-local sequence number. An
+ * event is thus a single write to the owners of its key in the distributed log cache, without any
+ * coordination between the nodes. A position in the log holds the last sequence number read from
+ * each segment, and is opaque to the consumers, see {@link RegistryChanges#getPosition()}. The
+ * events of different segments are merged in the order of their timestamps.
+ * <p>
+ * Only the last {@link #CAPACITY} events of each segment are kept. Consumers which fall further
+ * behind, or which haven't read the segment of a departed node to the end, receive a snapshot of
+ * all running agents, followed by the newer events. The snapshot is taken after the positions of
+ * all segments, so the events that follow it can be applied safely.
+ * <p>
+ * Instead of polling the agent manager, consumers can subscribe to the log, and receive the
+ * changes in batches. The events of the local segment are delivered right away, and the log is
+ * polled every {@link #POLL_INTERVAL} milliseconds for the rest, while there are subscriptions.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class RegistryLog {
+	private static final Logger LOG = LoggerFactory.getLogger(RegistryLog.class);
+	public static final int CAPACITY = Integer.getInteger("siebog.registrylog.size", 4096);
+	public static final int BATCH_SIZE = Integer.getInteger("siebog.registrylog.batch", 256);
+	public static final long POLL_INTERVAL = Long.getLong("siebog.registrylog.poll", 1000);
+	/** Position which starts with a snapshot. */
+	public static final String START = "";
+	// segment -> address of the node recording it
+	private static final String SEGMENTS = "#segments";
+	// position of a segment which is no longer read, e.g. of a node that has left
+	private static final long CLOSED = Long.MAX_VALUE;
+	private static volatile RegistryLog instance;
+	private final Cache<Object, Object> cache;
+	private final String segment;
+	private final AtomicLong lastSeq = new AtomicLong();
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private ScheduledFuture<?> poll;
+
+	public static final class EventKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String segment;
+		private final long seq;
+
+		public EventKey(String segment, long seq) {
+			this.segment = segment;
+			this.seq = seq;
+		}
+
+		public String getSegment() {
+			return segment;
+		}
+
+		@Override
+		public int hashCode() {
+			return segment.hashCode() * 31 + (int) (seq ^ (seq >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof EventKey))
+				return false;
+			EventKey o = (EventKey) obj;
+			return seq == o.seq && segment.equals(o.segment);
+		}
+	}
+
+	/**
+	 * Handle of a subscription, see {@link RegistryLog#subscribe(String, RegistryListener)}.
+	 */
+	public final class Subscription {
+		private final RegistryListener listener;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile String position;
+		private volatile boolean cancelled;
+
+		private Subscription(RegistryListener listener, String position) {
+			this.listener = listener;
+			this.position = position;
+		}
+
+		public String getPosition() {
+			return position;
+		}
+
+		public void cancel() {
+			cancelled = true;
+			unsubscribe(this);
+		}
+
+		/**
+		 * Delivers the changes recorded so far in the calling thread.
+		 */
+		public void sync() {
+			drain();
+		}
+
+		private void signal() {
+			if (!cancelled && scheduled.compareAndSet(false, true)) {
+				ObjectFactory.getExecutorService().execute(new Runnable() {
+					@Override
+					public void run() {
+						drain();
+					}
+				});
+			}
+		}
+
+		private synchronized void drain() {
+			// events arriving while draining are picked up by the loop, or by the next signal
+			scheduled.set(false);
+			while (!cancelled) {
+				RegistryChanges changes = changesSince(position, BATCH_SIZE);
+				position = changes.getPosition();
+				if (changes.isEmpty())
+					break;
+				try {
+					listener.onChanges(changes);
+				} catch (RuntimeException ex) {
+					LOG.warn("Error while delivering agent registry changes.", ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Purges the segments of the departed nodes. Only the coordinator does it.
+	 */
+	@Listener
+	public final class ViewListener {
+		@ViewChanged
+		public void viewChanged(final ViewChangedEvent event) {
+			if (!event.getLocalAddress().equals(event.getNewMembers().get(0)))
+				return;
+			ObjectFactory.getExecutorService().execute(new Runnable() {
+				@Override
+				public void run() {
+					purge(new HashSet<>(event.getNewMembers()));
+				}
+			});
+		}
+	}
+
+	public static RegistryLog get() {
+		if (instance == null) {
+			synchronized (RegistryLog.class) {
+				if (instance == null)
+					instance = new RegistryLog();
+			}
+		}
+		return instance;
+	}
+
+	@SuppressWarnings("unchecked")
+	private RegistryLog() {
+		cache = (Cache<Object, Object>) GlobalCache.get().getCache(GlobalCache.AGENT_REGISTRY_LOG);
+		// a restarted node starts a new segment, rather than overwriting its old events
+		segment = System.getProperty("jboss.node.name", "node").replace(':', '_').replace(',', '_')
+				+ "-" + Long.toString(System.currentTimeMillis(), 36);
+		register();
+		GlobalCache.get().addListener(cache.getCacheManager(), new ViewListener());
+	}
+
+	public String getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return Sequence number of the last event recorded in this node's segment.
+	 */
+	public long getLastSeq() {
+		return lastSeq.get();
+	}
+
+	/**
+	 * Records a new event in this node's segment, and notifies the local subscribers.
+	 */
+	public RegistryEvent append(RegistryEvent.Type type, AID aid) {
+		long seq = lastSeq.incrementAndGet();
+		RegistryEvent event = new RegistryEvent(segment, seq, type, aid);
+		AdvancedCache<Object, Object> c = cache.getAdvancedCache().withFlags(
+				Flag.IGNORE_RETURN_VALUES);
+		c.put(new EventKey(segment, seq), event);
+		if (seq > CAPACITY)
+			c.removeAsync(new EventKey(segment, seq - CAPACITY));
+		for (Subscription s : subscriptions)
+			s.signal();
+		return event;
+	}
+
+	/**
+	 * Returns at most <i>max</i> events recorded after the given position. If some of these
+	 * events are no longer available, or if the position is {@link #START}, the result starts
+	 * with a snapshot of all running agents.
+	 */
+	public RegistryChanges changesSince(String position, int max) {
+		HashMap<String, Long> pos = parse(position);
+		if (pos == null)
+			return snapshot();
+		Map<String, Address> segments = segments();
+		for (Entry<String, Long> e : pos.entrySet())
+			if (e.getValue() != CLOSED && !segments.containsKey(e.getKey()))
+				return snapshot(); // purged before it was read to the end
+		List<Cursor> cursors = new ArrayList<>();
+		for (String s : segments.keySet()) {
+			Long p = pos.get(s);
+			if (p != null && p == CLOSED)
+				continue;
+			// segments of the nodes that have joined in the meantime are read from the start
+			Cursor c = new Cursor(s, p != null ? p : 0);
+			if (!c.advance() && c.truncated())
+				return snapshot();
+			cursors.add(c);
+		}
+		List<RegistryEvent> events = new ArrayList<>();
+		while (events.size() < max) {
+			Cursor min = null;
+			for (Cursor c : cursors)
+				if (c.next != null
+						&& (min == null || c.next.getTimestamp() < min.next.getTimestamp()))
+					min = c;
+			if (min == null)
+				break;
+			events.add(min.next);
+			min.pos = min.next.getSeq();
+			min.advance();
+		}
+		HashMap<String, Long> result = new HashMap<>();
+		for (Entry<String, Long> e : pos.entrySet())
+			if (e.getValue() == CLOSED && segments.containsKey(e.getKey()))
+				result.put(e.getKey(), CLOSED);
+		for (Cursor c : cursors)
+			result.put(c.segment, c.pos);
+		return new RegistryChanges(events, format(result));
+	}
+
+	/**
+	 * Subscribes to the changes recorded after the given position. Pass {@link #START} to start
+	 * with a snapshot.
+	 */
+	public Subscription subscribe(String position, RegistryListener listener) {
+		Subscription s = new Subscription(listener, position);
+		synchronized (subscriptions) {
+			subscriptions.add(s);
+			if (poll == null)
+				poll = ObjectFactory.getExecutorService().schedule(new Runnable() {
+					@Override
+					public void run() {
+						for (Subscription sub : subscriptions)
+							sub.signal();
+					}
+				}, POLL_INTERVAL, POLL_INTERVAL);
+		}
+		s.signal();
+		return s;
+	}
+
+	private void unsubscribe(Subscription s) {
+		synchronized (subscriptions) {
+			subscriptions.remove(s);
+			if (subscriptions.isEmpty() && poll != null) {
+				poll.cancel(false);
+				poll = null;
+			}
+		}
+	}
+
+	/**
+	 * Reads the events of a single segment, one at a time.
+	 */
+	private class Cursor {
+		final String segment;
+		long pos;
+		RegistryEvent next;
+
+		Cursor(String segment, long pos) {
+			this.segment = segment;
+			this.pos = pos;
+		}
+
+		boolean advance() {
+			if (segment.equals(RegistryLog.this.segment) && pos >= lastSeq.get())
+				next = null; // no need to go to the owners
+			else
+				next = (RegistryEvent) cache.get(new EventKey(segment, pos + 1));
+			return next != null;
+		}
+
+		/**
+		 * Tells a missing event that has been removed from one that hasn't been recorded yet. The
+		 * last CAPACITY events are kept, so if the next one has been removed, the one CAPACITY
+		 * places further is available.
+		 */
+		boolean truncated() {
+			if (segment.equals(RegistryLog.this.segment))
+				return lastSeq.get() - pos > CAPACITY;
+			return cache.containsKey(new EventKey(segment, pos + 1 + CAPACITY));
+		}
+	}
+
+	private RegistryChanges snapshot() {
+		HashMap<String, Long> heads = new HashMap<>();
+		// segments whose nodes don't reply have stopped growing, and are reflected in the snapshot
+		for (String s : segments().keySet())
+			heads.put(s, CLOSED);
+		DistributedExecutorService des = new DefaultExecutorService(cache);
+		try {
+			List<Future<Entry<String, Long>>> futures = des.submitEverywhere(RegistryLogTask
+					.head());
+			for (Future<Entry<String, Long>> f : futures) {
+				Entry<String, Long> e = f.get();
+				heads.put(e.getKey(), e.getValue());
+			}
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to read the positions of the registry log.", ex);
+		} finally {
+			des.shutdown();
+		}
+		// the list is taken after the positions, so the events that follow might already be
+		// reflected in it, which is harmless for the consumers
+		List<AID> agents = ObjectFactory.getAgentManager().getRunningAgents();
+		return new RegistryChanges(agents, new ArrayList<RegistryEvent>(), format(heads));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Address> segments() {
+		Map<String, Address> segments = (Map<String, Address>) cache.get(SEGMENTS);
+		return segments != null ? segments : new HashMap<String, Address>();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void register() {
+		Address self = cache.getCacheManager().getAddress();
+		while (true) {
+			HashMap<String, Address> curr = (HashMap<String, Address>) cache.get(SEGMENTS);
+			HashMap<String, Address> next = curr != null ? new HashMap<>(curr)
+					: new HashMap<String, Address>();
+			next.put(segment, self);
+			if (curr == null ? cache.putIfAbsent(SEGMENTS, next) == null : cache.replace(
+					SEGMENTS, curr, next))
+				return;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void purge(Set<Address> members) {
+		ArrayList<String> departed = new ArrayList<>();
+		while (true) {
+			HashMap<String, Address> curr = (HashMap<String, Address>) cache.get(SEGMENTS);
+			if (curr == null)
+				return;
+			HashMap<String, Address> next = new HashMap<>();
+			departed.clear();
+			for (Entry<String, Address> e : curr.entrySet())
+				if (members.contains(e.getValue()))
+					next.put(e.getKey(), e.getValue());
+				else
+					departed.add(e.getKey());
+			if (departed.isEmpty())
+				return;
+			if (cache.replace(SEGMENTS, curr, next))
+				break;
+		}
+		DistributedExecutorService des = new DefaultExecutorService(cache);
+		try {
+			for (Future<Entry<String, Long>> f : des.submitEverywhere(RegistryLogTask
+					.purge(departed)))
+				f.get();
+			LOG.info("Purged the registry log segments {}.", departed);
+		} catch (InterruptedException | ExecutionException ex) {
+			LOG.warn("Unable to purge the registry log segments {}.", departed, ex);
+		} finally {
+			des.shutdown();
+		}
+	}
+
+	private static HashMap<String, Long> parse(String position) {
+		if (position == null || position.isEmpty())
+			return null;
+		HashMap<String, Long> result = new HashMap<>();
+		try {
+			for (String s : position.split(",")) {
+				int i = s.lastIndexOf(':');
+				result.put(s.substring(0, i), Long.parseLong(s.substring(i + 1)));
+			}
+		} catch (RuntimeException ex) {
+			throw new IllegalArgumentException("Invalid registry log position: " + position);
+		}
+		return result;
+	}
+
+	private static String format(Map<String, Long> position) {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, Long> e : position.entrySet()) {
+			if (sb.length() > 0)
+				sb.append(',');
+			sb.append(e.getKey()).append(':').append(e.getValue());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.distexec.DistributedCallable;
+
+/**
+ * Executed on each node of the cluster on behalf of the {@link RegistryLog}. Returns the node's
+ * segment and its last sequence number, or removes the events of the given segments from the
+ * node's part of the log.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class RegistryLogTask implements
+		DistributedCallable<Object, Object, Entry<String, Long>>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Op {
+		/** Returns the segment of the node and its last sequence number. */
+		HEAD,
+		/** Removes the locally stored events of the segments of departed nodes. */
+		PURGE
+	}
+
+	private final Op op;
+	private final ArrayList<String> segments;
+	private transient Cache<Object, Object> cache;
+
+	private RegistryLogTask(Op op, ArrayList<String> segments) {
+		this.op = op;
+		this.segments = segments;
+	}
+
+	public static RegistryLogTask head() {
+		return new RegistryLogTask(Op.HEAD, null);
+	}
+
+	public static RegistryLogTask purge(ArrayList<String> segments) {
+		return new RegistryLogTask(Op.PURGE, segments);
+	}
+
+	@Override
+	public void setEnvironment(Cache<Object, Object> cache, Set<Object> inputKeys) {
+		this.cache = cache;
+	}
+
+	@Override
+	public Entry<String, Long> call() {
+		if (op == Op.HEAD) {
+			RegistryLog log = RegistryLog.get();
+			return new SimpleImmutableEntry<>(log.getSegment(), log.getLastSeq());
+		}
+		AdvancedCache<Object, Object> local = cache.getAdvancedCache().withFlags(
+				Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_LOAD);
+		for (Object key : new ArrayList<>(local.keySet()))
+			if (key instanceof RegistryLog.EventKey
+					&& segments.contains(((RegistryLog.EventKey) key).getSegment()))
+				local.remove(key);
+		return null;
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.infinispan.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+import siebog.utils.GlobalCache;
+import siebog.utils.NearCache;
+
+/**
+ * Read replicas of an agent. An agent started with the init argument {@link #REPLICAS} set to N
+ * becomes the primary, and starts N replicas of its own class. Messages which are queries
+ * (QUERY_REF and QUERY_IF), or which would be handled by a read-only {@link OnMessage} handler,
+ * are routed to the replicas in a round-robin fashion, while the rest go to the primary.
+ * <p>
+ * The replicas receive the primary's {@link Replicated} fields through the delta replication, and
+ * refresh them before handling a message if the last refresh is older than {@link #STALENESS}
+ * milliseconds. The staleness of a replica is thus bounded by this value plus the primary's
+ * replication interval.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ReplicaSet implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(ReplicaSet.class);
+	public static final String REPLICAS = "replicas";
+	public static final String REPLICA_OF = "replicaOf";
+	public static final long STALENESS = Long.getLong("siebog.replica.staleness", 500);
+	public static final int NO_REPLICA = -1;
+	private static final int NEAR_SIZE = Integer.getInteger("siebog.replicas.nearcache.size", 10000);
+	private static final long NEAR_TTL = Long.getLong("siebog.replicas.nearcache.ttl", 60000);
+	// marks the agents without replicas in the near cache
+	private static final ReplicaSet NONE = new ReplicaSet(null, new ArrayList<AID>(),
+			new HashSet<String>());
+	private static volatile Cache<AID, ReplicaSet> cache;
+	private static volatile NearCache<AID, ReplicaSet> near;
+	private final AID primary;
+	private final ArrayList<AID> replicas;
+	private final HashSet<String> readKeys;
+	private transient AtomicInteger next;
+
+	public ReplicaSet(AID primary, List<AID> replicas, Set<String> readKeys) {
+		this.primary = primary;
+		this.replicas = new ArrayList<>(replicas);
+		this.readKeys = new HashSet<>(readKeys);
+	}
+
+	public AID getPrimary() {
+		return primary;
+	}
+
+	public List<AID> getReplicas() {
+		return replicas;
+	}
+
+	public AID getReplica(int index) {
+		return replicas.get(index);
+	}
+
+	public boolean isRead(ACLMessage msg) {
+		Performative p = msg.performative;
+		if (p == Performative.QUERY_REF || p == Performative.QUERY_IF)
+			return true;
+		if (p == null || readKeys.isEmpty())
+			return false;
+		if (readKeys.contains(MessageDispatcher.readOnlyKey(p, "")))
+			return true;
+		return msg.content != null
+				&& readKeys.contains(MessageDispatcher.readOnlyKey(p,
+						MessageDispatcher.command(msg.content)));
+	}
+
+	/**
+	 * @return Index of the replica that should handle the message, or {@link #NO_REPLICA} if it
+	 *         should go to the primary.
+	 */
+	public int route(ACLMessage msg) {
+		if (replicas.isEmpty() || !isRead(msg))
+			return NO_REPLICA;
+		if (next == null)
+			next = new AtomicInteger();
+		return (next.getAndIncrement() & 0x7fffffff) % replicas.size();
+	}
+
+	/**
+	 * Looked up for every receiver of every message, so the sets (and their absence) are kept in
+	 * a node-local cache, which is invalidated whenever the replicated cache changes.
+	 * 
+	 * @return The replica set of the agent, or null if the agent has no replicas.
+	 */
+	public static ReplicaSet of(AID primary) {
+		NearCache<AID, ReplicaSet> nc = near();
+		ReplicaSet rs = nc.get(primary);
+		if (rs == null) {
+			long stamp = nc.stamp();
+			rs = cache().get(primary);
+			if (rs == null)
+				rs = NONE;
+			nc.put(primary, rs, stamp);
+		}
+		return rs != NONE ? rs : null;
+	}
+
+	/**
+	 * Starts the replicas of a primary agent. Each replica gets the same init arguments as the
+	 * primary, plus {@link #REPLICA_OF}.
+	 */
+	static void deploy(AID primary, Class<?> agentClass, AgentInitArgs args, int n,
+			AgentManager agm) {
+		AgentInitArgs replicaArgs = new AgentInitArgs();
+		for (Entry<String, String> e : args.toStringMap().entrySet())
+			if (!e.getKey().equals(REPLICAS))
+				replicaArgs.put(e.getKey(), e.getValue());
+		replicaArgs.put(REPLICA_OF, primary.toString());
+		replicaArgs.put("noUIUpdate", "true");
+		List<AID> replicas = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			AID aid = new AID(primary.getName() + "-replica" + i, primary.getHost(),
+					primary.getAgClass());
+			agm.startServerAgent(aid, replicaArgs);
+			replicas.add(aid);
+		}
+		cache().put(primary, new ReplicaSet(primary, replicas,
+				MessageDispatcher.of(agentClass).getReadOnlyKeys()));
+		LOG.info("Started {} read replicas of {}.", n, primary);
+	}
+
+	/**
+	 * Stops the replicas of a primary agent, if it has any.
+	 */
+	static void undeploy(AID primary, AgentManager agm) {
+		ReplicaSet rs = cache().remove(primary);
+		if (rs != null)
+			for (AID aid : rs.replicas)
+				try {
+					agm.stopAgent(aid);
+				} catch (Exception ex) {
+					LOG.warn("Unable to stop replica {}.", aid, ex);
+				}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Cache<AID, ReplicaSet> cache() {
+		if (cache == null)
+			cache = (Cache<AID, ReplicaSet>) GlobalCache.get().getCache(GlobalCache.AGENT_REPLICAS);
+		return cache;
+	}
+
+	private static NearCache<AID, ReplicaSet> near() {
+		if (near == null)
+			synchronized (ReplicaSet.class) {
+				if (near == null) {
+					NearCache<AID, ReplicaSet> nc = new NearCache<>(NEAR_SIZE, NEAR_TTL);
+					GlobalCache.get().addListener(cache(), nc);
+					near = nc;
+				}
+			}
+		return near;
+	}
+}
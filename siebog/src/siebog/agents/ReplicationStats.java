@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+
+/**
+ * Cumulative cost of the delta state replication of a single agent.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ReplicationStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private long messages;
+	private long flushes;
+	private long blocks;
+	private long bytes;
+	private long nanos;
+
+	void messageHandled() {
+		++messages;
+	}
+
+	void record(int blocks, int bytes, long nanos) {
+		++flushes;
+		this.blocks += blocks;
+		this.bytes += bytes;
+		this.nanos += nanos;
+	}
+
+	/**
+	 * @return Number of messages handled by the agent since the replication started.
+	 */
+	public long getMessages() {
+		return messages;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	public long getBlocks() {
+		return blocks;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getTimeMicros() {
+		return nanos / 1000;
+	}
+
+	/**
+	 * @return Average number of bytes shipped per handled message.
+	 */
+	public double getBytesPerMessage() {
+		return messages > 0 ? (double) bytes / messages : 0;
+	}
+
+	public ReplicationStats copy() {
+		ReplicationStats s = new ReplicationStats();
+		s.messages = messages;
+		s.flushes = flushes;
+		s.blocks = blocks;
+		s.bytes = bytes;
+		s.nanos = nanos;
+		return s;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("messages=%d, flushes=%d, blocks=%d, bytes=%d, bytes/message=%.1f, "
+				+ "time=%dus", messages, flushes, blocks, bytes, getBytesPerMessage(),
+				getTimeMicros());
+	}
+}
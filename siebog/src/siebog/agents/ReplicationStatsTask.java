@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+
+/**
+ * Returns the replication statistics of a single agent from the node it's executing on.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ReplicationStatsTask implements DistributedCallable<AID, Agent, ReplicationStats>,
+		Serializable {
+	private static final long serialVersionUID = 1L;
+	private final AID aid;
+
+	public ReplicationStatsTask(AID aid) {
+		this.aid = aid;
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public ReplicationStats call() {
+		StateReplicator r = StateReplicator.find(aid);
+		return r != null ? r.getStats() : null;
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Set;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.remoting.transport.Address;
+
+/**
+ * Executed on each node of the cluster when the running-agents cache is distributed. Returns the
+ * AIDs of agents for which the node is the primary owner, so that the union of all results lists
+ * every running agent exactly once, without backup copies and L1 entries.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class RunningAgentsTask implements DistributedCallable<AID, Agent, ArrayList<AID>>, Serializable {
+	private static final long serialVersionUID = 1L;
+	private transient Cache<AID, Agent> cache;
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+		this.cache = cache;
+	}
+
+	@Override
+	public ArrayList<AID> call() {
+		AdvancedCache<AID, Agent> local = cache.getAdvancedCache().withFlags(Flag.CACHE_MODE_LOCAL,
+				Flag.SKIP_CACHE_LOAD);
+		DistributionManager dm = cache.getAdvancedCache().getDistributionManager();
+		Address self = cache.getCacheManager().getAddress();
+		ArrayList<AID> result = new ArrayList<>();
+		for (AID aid : local.keySet()) {
+			if (dm == null || self.equals(dm.getPrimaryLocation(aid))) {
+				result.add(aid);
+			}
+		}
+		return result;
+	}
+}
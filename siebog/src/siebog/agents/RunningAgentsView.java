@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Node-local view of the running agents, maintained from the {@link RegistryLog}. The view starts
+ * with a snapshot taken at some position in the log, and then applies the changes recorded after
+ * that position. Reading the view first catches up with the log, so it includes the agents started
+ * before the call, at the cost of checking the log segments for new events rather than listing
+ * the agents on every node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class RunningAgentsView implements RegistryListener {
+	private static volatile RunningAgentsView instance;
+	private final Set<AID> view = new LinkedHashSet<>();
+	private volatile List<AID> agents = Collections.emptyList();
+	private RegistryLog.Subscription subscription;
+
+	public static RunningAgentsView get() {
+		if (instance == null) {
+			synchronized (RunningAgentsView.class) {
+				if (instance == null) {
+					RunningAgentsView v = new RunningAgentsView();
+					v.start();
+					instance = v;
+				}
+			}
+		}
+		return instance;
+	}
+
+	private RunningAgentsView() {
+	}
+
+	private void start() {
+		RegistryLog log = RegistryLog.get();
+		RegistryChanges initial = log.changesSince(RegistryLog.START, RegistryLog.BATCH_SIZE);
+		onChanges(initial);
+		subscription = log.subscribe(initial.getPosition(), this);
+	}
+
+	/**
+	 * @return Immutable list of the running agents.
+	 */
+	public List<AID> getAgents() {
+		subscription.sync();
+		return agents;
+	}
+
+	public String getPosition() {
+		return subscription != null ? subscription.getPosition() : RegistryLog.START;
+	}
+
+	@Override
+	public synchronized void onChanges(RegistryChanges changes) {
+		changes.applyTo(view);
+		agents = Collections.unmodifiableList(new ArrayList<>(view));
+	}
+}
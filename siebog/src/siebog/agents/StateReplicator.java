@@ -0,0 +1,384 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.infinispan.Cache;
+import siebog.utils.GlobalCache;
+
+/**
+ * Delta replication of an agent's {@link Replicated} fields. Each field is serialized and split
+ * into blocks of {@link #BLOCK_SIZE} bytes, and only the blocks that differ from the previously
+ * shipped version are put into the {@link GlobalCache#AGENT_STATE} cache. For large arrays and
+ * matrices which are updated a few cells at a time, this ships a small fraction of the state.
+ * <p>
+ * Each field also has a header entry holding its length and version, so that read replicas (see
+ * {@link ReplicaSet}) can {@link #refresh(Object)} only the fields that have changed.
+ * <p>
+ * If the agent marks its fields explicitly with {@link #markDirty(String...)}, only the marked
+ * fields are examined on flush. Otherwise, all replicated fields are examined every time.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class StateReplicator {
+	public static final int BLOCK_SIZE = Integer.getInteger("siebog.replication.block", 512);
+	private static final int HEADER = -1;
+	private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			List<Field> result = new ArrayList<>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+				for (Field f : c.getDeclaredFields())
+					if (f.isAnnotationPresent(Replicated.class)) {
+						if (Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers()))
+							throw new IllegalStateException("Replicated field " + f
+									+ " cannot be static or final.");
+						f.setAccessible(true);
+						result.add(f);
+					}
+			return result.toArray(new Field[result.size()]);
+		}
+	};
+	// replicators of the primary agents executing on this node, for their statistics
+	private static final Map<AID, StateReplicator> LOCAL = new ConcurrentHashMap<>();
+	private final String owner;
+	private final String cacheName;
+	private final Field[] fields;
+	private final byte[][] shipped;
+	private final int[] versions;
+	private final boolean[] dirty;
+	private boolean explicit;
+	private long lastFlush;
+	private final ReplicationStats stats = new ReplicationStats();
+	private Cache<StateKey, byte[]> cache;
+
+	public static final class StateKey implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String owner;
+		private final String field;
+		private final int block;
+
+		public StateKey(String owner, String field, int block) {
+			this.owner = owner;
+			this.field = field;
+			this.block = block;
+		}
+
+		@Override
+		public int hashCode() {
+			return (owner.hashCode() * 31 + field.hashCode()) * 31 + block;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof StateKey))
+				return false;
+			StateKey o = (StateKey) obj;
+			return block == o.block && owner.equals(o.owner) && field.equals(o.field);
+		}
+	}
+
+	public static boolean hasReplicatedFields(Class<?> cls) {
+		return FIELDS.get(cls).length > 0;
+	}
+
+	/**
+	 * Makes the replicator of a primary agent executing on this node available to
+	 * {@link #find(AID)}.
+	 */
+	public static void register(AID aid, StateReplicator replicator) {
+		LOCAL.put(aid, replicator);
+	}
+
+	public static void deregister(AID aid) {
+		LOCAL.remove(aid);
+	}
+
+	/**
+	 * @return Replicator of the primary agent, or null if the agent isn't executing on this node,
+	 *         or hasn't replicated anything since it was (re)activated.
+	 */
+	public static StateReplicator find(AID aid) {
+		return LOCAL.get(aid);
+	}
+
+	public StateReplicator(AID aid, Class<?> cls) {
+		this(aid.getStr(), cls, GlobalCache.AGENT_STATE);
+	}
+
+	/**
+	 * Stores the fields under the given owner, in the given cache, e.g. for BSP checkpoints.
+	 */
+	public StateReplicator(String owner, Class<?> cls, String cacheName) {
+		this.owner = owner;
+		this.cacheName = cacheName;
+		fields = FIELDS.get(cls);
+		shipped = new byte[fields.length][];
+		versions = new int[fields.length];
+		dirty = new boolean[fields.length];
+	}
+
+	public void markDirty(String... names) {
+		explicit = true;
+		if (names.length == 0) {
+			Arrays.fill(dirty, true);
+			return;
+		}
+		for (String name : names)
+			dirty[indexOf(name)] = true;
+	}
+
+	public boolean isDirty() {
+		if (!explicit)
+			return true;
+		for (boolean d : dirty)
+			if (d)
+				return true;
+		return false;
+	}
+
+	public long getLastFlush() {
+		return lastFlush;
+	}
+
+	/**
+	 * Counts a message handled by the agent, so that the cost can be expressed per message.
+	 */
+	public void messageHandled() {
+		stats.messageHandled();
+	}
+
+	public ReplicationStats getStats() {
+		return stats.copy();
+	}
+
+	/**
+	 * Ships the changed blocks of the dirty fields.
+	 */
+	public void flush(Object agent) {
+		final long start = System.nanoTime();
+		Map<StateKey, byte[]> puts = new HashMap<>();
+		List<StateKey> removes = new ArrayList<>();
+		int bytes = 0;
+		for (int i = 0; i < fields.length; i++) {
+			if (explicit && !dirty[i])
+				continue;
+			dirty[i] = false;
+			byte[] curr = serialize(get(agent, fields[i]));
+			byte[] prev = shipped[i];
+			if (prev != null && Arrays.equals(prev, curr))
+				continue;
+			String name = fields[i].getName();
+			int nCurr = numBlocks(curr.length);
+			for (int b = 0; b < nCurr; b++)
+				if (prev == null || !sameBlock(prev, curr, b)) {
+					byte[] block = Arrays.copyOfRange(curr, b * BLOCK_SIZE,
+							Math.min(curr.length, (b + 1) * BLOCK_SIZE));
+					puts.put(new StateKey(owner, name, b), block);
+					bytes += block.length;
+				}
+			puts.put(new StateKey(owner, name, HEADER), ByteBuffer.allocate(8)
+					.putInt(curr.length).putInt(++versions[i]).array());
+			if (prev != null && prev.length > curr.length) {
+				for (int b = nCurr, n = numBlocks(prev.length); b < n; b++)
+					removes.add(new StateKey(owner, name, b));
+			}
+			shipped[i] = curr;
+		}
+		if (!puts.isEmpty() || !removes.isEmpty()) {
+			Cache<StateKey, byte[]> c = cache();
+			c.startBatch();
+			boolean ok = false;
+			try {
+				c.putAll(puts);
+				for (StateKey k : removes)
+					c.remove(k);
+				ok = true;
+			} finally {
+				c.endBatch(ok);
+			}
+		}
+		lastFlush = System.currentTimeMillis();
+		stats.record(puts.size() + removes.size(), bytes, System.nanoTime() - start);
+	}
+
+	/**
+	 * Restores the replicated fields from the cache, if there is a replicated state for this agent.
+	 * 
+	 * @return True if at least one field was restored.
+	 */
+	public boolean restore(Object agent) {
+		return refresh(agent);
+	}
+
+	/**
+	 * Reads the fields whose version in the cache differs from the last one read or shipped.
+	 * 
+	 * @return True if at least one field was updated.
+	 */
+	public boolean refresh(Object agent) {
+		Cache<StateKey, byte[]> c = cache();
+		boolean restored = false;
+		for (int i = 0; i < fields.length; i++) {
+			String name = fields[i].getName();
+			byte[] header = c.get(new StateKey(owner, name, HEADER));
+			if (header == null)
+				continue;
+			ByteBuffer hb = ByteBuffer.wrap(header);
+			int length = hb.getInt();
+			int version = hb.getInt();
+			if (version == versions[i] && shipped[i] != null)
+				continue;
+			byte[] data = new byte[length];
+			for (int b = 0, n = numBlocks(length); b < n; b++) {
+				byte[] block = c.get(new StateKey(owner, name, b));
+				if (block == null)
+					throw new IllegalStateException("Missing block " + b + " of field " + name
+							+ " of agent " + owner + ".");
+				System.arraycopy(block, 0, data, b * BLOCK_SIZE, block.length);
+			}
+			set(agent, fields[i], deserialize(data, agent.getClass().getClassLoader()));
+			shipped[i] = data;
+			versions[i] = version;
+			restored = true;
+		}
+		return restored;
+	}
+
+	/**
+	 * Removes the replicated state of the agent from the cache. The blocks are found through the
+	 * header entries, so that the state shipped by an earlier instance of the agent (e.g. before a
+	 * passivation or a failover) is removed as well.
+	 */
+	public void clear() {
+		Cache<StateKey, byte[]> c = cache();
+		for (int i = 0; i < fields.length; i++) {
+			String name = fields[i].getName();
+			byte[] header = c.remove(new StateKey(owner, name, HEADER));
+			if (header != null)
+				for (int b = 0, n = numBlocks(ByteBuffer.wrap(header).getInt()); b < n; b++)
+					c.remove(new StateKey(owner, name, b));
+			shipped[i] = null;
+			versions[i] = 0;
+		}
+	}
+
+	private int indexOf(String name) {
+		for (int i = 0; i < fields.length; i++)
+			if (fields[i].getName().equals(name))
+				return i;
+		throw new IllegalArgumentException("No replicated field named " + name + ".");
+	}
+
+	private static int numBlocks(int length) {
+		return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	private static boolean sameBlock(byte[] a, byte[] b, int block) {
+		int from = block * BLOCK_SIZE;
+		int to = Math.min((block + 1) * BLOCK_SIZE, b.length);
+		if (to > a.length)
+			return false;
+		for (int i = from; i < to; i++)
+			if (a[i] != b[i])
+				return false;
+		return true;
+	}
+
+	private static Object get(Object agent, Field f) {
+		try {
+			return f.get(agent);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static void set(Object agent, Field f, Object value) {
+		try {
+			f.set(agent, value);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static byte[] serialize(Object value) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(value);
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to serialize a replicated field.", ex);
+		}
+		return out.toByteArray();
+	}
+
+	private static Object deserialize(byte[] data, final ClassLoader loader) {
+		try (ObjectInputStream ois = new LoaderObjectInputStream(new ByteArrayInputStream(data),
+				loader)) {
+			return ois.readObject();
+		} catch (IOException | ClassNotFoundException ex) {
+			throw new IllegalStateException("Unable to deserialize a replicated field.", ex);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Cache<StateKey, byte[]> cache() {
+		if (cache == null)
+			cache = (Cache<StateKey, byte[]>) GlobalCache.get().getCache(cacheName);
+		return cache;
+	}
+
+	private static class LoaderObjectInputStream extends ObjectInputStream {
+		private final ClassLoader loader;
+
+		LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+			super(in);
+			this.loader = loader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+				ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, loader);
+			} catch (ClassNotFoundException ex) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+}
@@ -20,13 +20,36 @@
 
 package siebog.agents;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import javax.annotation.PreDestroy;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
+import javax.ejb.PrePassivate;
 import javax.ejb.Remove;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import siebog.interaction.ACLMessage;
+import siebog.interaction.Mailbox;
 import siebog.interaction.MessageManager;
+import siebog.interaction.MsgPattern;
+import siebog.interaction.MsgPatternBuilder;
+import siebog.interaction.ReceiveCallback;
+import siebog.utils.ExecutorService;
+import siebog.utils.FailureDetector;
+import siebog.utils.GlobalCache;
 import siebog.utils.ObjectFactory;
 
 /**
@@ -42,17 +65,137 @@ public abstract class XjafAgent implements Agent {
 	// the access timeout is needed only when the system is under a heavy load.
 	// under normal circumstances, all methods should return as quickly as possible
 	public static final long ACCESS_TIMEOUT = 5;
+	public static final long NO_RECEIVE = 0;
+	public static final long HEARTBEAT_PERIOD = Long.getLong("siebog.heartbeat.period", 500);
+	public static final long REPLICATE_PER_MESSAGE = 0;
+	public static final long REPLICATE_ON_DEMAND = -1;
+	public static final long REPLICATION_INTERVAL = Long.getLong("siebog.replication.interval",
+			REPLICATE_PER_MESSAGE);
+	public static final long STATE_SIZE_TTL = Long.getLong("siebog.metrics.statesize.ttl", 30000);
 	protected AID myAid;
 	private AgentManager agm;
 	private MessageManager msm;
+	private transient ExecutorService executor;
+	private long hbHandle;
+	// selective receive
+	private Mailbox mailbox;
+	private LinkedHashMap<Long, PendingReceive> pendingReceives;
+	// patterns of the messages that should be kept until received, see expect()
+	private ArrayList<MsgPattern> expected;
+	private long receiveCounter;
+	// pending local steps
+	private ArrayDeque<Runnable> steps;
+	// messages deferred because the agent is over its quota, in the order of arrival
+	private ArrayDeque<ACLMessage> deferred;
+	private transient boolean resumeScheduled;
+	// offloaded computations
+	private HashMap<Long, PendingCompute> pendingComputes;
+	private long computeCounter;
+	// delta replication of @Replicated fields
+	private transient StateReplicator replicator;
+	private transient boolean flushScheduled;
+	// time of the last measurement of the serialized agent, see measureStateSize()
+	private transient long stateSizeTime;
+	// read replicas
+	private AID replicaOf;
+	private long lastSync;
+	private transient AgentMetrics.Recorder metrics;
+	// reset after passivation and failover, so that a new host gets announced
+	private transient boolean announced;
+	private String host;
 
-	// TODO : Restore support for heartbeats.
-	// private transient long hbHandle;
+	private static class PendingReceive implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final MsgPattern pattern;
+		final ReceiveCallback callback;
+
+		PendingReceive(MsgPattern pattern, ReceiveCallback callback) {
+			this.pattern = pattern;
+			this.callback = callback;
+		}
+	}
+
+	private static class PendingCompute implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final ComputeCallback<Object> callback;
+		// lost on passivation, the result is still delivered but can no longer be cancelled
+		transient Future<?> future;
+
+		PendingCompute(ComputeCallback<Object> callback) {
+			this.callback = callback;
+		}
+	}
+
+	private static class ParallelTask<T> implements Callable<List<T>> {
+		private final List<? extends Callable<T>> tasks;
+
+		ParallelTask(List<? extends Callable<T>> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		public List<T> call() throws Exception {
+			// runs inside the compute pool, so the subtasks are forked into the same pool
+			List<ForkJoinTask<T>> forked = new ArrayList<>(tasks.size());
+			for (Callable<T> c : tasks)
+				forked.add(ForkJoinTask.adapt(c).fork());
+			List<T> results = new ArrayList<>(forked.size());
+			try {
+				for (ForkJoinTask<T> f : forked)
+					results.add(f.join());
+			} finally {
+				for (ForkJoinTask<T> f : forked)
+					f.cancel(false);
+			}
+			return results;
+		}
+	}
+
+	private class Redelivery implements Runnable, Serializable {
+		private static final long serialVersionUID = 1L;
+		private final ACLMessage msg;
+
+		Redelivery(ACLMessage msg) {
+			this.msg = msg;
+		}
+
+		@Override
+		public void run() {
+			try {
+				dispatch(msg);
+			} catch (Exception ex) {
+				LOG.warn("Error while delivering message {}.", msg, ex);
+			}
+		}
+	}
 
 	@Override
 	public void init(AID aid, AgentInitArgs args) {
 		myAid = aid;
+		String primary = args != null ? args.get(ReplicaSet.REPLICA_OF, null) : null;
+		if (primary != null)
+			replicaOf = new AID(primary);
 		onInit(args);
+		announce();
+		if (replicaOf != null) {
+			// replicas follow the primary's state
+			replicator = new StateReplicator(replicaOf, getClass());
+			syncReplica();
+		} else {
+			if (StateReplicator.hasReplicatedFields(getClass()) && replicator().restore(this))
+				onStateRestored();
+			int replicas = args != null ? args.getInt(ReplicaSet.REPLICAS, 0) : 0;
+			if (replicas > 0)
+				ReplicaSet.deploy(myAid, getClass(), args, replicas, agm());
+		}
+	}
+
+	/**
+	 * Called after {@link #onInit(AgentInitArgs)} if the agent's {@link Replicated} fields have
+	 * been restored from a previous incarnation, e.g. after a node failure. In read replicas, it's
+	 * also called each time the fields are refreshed from the primary.
+	 */
+	protected void onStateRestored() {
 	}
 
 	protected void onInit(AgentInitArgs args) {
@@ -61,25 +204,159 @@ public abstract class XjafAgent implements Agent {
 	@Override
 	public void handleMessage(ACLMessage msg) {
 		// TODO : check if the access to onMessage is protected
-		// TODO : Restore support for heartbeats.
+		if (!announced)
+			announce();
 		if (msg instanceof HeartbeatMessage) {
-			boolean repeat = onHeartbeat(msg.content);
-			if (repeat)
-				; // executor().signalHeartbeat(hbHandle);
-			else
-				; // executor().cancelHeartbeat(hbHandle);
-		} else {
-			if (filter(msg)) {
+			// heartbeats are periodic, so they only need to be cancelled
+			boolean repeat = false;
+			try {
+				repeat = onHeartbeat(msg.content);
+			} catch (Exception ex) {
+				LOG.warn("Error in onHeartbeat.", ex);
+			}
+			if (!repeat) {
+				long handle = ((HeartbeatMessage) msg).handle;
+				executor().cancelHeartbeat(handle);
+				if (handle == hbHandle)
+					hbHandle = 0;
+			}
+		} else if (msg instanceof StepMessage) {
+			Runnable step = steps != null ? steps.poll() : null;
+			if (step != null) {
 				try {
-					onMessage(msg);
+					step.run();
 				} catch (Exception ex) {
-					LOG.warn("Error while delivering message {}.", msg, ex);
+					LOG.warn("Error while performing a step.", ex);
+				}
+			}
+		} else if (msg instanceof ComputeResultMessage) {
+			ComputeResultMessage crm = (ComputeResultMessage) msg;
+			PendingCompute pc = pendingComputes != null ? pendingComputes.remove(crm.handle) : null;
+			if (pc != null) {
+				try {
+					if (crm.error == null)
+						pc.callback.onComplete(crm.result);
+					else
+						pc.callback.onFailure(crm.error);
+				} catch (Exception ex) {
+					LOG.warn("Error while completing an offloaded computation.", ex);
+				}
+			}
+		} else if (msg instanceof ReplicationFlushMessage) {
+			flushScheduled = false;
+		} else if (msg instanceof CheckpointMessage) {
+			CheckpointMessage cm = (CheckpointMessage) msg;
+			if (cm.restore)
+				restoreCheckpoint(cm.key);
+			else
+				checkpoint(cm.key);
+		} else if (msg instanceof ReceiveTimeoutMessage) {
+			PendingReceive pr = removePendingReceive(((ReceiveTimeoutMessage) msg).handle);
+			if (pr != null) {
+				unexpect(pr.pattern);
+				completeReceive(pr, null);
+			}
+		} else if (msg instanceof QuotaResumeMessage) {
+			resumeScheduled = false;
+			processDeferred();
+		} else if ((deferred == null || deferred.isEmpty()) && metrics().throttleDelay() <= 0) {
+			process(msg);
+		} else {
+			// over the quota, or queued behind the messages already deferred because of it
+			if (deferred == null)
+				deferred = new ArrayDeque<>();
+			deferred.add(msg);
+			if (!resumeScheduled)
+				processDeferred();
+		}
+		if (replicator != null && replicaOf == null)
+			replicator.messageHandled();
+		if (replicator != null && replicaOf == null && replicator.isDirty()) {
+			long interval = replicationInterval();
+			if (interval == REPLICATE_PER_MESSAGE)
+				replicateState();
+			else if (interval > 0) {
+				long remaining = replicator.getLastFlush() + interval - System.currentTimeMillis();
+				if (remaining <= 0)
+					replicateState();
+				else if (!flushScheduled) {
+					// make sure the changes are shipped even if no other message arrives
+					flushScheduled = true;
+					deferLocally(new ReplicationFlushMessage(myAid), remaining);
 				}
 			}
 		}
 	}
 
-	protected abstract void onMessage(ACLMessage msg);
+	@PrePassivate
+	public void prePassivate() {
+		// the replicator, and with it the record of what has changed, does not survive passivation
+		if (replicator != null && replicaOf == null && replicator.isDirty())
+			replicateState();
+	}
+
+	private void process(ACLMessage msg) {
+		AgentMetrics.Recorder rec = metrics();
+		if (replicaOf != null && System.currentTimeMillis() - lastSync >= ReplicaSet.STALENESS)
+			syncReplica();
+		if (filter(msg)) {
+			long start = rec.start();
+			long startCpu = rec.startCpu();
+			boolean error = false;
+			try {
+				if (!deliverToPendingReceive(msg)) {
+					if (isExpected(msg))
+						mailbox().put(msg);
+					else
+						dispatch(msg);
+				}
+			} catch (Exception ex) {
+				error = true;
+				LOG.warn("Error while delivering message {}.", msg, ex);
+			}
+			rec.handled(start, startCpu, error);
+			rec.setMailboxDepth(mailbox != null ? mailbox.size() : 0);
+			if (rec.isStateSizeRequested())
+				measureStateSize(rec);
+		}
+	}
+
+	/**
+	 * Processes the deferred messages in order, until the quota is reached again, in which case
+	 * the rest are resumed once the current window is over.
+	 */
+	private void processDeferred() {
+		while (deferred != null && !deferred.isEmpty()) {
+			long delay = metrics().throttleDelay();
+			if (delay > 0) {
+				resumeScheduled = true;
+				deferLocally(new QuotaResumeMessage(myAid), delay);
+				return;
+			}
+			process(deferred.poll());
+		}
+	}
+
+	private void announce() {
+		try {
+			host = FailureDetector.announce(myAid, host);
+			announced = true;
+		} catch (Exception ex) {
+			LOG.warn("Unable to announce the host of agent {}.", myAid, ex);
+		}
+	}
+
+	private void dispatch(ACLMessage msg) throws Exception {
+		if (!MessageDispatcher.of(getClass()).dispatch(this, msg))
+			onMessage(msg);
+	}
+
+	/**
+	 * Called for each message not handled by one of the {@link OnMessage} handlers.
+	 */
+	protected void onMessage(ACLMessage msg) {
+		LOG.warn("Agent {} has no handler for message {}.", myAid, msg);
+	}
 
 	protected boolean onHeartbeat(String content) {
 		return false;
@@ -88,9 +365,28 @@ public abstract class XjafAgent implements Agent {
 	protected void onTerminate() {
 	}
 
+	@PreDestroy
+	public void preDestroy() {
+		// also called when the container discards the bean, without stop()
+		FailureDetector.withdraw(myAid);
+		if (replicaOf == null)
+			StateReplicator.deregister(myAid);
+	}
+
 	@Override
 	@Remove
 	public void stop() {
+		cancelHeartbeat();
+		cancelOffloads();
+		if (replicaOf == null) {
+			// the replicator is transient, so it's recreated if the agent was passivated
+			if (StateReplicator.hasReplicatedFields(getClass()))
+				replicator().clear();
+			ReplicaSet.undeploy(myAid, agm());
+		}
+		AgentMetrics.get().remove(myAid);
+		StateReplicator.deregister(myAid);
+		FailureDetector.withdraw(myAid);
 		try {
 			onTerminate();
 		} catch (Exception ex) {
@@ -98,22 +394,354 @@ public abstract class XjafAgent implements Agent {
 		}
 	}
 
+	/**
+	 * Schedules the next step of the agent. The step is executed locally, in a separate
+	 * invocation of the agent, which keeps the serial execution guarantees, and allows the
+	 * incoming messages to be processed in between the steps. Steps are executed in the order in
+	 * which they were scheduled. If the agent can be passivated, the step should be serializable.
+	 */
+	protected void continueWith(Runnable step) {
+		if (steps == null)
+			steps = new ArrayDeque<>();
+		steps.add(step);
+		executor().deliverLocally(myAid, new StepMessage(myAid));
+	}
+
+	/**
+	 * Processes the message again, as the agent's next step. This
+	 * is a local replacement for posting the message to self.
+	 */
+	protected void yieldStep(ACLMessage msg) {
+		continueWith(new Redelivery(msg));
+	}
+
+	/**
+	 * Runs a CPU-bound computation on the node's compute pool, leaving the agent free to process
+	 * other messages in the meantime. When the computation is done, the callback is invoked by the
+	 * agent itself, as one of its regular steps. The result should be serializable. Pending
+	 * computations are cancelled when the agent stops.
+	 * 
+	 * @return Handle of the computation, which can be passed to {@link #cancelOffload(long)}.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T> long offload(Callable<T> task, ComputeCallback<T> callback) {
+		if (pendingComputes == null)
+			pendingComputes = new HashMap<>();
+		long handle = ++computeCounter;
+		PendingCompute pc = new PendingCompute((ComputeCallback<Object>) callback);
+		pendingComputes.put(handle, pc);
+		pc.future = executor().offload(myAid, handle, task);
+		return handle;
+	}
+
+	/**
+	 * Fork/join version of {@link #offload(Callable, ComputeCallback)}. The tasks run in
+	 * parallel, and the callback receives their results in the same order.
+	 */
+	protected <T> long parallel(List<? extends Callable<T>> tasks, ComputeCallback<List<T>> callback) {
+		return offload(new ParallelTask<T>(tasks), callback);
+	}
+
+	/**
+	 * Cancels an offloaded computation, interrupting it if it's already running. The callback
+	 * will not be invoked.
+	 */
+	protected void cancelOffload(long handle) {
+		PendingCompute pc = pendingComputes != null ? pendingComputes.remove(handle) : null;
+		if (pc != null && pc.future != null)
+			pc.future.cancel(true);
+	}
+
+	private void cancelOffloads() {
+		if (pendingComputes != null) {
+			for (PendingCompute pc : pendingComputes.values())
+				if (pc.future != null)
+					pc.future.cancel(true);
+			pendingComputes.clear();
+		}
+	}
+
+	/**
+	 * Marks the given {@link Replicated} fields, or all of them if none are given, as changed.
+	 * Once an agent starts marking its fields, only the marked ones are replicated; otherwise, all
+	 * replicated fields are checked for changes. Only the changed parts of the fields are shipped,
+	 * at the moment determined by {@link #replicationInterval()}.
+	 */
+	protected void markDirty(String... fields) {
+		replicator().markDirty(fields);
+	}
+
+	/**
+	 * Replicates the changes right away.
+	 */
+	protected void replicateState() {
+		if (replicaOf != null)
+			return;
+		try {
+			replicator().flush(this);
+		} catch (Exception ex) {
+			LOG.warn("Error while replicating the state of agent {}.", myAid, ex);
+		}
+	}
+
+	/**
+	 * How often the {@link Replicated} fields are replicated: {@link #REPLICATE_PER_MESSAGE},
+	 * {@link #REPLICATE_ON_DEMAND} (only through {@link #replicateState()}), or at most once in
+	 * the given number of milliseconds. The interval is checked after each message; changes that
+	 * are not yet due are flushed by a self-addressed message once the interval is over, or
+	 * before the agent is passivated.
+	 */
+	protected long replicationInterval() {
+		return REPLICATION_INTERVAL;
+	}
+
+	protected ReplicationStats getReplicationStats() {
+		return replicator != null ? replicator.getStats() : new ReplicationStats();
+	}
+
+	/**
+	 * Writes the {@link Replicated} fields to the BSP checkpoint store, under the given key, see
+	 * {@link CheckpointMessage}.
+	 */
+	private void checkpoint(String key) {
+		new StateReplicator(key, getClass(), GlobalCache.BSP_CHECKPOINTS).flush(this);
+	}
+
+	/**
+	 * Rolls the {@link Replicated} fields back to the given checkpoint, and calls
+	 * {@link #onStateRestored()}.
+	 * 
+	 * @return False if there is no such checkpoint.
+	 */
+	private boolean restoreCheckpoint(String key) {
+		if (!new StateReplicator(key, getClass(), GlobalCache.BSP_CHECKPOINTS).restore(this))
+			return false;
+		onStateRestored();
+		return true;
+	}
+
+	/**
+	 * Records the approximate size of the agent's serialized state, once it has been requested
+	 * through the agent's statistics, see {@link AgentStatsTask}.
+	 */
+	private void measureStateSize(AgentMetrics.Recorder rec) {
+		long now = System.currentTimeMillis();
+		// serializing the whole agent is expensive, so the size is only refreshed occasionally
+		if (stateSizeTime > 0 && now - stateSizeTime < STATE_SIZE_TTL)
+			return;
+		stateSizeTime = now;
+		CountingStream counter = new CountingStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+			out.writeObject(this);
+			out.flush();
+			rec.setStateSize(counter.count);
+		} catch (IOException ex) {
+			LOG.debug("Unable to measure the state of agent {}.", myAid, ex);
+		}
+	}
+
+	private static class CountingStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			++count;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	/**
+	 * @return The primary agent, if this agent is one of its read replicas, null otherwise.
+	 */
+	protected AID getReplicaOf() {
+		return replicaOf;
+	}
+
+	private void syncReplica() {
+		try {
+			if (replicator.refresh(this))
+				onStateRestored();
+		} catch (Exception ex) {
+			// e.g. the primary was in the middle of a flush, try again next time
+			LOG.debug("Unable to refresh replica {}.", myAid, ex);
+		}
+		lastSync = System.currentTimeMillis();
+	}
+
+	private AgentMetrics.Recorder metrics() {
+		if (metrics == null)
+			metrics = AgentMetrics.get().of(myAid);
+		return metrics;
+	}
+
+	private void deferLocally(final ACLMessage msg, long delayMillis) {
+		final AID aid = myAid;
+		final ExecutorService exec = executor();
+		exec.execute(new Runnable() {
+			@Override
+			public void run() {
+				exec.deliverLocally(aid, msg);
+			}
+		}, delayMillis);
+	}
+
+	private StateReplicator replicator() {
+		if (replicator == null) {
+			replicator = new StateReplicator(myAid, getClass());
+			StateReplicator.register(myAid, replicator);
+		}
+		return replicator;
+	}
+
+	/**
+	 * Keeps the message in the mailbox, so that it can be retrieved later by one of the receive
+	 * methods. If there is a pending receive matching the message, it is completed instead.
+	 */
+	protected void stash(ACLMessage msg) {
+		if (!deliverToPendingReceive(msg))
+			mailbox().put(msg);
+	}
+
+	/**
+	 * Keeps the messages matching the pattern in the mailbox, instead of passing them to
+	 * {@link #onMessage(ACLMessage)}, until one of them is taken by a receive with the same
+	 * pattern. Should be called before the message that triggers the reply is sent, so that an
+	 * early reply is not missed.
+	 */
+	protected void expect(MsgPattern pattern) {
+		if (expected == null)
+			expected = new ArrayList<>();
+		expected.add(pattern);
+	}
+
+	/**
+	 * Sets the reply-with field of the request, if it's missing, and {@link #expect(MsgPattern)
+	 * expects} the reply.
+	 * 
+	 * @return Pattern that should be passed to the receive methods.
+	 */
+	protected MsgPattern expectReply(ACLMessage request) {
+		if (request.replyWith == null || request.replyWith.isEmpty())
+			request.replyWith = myAid.getStr() + "#" + (++receiveCounter);
+		MsgPattern pattern = MsgPatternBuilder.inReplyTo(request.replyWith);
+		expect(pattern);
+		return pattern;
+	}
+
+	protected void unexpect(MsgPattern pattern) {
+		if (expected != null)
+			expected.remove(pattern);
+	}
+
+	private boolean isExpected(ACLMessage msg) {
+		if (expected != null)
+			for (MsgPattern p : expected)
+				if (p.matched(msg))
+					return true;
+		return false;
+	}
+
+	/**
+	 * @return The oldest message in the mailbox, or null if the mailbox is empty.
+	 */
 	protected ACLMessage receiveNoWait() {
-		return null; // queue.poll(); // TODO : Implement receiveNoWait.
+		return mailbox == null ? null : mailbox.poll();
+	}
+
+	/**
+	 * @return The oldest message in the mailbox that matches the pattern, or null if there is
+	 *         none.
+	 */
+	protected ACLMessage receiveNoWait(MsgPattern pattern) {
+		ACLMessage msg = mailbox == null ? null : mailbox.take(pattern);
+		if (msg != null)
+			unexpect(pattern);
+		return msg;
 	}
 
+	/**
+	 * Blocking receive is not supported, since it would pin a container thread.
+	 * 
+	 * @deprecated Use {@link #receiveWait(MsgPattern, long, ReceiveCallback)}.
+	 * @return The same as {@link #receiveNoWait()}.
+	 */
+	@Deprecated
 	protected ACLMessage receiveWait(long timeout) {
 		if (timeout < 0)
 			throw new IllegalArgumentException("The timeout value cannot be negative.");
-		ACLMessage msg = null;
-		// TODO : Implement receiveWait.
-		// try {
-		// if (timeout == 0)
-		// timeout = Long.MAX_VALUE;
-		// msg = queue.poll(timeout, TimeUnit.MILLISECONDS);
-		// } catch (InterruptedException ex) {
-		// }
-		return msg;
+		return receiveNoWait();
+	}
+
+	/**
+	 * Receives the oldest message matching the pattern, either from the mailbox, or the first one
+	 * that arrives afterwards. The callback is invoked when the message is received, or with a
+	 * null argument if the timeout expires first. Matching messages that arrive while the
+	 * receive is pending are passed to the callback instead of {@link #onMessage(ACLMessage)}.
+	 * The calling thread is not blocked.
+	 * 
+	 * @param timeout Timeout in milliseconds, 0 for none.
+	 * @return Handle of the pending receive, or {@link #NO_RECEIVE} if it has completed
+	 *         immediately.
+	 */
+	protected long receiveWait(MsgPattern pattern, long timeout, ReceiveCallback callback) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("The timeout value cannot be negative.");
+		ACLMessage msg = receiveNoWait(pattern);
+		if (msg != null) {
+			callback.onReceive(msg);
+			return NO_RECEIVE;
+		}
+		if (pendingReceives == null)
+			pendingReceives = new LinkedHashMap<>();
+		long handle = ++receiveCounter;
+		pendingReceives.put(handle, new PendingReceive(pattern, callback));
+		if (timeout > 0)
+			msm().post(new ReceiveTimeoutMessage(myAid, handle), timeout);
+		return handle;
+	}
+
+	protected void cancelReceive(long handle) {
+		PendingReceive pr = removePendingReceive(handle);
+		if (pr != null)
+			unexpect(pr.pattern);
+	}
+
+	private boolean deliverToPendingReceive(ACLMessage msg) {
+		if (pendingReceives == null || pendingReceives.isEmpty())
+			return false;
+		Iterator<Entry<Long, PendingReceive>> i = pendingReceives.entrySet().iterator();
+		while (i.hasNext()) {
+			PendingReceive pr = i.next().getValue();
+			if (pr.pattern.matched(msg)) {
+				i.remove();
+				unexpect(pr.pattern);
+				completeReceive(pr, msg);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private PendingReceive removePendingReceive(long handle) {
+		return pendingReceives == null ? null : pendingReceives.remove(handle);
+	}
+
+	private void completeReceive(PendingReceive pr, ACLMessage msg) {
+		try {
+			pr.callback.onReceive(msg);
+		} catch (Exception ex) {
+			LOG.warn("Error while completing a receive of message {}.", msg, ex);
+		}
+	}
+
+	private Mailbox mailbox() {
+		if (mailbox == null)
+			mailbox = new Mailbox();
+		return mailbox;
 	}
 
 	@Override
@@ -143,15 +771,31 @@ public abstract class XjafAgent implements Agent {
 		return true;
 	}
 
+	/**
+	 * Registers a periodic heartbeat, which results in calls to {@link #onHeartbeat(String)}
+	 * until it returns false, or until the heartbeat is cancelled. Any previously registered
+	 * heartbeat is cancelled.
+	 */
+	protected void registerHeartbeat(String content, long periodMillis) {
+		cancelHeartbeat();
+		hbHandle = executor().registerHeartbeat(myAid, periodMillis, content);
+	}
+
 	protected void registerHeartbeat(String content) {
-		// TODO : Restore support for heartbeats.
-		// hbHandle = executor().registerHeartbeat(myAid, 500, content);
+		registerHeartbeat(content, HEARTBEAT_PERIOD);
 	}
 
 	protected void registerHeartbeat() {
 		registerHeartbeat("");
 	}
 
+	protected void cancelHeartbeat() {
+		if (hbHandle != 0) {
+			executor().cancelHeartbeat(hbHandle);
+			hbHandle = 0;
+		}
+	}
+
 	public AID getAid() {
 		return myAid;
 	}
@@ -171,6 +815,12 @@ public abstract class XjafAgent implements Agent {
 		return agm;
 	}
 
+	protected ExecutorService executor() {
+		if (executor == null)
+			executor = ObjectFactory.getExecutorService();
+		return executor;
+	}
+
 	protected MessageManager msm() {
 		if (msm == null)
 			msm = ObjectFactory.getMessageManager();
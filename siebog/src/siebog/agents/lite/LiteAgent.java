@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.lite;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import siebog.agents.AID;
+import siebog.agents.AgentClass;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.agents.AgentMetrics;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MessageManager;
+
+/**
+ * Base class for lightweight agents. Unlike {@link siebog.agents.XjafAgent}, a lightweight agent
+ * is a plain Java object, hosted by the {@link LiteAgentContainer} of the node it was started on.
+ * The container owns the agent's mailbox, and executes it on a shared thread pool, one message at
+ * a time. Lightweight agents are addressed by normal AIDs, and can exchange messages with all
+ * other agents.
+ * <p>
+ * The host part of the AID identifies the hosting node. Lightweight agents are not registered in
+ * the cluster-wide directory, and are therefore not included in the list of running agents.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public abstract class LiteAgent {
+	public static final String MODULE = "siebog-lite";
+	private static final AtomicIntegerFieldUpdater<LiteAgent> SCHEDULED = AtomicIntegerFieldUpdater
+			.newUpdater(LiteAgent.class, "scheduled");
+	protected AID myAid;
+	LiteAgentContainer container;
+	final Queue<Object> mailbox = new ConcurrentLinkedQueue<>();
+	private volatile int scheduled;
+	boolean terminated;
+	// null unless the agent has been sampled, see LiteAgentContainer#METRICS_SAMPLE
+	volatile AgentMetrics.Recorder metrics;
+
+	public static AgentClass agentClass(Class<? extends LiteAgent> c) {
+		return new AgentClass(MODULE, c.getName());
+	}
+
+	public static boolean isLite(AgentClass agClass) {
+		return agClass != null && MODULE.equals(agClass.getModule());
+	}
+
+	public static boolean isLite(AID aid) {
+		return isLite(aid.getAgClass());
+	}
+
+	protected void onInit(AgentInitArgs args) {
+	}
+
+	/**
+	 * Called for each message not handled by one of the {@link siebog.agents.OnMessage}
+	 * handlers.
+	 */
+	protected void onMessage(ACLMessage msg) {
+	}
+
+	protected void onTerminate() {
+	}
+
+	/**
+	 * Schedules the next step of the agent, see
+	 * {@link siebog.agents.XjafAgent#continueWith(Runnable)}.
+	 */
+	protected void continueWith(Runnable step) {
+		container.enqueue(this, step);
+	}
+
+	/**
+	 * Processes the message again, as the agent's next step.
+	 */
+	protected void yieldStep(ACLMessage msg) {
+		container.enqueue(this, msg);
+	}
+
+	/**
+	 * Stops this agent, after it finishes processing the current message.
+	 */
+	protected void terminate() {
+		container.stop(myAid);
+	}
+
+	public AID getAid() {
+		return myAid;
+	}
+
+	protected AgentManager agm() {
+		return container.agm();
+	}
+
+	protected MessageManager msm() {
+		return container.msm();
+	}
+
+	boolean trySchedule() {
+		return SCHEDULED.compareAndSet(this, 0, 1);
+	}
+
+	void unschedule() {
+		scheduled = 0;
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.lite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.agents.AgentMetrics;
+import siebog.agents.AgentStats;
+import siebog.agents.AgentStatsTask;
+import siebog.agents.MessageDispatcher;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MessageManager;
+import siebog.utils.ExecutorService;
+import siebog.utils.GlobalCache;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Per-node host of lightweight agents. Each agent is scheduled on the node's executor whenever
+ * its mailbox is non-empty, and processes at most {@link #THROUGHPUT} messages before yielding
+ * the thread to other agents. Operations on agents hosted by other nodes are forwarded to their
+ * containers.
+ * <p>
+ * A metrics recorder takes over a kilobyte, which is more than the agent itself, so only one in
+ * {@link #METRICS_SAMPLE} lightweight agents gets one. By default, none does.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LiteAgentContainer {
+	private static final Logger LOG = LoggerFactory.getLogger(LiteAgentContainer.class);
+	public static final int THROUGHPUT = Integer.getInteger("siebog.lite.throughput", 32);
+	// record the metrics of one in every n agents; 0 to disable
+	public static final int METRICS_SAMPLE = Integer.getInteger("siebog.lite.metrics.sample", 0);
+	private static final Object TERMINATE = new Object();
+	@Inject
+	private ExecutorService executor;
+	private final ConcurrentMap<AID, LiteAgent> agents = new ConcurrentHashMap<>();
+	private final AtomicLong started = new AtomicLong();
+	private Cache<AID, Agent> cache;
+	private DistributedExecutorService des;
+	private String host;
+	private volatile AgentManager agm;
+	private volatile MessageManager msm;
+
+	private class Init implements Runnable {
+		private final LiteAgent agent;
+		private final AgentInitArgs args;
+
+		Init(LiteAgent agent, AgentInitArgs args) {
+			this.agent = agent;
+			this.args = args;
+		}
+
+		@Override
+		public void run() {
+			agent.onInit(args);
+		}
+	}
+
+	@PostConstruct
+	public void postConstruct() {
+		cache = GlobalCache.get().getRunningAgents();
+		Address address = cache.getCacheManager().getAddress();
+		host = address != null ? address.toString() : AID.HOST_NAME;
+		des = new DefaultExecutorService(cache);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		des.shutdown();
+		for (AID aid : agents.keySet())
+			stopLocal(aid);
+	}
+
+	/**
+	 * @return Host name of the AIDs of agents started on this node.
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	public AID start(AID aid, AgentInitArgs args, boolean replace) {
+		if (!host.equals(aid.getHost()))
+			throw new IllegalArgumentException("Lightweight agent " + aid
+					+ " can only be started on node " + aid.getHost());
+		LiteAgent agent = newInstance(aid.getAgClass().getEjbName());
+		agent.myAid = aid;
+		agent.container = this;
+		LiteAgent prev = agents.putIfAbsent(aid, agent);
+		if (prev != null) {
+			if (!replace)
+				throw new IllegalStateException("Agent already running: " + aid);
+			stopLocal(aid);
+			agents.put(aid, agent);
+		}
+		if (METRICS_SAMPLE > 0 && started.getAndIncrement() % METRICS_SAMPLE == 0)
+			agent.metrics = AgentMetrics.get().of(aid);
+		enqueue(agent, new Init(agent, args));
+		return aid;
+	}
+
+	public Agent getReference(AID aid) {
+		return new LiteAgentRef(aid, this);
+	}
+
+	public void deliver(AID aid, ACLMessage msg) {
+		if (isLocal(aid))
+			deliverLocal(aid, msg);
+		else
+			forward(aid, new LiteTask(LiteTask.Op.DELIVER, aid, msg));
+	}
+
+	public void stop(AID aid) {
+		if (isLocal(aid))
+			stopLocal(aid);
+		else
+			forward(aid, new LiteTask(LiteTask.Op.STOP, aid, null));
+	}
+
+	public String ping(AID aid) {
+		if (isLocal(aid))
+			return pingLocal(aid);
+		Future<String> result = forward(aid, new LiteTask(LiteTask.Op.PING, aid, null));
+		if (result == null)
+			throw new IllegalArgumentException("No such agent: " + aid);
+		try {
+			return result.get();
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to ping " + aid, ex);
+		}
+	}
+
+	public AgentStats getStats(AID aid) {
+		if (isLocal(aid)) {
+			AgentMetrics.Recorder r = AgentMetrics.get().find(aid);
+			return r != null ? r.snapshot() : null;
+		}
+		Future<AgentStats> result = forward(aid, new AgentStatsTask(aid));
+		if (result == null)
+			throw new IllegalArgumentException("No such agent: " + aid);
+		try {
+			return result.get();
+		} catch (InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Unable to get the stats of " + aid, ex);
+		}
+	}
+
+	public List<AID> getLocalAgents() {
+		return new ArrayList<>(agents.keySet());
+	}
+
+	public int size() {
+		return agents.size();
+	}
+
+	void deliverLocal(AID aid, ACLMessage msg) {
+		LiteAgent agent = agents.get(aid);
+		if (agent != null)
+			enqueue(agent, msg);
+		else
+			LOG.info("No such agent: {}", aid.getName());
+	}
+
+	void stopLocal(AID aid) {
+		LiteAgent agent = agents.remove(aid);
+		if (agent != null)
+			enqueue(agent, TERMINATE);
+	}
+
+	String pingLocal(AID aid) {
+		if (!agents.containsKey(aid))
+			throw new IllegalArgumentException("No such agent: " + aid);
+		return System.getProperty("jboss.node.name");
+	}
+
+	void enqueue(LiteAgent agent, Object item) {
+		agent.mailbox.add(item);
+		schedule(agent);
+	}
+
+	AgentManager agm() {
+		if (agm == null)
+			agm = ObjectFactory.getAgentManager();
+		return agm;
+	}
+
+	MessageManager msm() {
+		if (msm == null)
+			msm = ObjectFactory.getMessageManager();
+		return msm;
+	}
+
+	private void schedule(final LiteAgent agent) {
+		if (agent.trySchedule()) {
+			executor.execute(agent.myAid, new Runnable() {
+				@Override
+				public void run() {
+					drain(agent);
+				}
+			});
+		}
+	}
+
+	private void drain(LiteAgent agent) {
+		for (int i = 0; i < THROUGHPUT; i++) {
+			Object item = agent.mailbox.poll();
+			if (item == null)
+				break;
+			if (!agent.terminated)
+				process(agent, item);
+		}
+		agent.unschedule();
+		// a message might have arrived after the last poll, but before unscheduling
+		if (!agent.mailbox.isEmpty())
+			schedule(agent);
+	}
+
+	private void process(LiteAgent agent, Object item) {
+		try {
+			if (item instanceof ACLMessage) {
+				ACLMessage msg = (ACLMessage) item;
+				AgentMetrics.Recorder rec = agent.metrics;
+				if (rec == null) {
+					dispatch(agent, msg);
+					return;
+				}
+				long start = rec.start();
+				long startCpu = rec.startCpu();
+				boolean error = true;
+				try {
+					dispatch(agent, msg);
+					error = false;
+				} finally {
+					rec.handled(start, startCpu, error);
+				}
+			}
+			else if (item == TERMINATE) {
+				agent.terminated = true;
+				agent.mailbox.clear();
+				// the recorder is kept for the agent that replaced this one, if any
+				AgentMetrics.Recorder rec = agent.metrics;
+				if (rec != null && !agents.containsKey(agent.myAid))
+					AgentMetrics.get().remove(agent.myAid, rec);
+				agent.onTerminate();
+			} else
+				((Runnable) item).run();
+		} catch (Exception ex) {
+			LOG.warn("Error in lightweight agent {}.", agent.myAid, ex);
+		}
+	}
+
+	private void dispatch(LiteAgent agent, ACLMessage msg) throws Exception {
+		if (!MessageDispatcher.of(agent.getClass()).dispatch(agent, msg))
+			agent.onMessage(msg);
+	}
+
+	private boolean isLocal(AID aid) {
+		return host.equals(aid.getHost());
+	}
+
+	private <T> Future<T> forward(AID aid, DistributedCallable<AID, Agent, T> task) {
+		for (Address member : cache.getCacheManager().getMembers())
+			if (member.toString().equals(aid.getHost()))
+				return des.submit(member, task);
+		LOG.warn("Node {} of agent {} is not available.", aid.getHost(), aid.getName());
+		return null;
+	}
+
+	private LiteAgent newInstance(String className) {
+		try {
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			if (loader == null)
+				loader = LiteAgent.class.getClassLoader();
+			Class<?> c = Class.forName(className, true, loader);
+			return (LiteAgent) c.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException ex) {
+			throw new IllegalArgumentException("Cannot instantiate lightweight agent " + className,
+					ex);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.lite;
+
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.CheckpointMessage;
+import siebog.interaction.ACLMessage;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Stand-in for a lightweight agent wherever an {@link Agent} reference is expected. All calls are
+ * routed to the container on the agent's hosting node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class LiteAgentRef implements Agent {
+	private static final long serialVersionUID = 1L;
+	private final AID aid;
+	private transient LiteAgentContainer container;
+
+	public LiteAgentRef(AID aid) {
+		this.aid = aid;
+	}
+
+	LiteAgentRef(AID aid, LiteAgentContainer container) {
+		this.aid = aid;
+		this.container = container;
+	}
+
+	@Override
+	public void init(AID aid, AgentInitArgs args) {
+		throw new IllegalStateException("Lightweight agents are initialized by their container.");
+	}
+
+	@Override
+	public void stop() {
+		container().stop(aid);
+	}
+
+	@Override
+	public void handleMessage(ACLMessage msg) {
+		if (msg instanceof CheckpointMessage)
+			throw new IllegalStateException("Lightweight agents cannot be checkpointed.");
+		container().deliver(aid, msg);
+	}
+
+	@Override
+	public String ping() {
+		return container().ping(aid);
+	}
+
+	public AID getAid() {
+		return aid;
+	}
+
+	private LiteAgentContainer container() {
+		if (container == null)
+			container = ObjectFactory.getLiteAgentContainer();
+		return container;
+	}
+}
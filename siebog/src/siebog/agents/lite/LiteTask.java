@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.lite;
+
+import java.io.Serializable;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.interaction.ACLMessage;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Executes an operation on a lightweight agent, on its hosting node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class LiteTask implements DistributedCallable<AID, Agent, String>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Op {
+		DELIVER, STOP, PING
+	}
+
+	private final Op op;
+	private final AID aid;
+	private final ACLMessage msg;
+
+	public LiteTask(Op op, AID aid, ACLMessage msg) {
+		this.op = op;
+		this.aid = aid;
+		this.msg = msg;
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public String call() throws Exception {
+		LiteAgentContainer container = ObjectFactory.getLiteAgentContainer();
+		switch (op) {
+		case DELIVER:
+			container.deliverLocal(aid, msg);
+			return null;
+		case STOP:
+			container.stopLocal(aid);
+			return null;
+		default:
+			return container.pingLocal(aid);
+		}
+	}
+}
@@ -28,6 +28,7 @@ import siebog.agents.Agent;
 import siebog.agents.AgentClass;
 import siebog.agents.AgentInitArgs;
 import siebog.agents.AgentManager;
+import siebog.agents.ReplicaSet;
 import siebog.utils.ObjectFactory;
 
 /**
@@ -40,13 +41,16 @@ public class ACOStarter {
 	public static void main(String[] args) {
 		int nAnts = 0;
 		String path = "";
-		if (args.length != 2) {
-			System.out.println("I need 2 arguments: NumberOfAnts MapFile");
+		int mapReplicas = 0;
+		if (args.length < 2) {
+			System.out.println("I need 2 arguments: NumberOfAnts MapFile [MapReplicas]");
 			nAnts = 5;
 			path = "ulysses16.tsp";
 		} else {
 			nAnts = Integer.parseInt(args[0].toString());
 			path = args[1];
+			if (args.length > 2)
+				mapReplicas = Integer.parseInt(args[2]);
 		}
 
 		SiebogClient.connect("localhost");
@@ -54,6 +58,8 @@ public class ACOStarter {
 		final AgentManager agm = ObjectFactory.getAgentManager();
 		AgentClass mapClass = new AgentClass(Agent.SIEBOG_MODULE, "Map");
 		AgentInitArgs mapArgs = new AgentInitArgs("fileName=" + path);
+		if (mapReplicas > 0)
+			mapArgs.put(ReplicaSet.REPLICAS, String.valueOf(mapReplicas));
 		agm.startServerAgent(mapClass, "Map", mapArgs);
 
 		for (int i = 1; i <= nAnts; ++i) {
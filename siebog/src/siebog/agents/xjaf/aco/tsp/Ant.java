@@ -120,7 +120,7 @@ public class Ant extends XjafAgent {
 			phase = 1;
 			ACLMessage start = new ACLMessage(Performative.REQUEST);
 			start.receivers.add(myAid);
-			msm().post(start);
+			yieldStep(start);
 			return;
 		}
 
@@ -211,14 +211,14 @@ public class Ant extends XjafAgent {
 				phase = 3;
 			} else {
 				phase = 1;
-				msm().post(message);
+				yieldStep(message);
 			}
 			break;
 		}
 		case 3: {
 			addWeightToTour(Float.parseFloat(message.content));
 			phase = 4;
-			msm().post(message);
+			yieldStep(message);
 			break;
 		}
 		case 4: {
@@ -238,7 +238,7 @@ public class Ant extends XjafAgent {
 
 			phase = 5;
 
-			msm().post(message);
+			yieldStep(message);
 			break;
 		}
 		default: // phase == 5
@@ -267,7 +267,7 @@ public class Ant extends XjafAgent {
 
 			setCurrentMapPosIndex(nextNodeIndex);
 
-			msm().post(message);
+			yieldStep(message);
 		}
 		}
 	}
@@ -36,6 +36,8 @@ import org.jboss.vfs.VirtualFile;
 
 import siebog.agents.Agent;
 import siebog.agents.AgentInitArgs;
+import siebog.agents.OnMessage;
+import siebog.agents.Replicated;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
@@ -47,27 +49,34 @@ import siebog.utils.LoggerUtil;
  * @author <a href="mailto:tntvteod@neobee.net">Teodor Najdan Trifunov</a>
  * @author <a href="mailto:milan.laketic@yahoo.com">Milan Laketic</a>
  */
-@Stateful
+@Stateful(passivationCapable = false)
 @Remote(Agent.class)
 public class Map extends XjafAgent {
 	private static final long serialVersionUID = 4998652517108886246L;
+	// The pheromone matrix is updated constantly, so it's replicated at most once a second.
+	private static final long REPLICATION_INTERVAL = 1000;
 	// TSP graph (given by a set of (x,y)-points).
 	private List<Node> nodes;
 	// Initial pheromone value.
 	private float tau0;
 	// Pheromone values for individual graph edges.
+	@Replicated
 	private float[][] pheromone;
 
 	// Weight of the best tour found so far.
+	@Replicated
 	private float bestTourWeight = Float.MAX_VALUE;
 	// Best tour found so far.
+	@Replicated
 	private List<Integer> bestTour = new ArrayList<>();
 	// Represents a heuristic for program termination. When this variable reaches
 	// MAX_STATIONARY_ITERATIONS, the program terminates.
+	@Replicated
 	private int nIterationsBestTourNotUpdated = 0;
 	// Heuristic boundary value for program termination.
 	private static final int MAX_STATIONARY_ITERATIONS = 500;
 	
+	@Replicated
 	private boolean done = false;
 
 	@Override
@@ -76,77 +85,106 @@ public class Map extends XjafAgent {
 		loadMap(args.get("fileName", null).toString());
 	}
 
-	@Override
-	protected void onMessage(ACLMessage message) {
-		final String content = message.content;
-		if (message.performative == Performative.REQUEST) {
-			ACLMessage reply = message.makeReply(Performative.INFORM);
-			if (content.equals("MapSize?")) {
-				if (!done) {
-					reply.content = getMapSize() + "";
-				} else {
-					reply.content = "DONE";
-				}
-			} else if (content.startsWith("PheromoneLevels?")) {
-				String[] parts = content.split(" ");
-				StringBuilder pheromoneLevels = new StringBuilder();
-
-				int i = Integer.parseInt(parts[1]);
-				pheromoneLevels.append("PheromoneLevels:");
-				for (int j = 2; j < parts.length; ++j) {
-					int newJ = Integer.parseInt(parts[j]);
-					pheromoneLevels.append(" ").append(getPheromoneLevel(i, newJ)).append(" ")
-							.append(getEdgeWeight(i, newJ));
-				}
-				reply.content = pheromoneLevels.toString();
-			} else if (content.startsWith("EdgeWeight?")) {
-				String[] parts = content.split(" ");
-				reply.content = String.valueOf(getEdgeWeight(Integer.parseInt(parts[1]),
-						Integer.parseInt(parts[2])));
-			}
-			msm().post(reply);
-		} else if (message.performative == Performative.INFORM) {
-			if (content.startsWith("UpdateBestTour")) {
-				String[] parts = content.split(" ");
-				float newTourWeight = Float.parseFloat(parts[1]);
-
-				LoggerUtil.log("No. of iterations for the best tour not being updated: " + nIterationsBestTourNotUpdated, true);
-				if (nIterationsBestTourNotUpdated >= MAX_STATIONARY_ITERATIONS) {
-					LoggerUtil.log("Done.", true);
-					done = true;
-					return;
-				}
-				nIterationsBestTourNotUpdated++;
+	@OnMessage(performative = Performative.REQUEST, command = "MapSize?", readOnly = true)
+	protected void onMapSize(ACLMessage message) {
+		ACLMessage reply = message.makeReply(Performative.INFORM);
+		if (!done) {
+			reply.content = getMapSize() + "";
+		} else {
+			reply.content = "DONE";
+		}
+		msm().post(reply);
+	}
 
-				if (bestTourWeight > newTourWeight) {
-					nIterationsBestTourNotUpdated = 0;
+	@OnMessage(performative = Performative.REQUEST, command = "PheromoneLevels?", readOnly = true)
+	protected void onPheromoneLevels(ACLMessage message) {
+		ACLMessage reply = message.makeReply(Performative.INFORM);
+		String[] parts = message.content.split(" ");
+		StringBuilder pheromoneLevels = new StringBuilder();
 
-					bestTourWeight = newTourWeight;
+		int i = Integer.parseInt(parts[1]);
+		pheromoneLevels.append("PheromoneLevels:");
+		for (int j = 2; j < parts.length; ++j) {
+			int newJ = Integer.parseInt(parts[j]);
+			pheromoneLevels.append(" ").append(getPheromoneLevel(i, newJ)).append(" ")
+					.append(getEdgeWeight(i, newJ));
+		}
+		reply.content = pheromoneLevels.toString();
+		msm().post(reply);
+	}
 
-					bestTour.clear();
-					for (int i = 2; i < parts.length; ++i)
-						bestTour.add(Integer.parseInt(parts[i]) + 1);
+	@OnMessage(performative = Performative.REQUEST, command = "EdgeWeight?", readOnly = true)
+	protected void onEdgeWeight(ACLMessage message) {
+		ACLMessage reply = message.makeReply(Performative.INFORM);
+		String[] parts = message.content.split(" ");
+		reply.content = String.valueOf(getEdgeWeight(Integer.parseInt(parts[1]),
+				Integer.parseInt(parts[2])));
+		msm().post(reply);
+	}
 
-					LoggerUtil.log("Best tour so far has weight: " + bestTourWeight, true);
-					LoggerUtil.log("Best tour so far: " + bestTour, true);
-				}
-			} else if (content.startsWith("UpdatePheromone")) {
-				String[] parts = content.split(" ");
-				int i = Integer.parseInt(parts[1]);
-				int j = Integer.parseInt(parts[2]);
-				setPheromoneLevel(i, j, Float.parseFloat(parts[3]) * getPheromoneLevel(i, j)
-						+ Float.parseFloat(parts[4]));
-			} else if (content.startsWith("UpdateLocalPheromone")) {
-				String[] parts = content.split(" ");
-				int i = Integer.parseInt(parts[1]);
-				int j = Integer.parseInt(parts[2]);
-				float ksi = Float.parseFloat(parts[3]);
-				setPheromoneLevel(i, j, (1 - ksi) * getPheromoneLevel(i, j) + ksi * tau0);
-			}
-		} else if (message.performative == Performative.CANCEL) {
-			LoggerUtil.log("############# Canceled ###############.", true);
+	@OnMessage(performative = Performative.INFORM, command = "UpdateBestTour")
+	protected void onUpdateBestTour(String content) {
+		String[] parts = content.split(" ");
+		float newTourWeight = Float.parseFloat(parts[1]);
+
+		LoggerUtil.log("No. of iterations for the best tour not being updated: " + nIterationsBestTourNotUpdated, true);
+		if (nIterationsBestTourNotUpdated >= MAX_STATIONARY_ITERATIONS) {
+			LoggerUtil.log("Done.", true);
 			done = true;
+			markDirty("done");
+			LoggerUtil.log("Replication of the map: " + getReplicationStats(), true);
+			return;
 		}
+		nIterationsBestTourNotUpdated++;
+		markDirty("nIterationsBestTourNotUpdated");
+
+		if (bestTourWeight > newTourWeight) {
+			nIterationsBestTourNotUpdated = 0;
+
+			bestTourWeight = newTourWeight;
+
+			bestTour.clear();
+			for (int i = 2; i < parts.length; ++i)
+				bestTour.add(Integer.parseInt(parts[i]) + 1);
+			markDirty("bestTourWeight", "bestTour");
+
+			LoggerUtil.log("Best tour so far has weight: " + bestTourWeight, true);
+			LoggerUtil.log("Best tour so far: " + bestTour, true);
+		}
+	}
+
+	@OnMessage(performative = Performative.INFORM, command = "UpdatePheromone")
+	protected void onUpdatePheromone(String content) {
+		String[] parts = content.split(" ");
+		int i = Integer.parseInt(parts[1]);
+		int j = Integer.parseInt(parts[2]);
+		setPheromoneLevel(i, j, Float.parseFloat(parts[3]) * getPheromoneLevel(i, j)
+				+ Float.parseFloat(parts[4]));
+	}
+
+	@OnMessage(performative = Performative.INFORM, command = "UpdateLocalPheromone")
+	protected void onUpdateLocalPheromone(String content) {
+		String[] parts = content.split(" ");
+		int i = Integer.parseInt(parts[1]);
+		int j = Integer.parseInt(parts[2]);
+		float ksi = Float.parseFloat(parts[3]);
+		setPheromoneLevel(i, j, (1 - ksi) * getPheromoneLevel(i, j) + ksi * tau0);
+	}
+
+	@OnMessage(performative = Performative.CANCEL)
+	protected void onCancel() {
+		LoggerUtil.log("############# Canceled ###############.", true);
+		done = true;
+		markDirty("done");
+	}
+
+	@Override
+	protected void onMessage(ACLMessage message) {
+		// unknown requests still get an (empty) answer, so that the requester is not left waiting
+		if (message.performative == Performative.REQUEST)
+			msm().post(message.makeReply(Performative.INFORM));
+		else
+			super.onMessage(message);
 	}
 
 	/**
@@ -241,6 +279,7 @@ System.out.println(url);
 	 */
 	public void setPheromoneLevel(int i, int j, float val) {
 		pheromone[i][j] = val;
+		markDirty("pheromone");
 	}
 
 	/**
@@ -253,6 +292,11 @@ System.out.println(url);
 				+ Math.pow(ni.getY() - nj.getY(), 2)));
 	}
 
+	@Override
+	protected long replicationInterval() {
+		return REPLICATION_INTERVAL;
+	}
+
 	@Override
 	public void onTerminate() {
 		LoggerUtil.log("Map terminated.", true);
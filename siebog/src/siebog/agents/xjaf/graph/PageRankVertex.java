@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.xjaf.graph;
+
+import siebog.interaction.bsp.Combiner;
+import siebog.interaction.bsp.Combiners;
+import siebog.interaction.bsp.graph.Vertex;
+
+/**
+ * PageRank, with a damping factor of 0.85. Runs for the given number of iterations (job parameter
+ * "iterations", 30 by default).
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class PageRankVertex extends Vertex<Double, Double> {
+	private static final double DAMPING = 0.85;
+
+	@Override
+	public void compute(Iterable<Double> messages) {
+		long n = getTotalNumVertices();
+		if (getSuperstep() == 0)
+			setValue(1.0 / n);
+		else {
+			double sum = 0;
+			for (Double m : messages)
+				sum += m;
+			setValue((1 - DAMPING) / n + DAMPING * sum);
+		}
+		if (getSuperstep() < Integer.parseInt(getParam("iterations", "30"))) {
+			if (getNumEdges() > 0)
+				sendMessageToAllEdges(getValue() / getNumEdges());
+		} else
+			voteToHalt();
+	}
+
+	@Override
+	protected Combiner<Double> combiner() {
+		return Combiners.SUM;
+	}
+}
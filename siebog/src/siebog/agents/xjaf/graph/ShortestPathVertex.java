@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.xjaf.graph;
+
+import siebog.interaction.bsp.Combiner;
+import siebog.interaction.bsp.Combiners;
+import siebog.interaction.bsp.graph.Vertex;
+
+/**
+ * Single-source shortest paths over the edge weights, from the vertex given by the job parameter
+ * "source" (0 by default). Unreachable vertices end up with an infinite distance.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ShortestPathVertex extends Vertex<Double, Double> {
+	@Override
+	public void compute(Iterable<Double> messages) {
+		if (getSuperstep() == 0)
+			setValue(Double.POSITIVE_INFINITY);
+		double min = getId() == Long.parseLong(getParam("source", "0")) ? 0
+				: Double.POSITIVE_INFINITY;
+		for (Double m : messages)
+			min = Math.min(min, m);
+		if (min < getValue()) {
+			setValue(min);
+			for (int i = 0; i < getNumEdges(); i++)
+				sendMessage(getEdgeTarget(i), min + getEdgeWeight(i));
+		}
+		voteToHalt();
+	}
+
+	@Override
+	protected Combiner<Double> combiner() {
+		return Combiners.MIN;
+	}
+}
@@ -20,7 +20,9 @@
 
 package siebog.agents.xjaf.pso;
 
+import java.io.Serializable;
 import java.util.Random;
+import java.util.concurrent.Callable;
 import javax.ejb.Remote;
 import javax.ejb.Stateful;
 import org.slf4j.Logger;
@@ -28,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
 import siebog.agents.Agent;
 import siebog.agents.AgentInitArgs;
+import siebog.agents.ComputeCallback;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
@@ -44,6 +47,9 @@ public class Particle extends XjafAgent {
 
 	private static final long serialVersionUID = -4667142176673603367L;
 	private static final Logger LOG = LoggerFactory.getLogger(Particle.class);
+	// dimension from which the iterations are computed on the compute pool
+	public static final int OFFLOAD_DIMENSION = Integer.getInteger("siebog.pso.offload.dimension",
+			1000);
 
 	/**
 	 * Agent ID of a Swarm agent
@@ -96,8 +102,6 @@ public class Particle extends XjafAgent {
 	private double c1 = 1.49445;
 	// social weight
 	private double c2 = 1.49445;
-	// randomizations
-	private double r1, r2;
 
 	/**
 	 * @see XjafAgent.server.agm().Agent#onInit(java.io.Serializable[])
@@ -175,65 +179,129 @@ public class Particle extends XjafAgent {
 			if (psoMessage.getAction().equals(PsoMessage.ITERATE_PARTICLE)) {
 
 				// logger.warning("Particle [" + myAid + "] got the iterate request" );
-				iteration(psoMessage.getFitness(), psoMessage.getPosition());
+				final double bestGlobalFitness = psoMessage.getFitness();
+				Move move = new Move(this, psoMessage.getPosition());
 
 				// reply to the swarm that the iteration is finished
-				ACLMessage reply = message.makeReply(Performative.INFORM);
+				final ACLMessage reply = message.makeReply(Performative.INFORM);
 				reply.sender = myAid;
 				message.receivers.add(swarmAID);
-				msm().post(reply);
+
+				if (dimension < OFFLOAD_DIMENSION) {
+					iteration(move.call(), bestGlobalFitness);
+					msm().post(reply);
+					return;
+				}
+				// large moves are computed off the agent, which keeps handling its messages
+				offload(move, new ComputeCallback<Move>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public void onComplete(Move result) {
+						iteration(result, bestGlobalFitness);
+						msm().post(reply);
+					}
+
+					@Override
+					public void onFailure(Throwable error) {
+						LOG.warn("Particle {} iteration failed.", myAid, error);
+						msm().post(reply);
+					}
+				});
 			}
 		}
 	}
 
 	/**
-	 * Represents one iteration of a Particle. <br>
-	 * Calculates new velocity, position and fitness, and updates local and global best position and
-	 * fitness if necessary.
-	 * 
-	 * @param bestGlobalFitness
-	 * @param bestGlobalPosition
+	 * Calculates the new velocity, position and fitness of a Particle. Works on copies of the
+	 * Particle's state, so that it can run outside of the agent.
 	 */
-	private void iteration(double bestGlobalFitness, double[] bestGlobalPosition) {
-
-		double[] newVelocity = new double[dimension];
-		double[] newPosition = new double[dimension];
+	private static class Move implements Callable<Move>, Serializable {
+		private static final long serialVersionUID = 1L;
+		private final double[] velocity;
+		private final double[] position;
+		private final double[] bestPosition;
+		private final double[] bestGlobalPosition;
+		private final double minX, maxX, minV, maxV, w, c1, c2;
+		private final long seed;
+		double[] newVelocity;
+		double[] newPosition;
 		double newFitness;
 
-		// calculate new velocity
-		for (int j = 0; j < velocity.length; ++j) {
+		Move(Particle p, double[] bestGlobalPosition) {
+			velocity = p.velocity.clone();
+			position = p.position.clone();
+			bestPosition = p.bestPosition.clone();
+			this.bestGlobalPosition = bestGlobalPosition;
+			minX = p.minX;
+			maxX = p.maxX;
+			minV = p.minV;
+			maxV = p.maxV;
+			w = p.w;
+			c1 = p.c1;
+			c2 = p.c2;
+			seed = p.random.nextLong();
+		}
+
+		@Override
+		public Move call() {
+			Random random = new Random(seed);
+			int dimension = velocity.length;
+			newVelocity = new double[dimension];
+			newPosition = new double[dimension];
+
+			// calculate new velocity
+			for (int j = 0; j < dimension; ++j) {
 
-			r1 = random.nextDouble();
-			r2 = random.nextDouble();
+				double r1 = random.nextDouble();
+				double r2 = random.nextDouble();
 
-			// main calculation of the PSO
-			newVelocity[j] = (w * velocity[j]) + (c1 * r1 * (bestPosition[j] - position[j]))
-					+ (c2 * r2 * (bestGlobalPosition[j] - position[j]));
+				// main calculation of the PSO
+				newVelocity[j] = (w * velocity[j]) + (c1 * r1 * (bestPosition[j] - position[j]))
+						+ (c2 * r2 * (bestGlobalPosition[j] - position[j]));
 
-			if (newVelocity[j] < minV) {
-				newVelocity[j] = minV;
-			} else if (newVelocity[j] > maxV) {
-				newVelocity[j] = maxV;
+				if (newVelocity[j] < minV) {
+					newVelocity[j] = minV;
+				} else if (newVelocity[j] > maxV) {
+					newVelocity[j] = maxV;
+				}
 			}
-		}
-		// set new velocity
-		System.arraycopy(newVelocity, 0, velocity, 0, dimension);
-
-		// calculate new position
-		for (int j = 0; j < position.length; ++j) {
-			newPosition[j] = position[j] + newVelocity[j];
-			if (newPosition[j] < minX) {
-				newPosition[j] = minX;
-			} else if (newPosition[j] > maxX) {
-				newPosition[j] = maxX;
+
+			// calculate new position
+			for (int j = 0; j < dimension; ++j) {
+				newPosition[j] = position[j] + newVelocity[j];
+				if (newPosition[j] < minX) {
+					newPosition[j] = minX;
+				} else if (newPosition[j] > maxX) {
+					newPosition[j] = maxX;
+				}
 			}
+
+			// calculate new fitness
+			newFitness = objectiveFunction(newPosition);
+			return this;
 		}
+	}
+
+	/**
+	 * Represents one iteration of a Particle. <br>
+	 * Applies the new velocity, position and fitness, and updates local and global best position
+	 * and fitness if necessary.
+	 * 
+	 * @param move
+	 * @param bestGlobalFitness
+	 */
+	private void iteration(Move move, double bestGlobalFitness) {
+
+		double[] newPosition = move.newPosition;
+		double newFitness = move.newFitness;
+
+		// set new velocity
+		System.arraycopy(move.newVelocity, 0, velocity, 0, dimension);
+
 		// set new position
 		System.arraycopy(newPosition, 0, position, 0, dimension);
 
-		// calculate new fitness
-		newFitness = objectiveFunction(newPosition);
-
 		// set new fitness
 		fitness = newFitness;
 
@@ -265,7 +333,7 @@ public class Particle extends XjafAgent {
 	 * @param x potential solutions (array[dimension])
 	 * @return result (fitness)
 	 */
-	private double objectiveFunction(double[] x) {
+	private static double objectiveFunction(double[] x) {
 		return 3.0 + (x[0] * x[0]) + (x[1] * x[1]);
 	}
 
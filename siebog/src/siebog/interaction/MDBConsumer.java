@@ -3,6 +3,7 @@ package siebog.interaction;
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.MessageDriven;
 import javax.inject.Inject;
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
 import siebog.agents.Agent;
 import siebog.agents.AgentManagerBean;
+import siebog.agents.ReplicaSet;
 
 @MessageDriven(name = "MDBConsumer", activationConfig = {
 		@ActivationConfigProperty(propertyName = "destinationLookup", propertyValue = "queue/siebog"),
@@ -32,14 +34,37 @@ public class MDBConsumer implements MessageListener {
 	}
 
 	private void processMessage(Message msg) throws JMSException {
-		ACLMessage acl = (ACLMessage) ((ObjectMessage) msg).getObject();
-		AID aid = getAid(msg, acl);
-		deliverMessage(acl, aid);
+		ACLMessage acl = getAcl(msg);
+		if (acl != null) {
+			AID aid = getAid(msg, acl);
+			deliverMessage(acl, aid);
+		}
+	}
+
+	private ACLMessage getAcl(Message msg) throws JMSException {
+		if (msg instanceof BytesMessage) {
+			BytesMessage bytes = (BytesMessage) msg;
+			byte[] data = new byte[(int) bytes.getBodyLength()];
+			bytes.readBytes(data);
+			try {
+				return WireFormat.decode(data);
+			} catch (Exception ex) {
+				LOG.warn("Cannot decode an incoming message.", ex);
+				return null;
+			}
+		}
+		return (ACLMessage) ((ObjectMessage) msg).getObject();
 	}
 
 	private AID getAid(Message msg, ACLMessage acl) throws JMSException {
 		int i = msg.getIntProperty("AIDIndex");
-		return acl.receivers.get(i);
+		AID aid = acl.receivers.get(i);
+		if (msg.propertyExists("ReplicaIndex")) {
+			ReplicaSet rs = ReplicaSet.of(aid);
+			if (rs != null)
+				aid = rs.getReplica(msg.getIntProperty("ReplicaIndex"));
+		}
+		return aid;
 	}
 
 	private void deliverMessage(ACLMessage msg, AID aid) {
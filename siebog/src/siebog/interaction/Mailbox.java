@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-agent mailbox with support for selective receive. Messages are kept in the order of
+ * arrival, and indexed by the values of {@link MsgPattern#INDEXED} fields, so that the common
+ * patterns (e.g. a reply to a given message) are matched without a linear scan.
+ * <p>
+ * The mailbox is bounded; once it is full, the oldest messages are discarded.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class Mailbox implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(Mailbox.class);
+	public static final int CAPACITY = Integer.getInteger("siebog.mailbox.size", 1024);
+	private final TreeMap<Long, ACLMessage> messages = new TreeMap<>();
+	// field name -> field value -> sequence numbers of the messages
+	private final Map<String, Map<Object, TreeSet<Long>>> index = new HashMap<>();
+	private long nextSeq;
+
+	public Mailbox() {
+		for (String name : MsgPattern.INDEXED)
+			index.put(name, new HashMap<Object, TreeSet<Long>>());
+	}
+
+	public synchronized void put(ACLMessage msg) {
+		if (messages.size() >= CAPACITY) {
+			Entry<Long, ACLMessage> oldest = messages.firstEntry();
+			LOG.warn("Mailbox full, discarding message {}.", oldest.getValue());
+			remove(oldest.getKey());
+		}
+		long seq = nextSeq++;
+		messages.put(seq, msg);
+		for (String name : MsgPattern.INDEXED) {
+			Object value = indexValue(name, msg);
+			if (value != null) {
+				Map<Object, TreeSet<Long>> map = index.get(name);
+				TreeSet<Long> seqs = map.get(value);
+				if (seqs == null) {
+					seqs = new TreeSet<>();
+					map.put(value, seqs);
+				}
+				seqs.add(seq);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the oldest message, or null if the mailbox is empty.
+	 */
+	public synchronized ACLMessage poll() {
+		if (messages.isEmpty())
+			return null;
+		return remove(messages.firstKey());
+	}
+
+	/**
+	 * Removes and returns the oldest message matching the pattern, or null if there is none.
+	 */
+	public synchronized ACLMessage take(MsgPattern pattern) {
+		MsgField indexed = pattern.getIndexed();
+		if (indexed != null) {
+			TreeSet<Long> seqs = index.get(indexed.getName()).get(indexed.getValue());
+			if (seqs != null)
+				for (Long seq : seqs)
+					if (pattern.matched(messages.get(seq)))
+						return remove(seq);
+			return null;
+		}
+		Iterator<Entry<Long, ACLMessage>> i = messages.entrySet().iterator();
+		while (i.hasNext()) {
+			Entry<Long, ACLMessage> e = i.next();
+			if (pattern.matched(e.getValue()))
+				return remove(e.getKey());
+		}
+		return null;
+	}
+
+	public synchronized int size() {
+		return messages.size();
+	}
+
+	public synchronized void clear() {
+		messages.clear();
+		for (Map<Object, TreeSet<Long>> map : index.values())
+			map.clear();
+	}
+
+	private ACLMessage remove(long seq) {
+		ACLMessage msg = messages.remove(seq);
+		for (String name : MsgPattern.INDEXED) {
+			Object value = indexValue(name, msg);
+			if (value != null) {
+				Map<Object, TreeSet<Long>> map = index.get(name);
+				TreeSet<Long> seqs = map.get(value);
+				seqs.remove(seq);
+				if (seqs.isEmpty())
+					map.remove(value);
+			}
+		}
+		return msg;
+	}
+
+	private static Object indexValue(String name, ACLMessage msg) {
+		switch (name) {
+		case "inReplyTo":
+			return msg.inReplyTo;
+		case "conversationId":
+			return msg.conversationId;
+		case "performative":
+			return msg.performative;
+		default:
+			throw new IllegalArgumentException("Field " + name + " is not indexed.");
+		}
+	}
+}
@@ -29,9 +29,10 @@ import javax.ejb.LocalBean;
 import javax.ejb.Remote;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageProducer;
-import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
@@ -43,6 +44,10 @@ import javax.ws.rs.core.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
+import siebog.agents.AgentMetrics;
+import siebog.agents.ReplicaSet;
+import siebog.agents.lite.LiteAgent;
+import siebog.agents.lite.LiteAgentContainer;
 
 /**
  * Default message manager implementation.
@@ -60,6 +65,8 @@ public class MessageManagerBean implements MessageManager {
 	private static final Logger LOG = LoggerFactory.getLogger(MessageManagerBean.class);
 	@Inject
 	private JMSFactory factory;
+	@Inject
+	private LiteAgentContainer liteAgents;
 	private Session session;
 	private MessageProducer defaultProducer;
 	private MessageProducer testProducer;
@@ -104,7 +111,22 @@ public class MessageManagerBean implements MessageManager {
 			if (msg.receivers.get(i) == null) {
 				throw new IllegalArgumentException("AID cannot be null.");
 			}
-			postToReceiver(msg, i, delayMillisec);
+		}
+		// the message is serialized only once, regardless of the number of receivers
+		final byte[] data;
+		try {
+			data = WireFormat.encode(msg);
+		} catch (Exception ex) {
+			LOG.warn(ex.getMessage());
+			return;
+		}
+		AgentMetrics.get().sent(msg.sender, msg.receivers.size());
+		for (int i = 0; i < msg.receivers.size(); i++) {
+			AID aid = msg.receivers.get(i);
+			if (delayMillisec <= 0 && LiteAgent.isLite(aid))
+				postToLiteAgent(aid, data);
+			else
+				postToReceiver(msg, data, i, delayMillisec);
 		}
 	}
 
@@ -113,10 +135,27 @@ public class MessageManagerBean implements MessageManager {
 		return "Pong from " + System.getProperty("jboss.node.name");
 	}
 
-	private void postToReceiver(ACLMessage msg, int index, long delayMillisec) {
+	private void postToLiteAgent(AID aid, byte[] data) {
+		// delivered without the broker, each receiver gets its own copy
+		try {
+			liteAgents.deliver(aid, WireFormat.decode(data));
+		} catch (Exception ex) {
+			LOG.warn(ex.getMessage());
+		}
+	}
+
+	private void postToReceiver(ACLMessage msg, byte[] data, int index, long delayMillisec) {
 		AID aid = msg.receivers.get(index);
 		try {
-			ObjectMessage jmsMsg = session.createObjectMessage(msg);
+			BytesMessage jmsMsg = session.createBytesMessage();
+			jmsMsg.writeBytes(data);
+			// queries to an agent with read replicas are spread across the replicas
+			ReplicaSet rs = ReplicaSet.of(aid);
+			int replica = rs != null ? rs.route(msg) : ReplicaSet.NO_REPLICA;
+			if (replica != ReplicaSet.NO_REPLICA) {
+				jmsMsg.setIntProperty("ReplicaIndex", replica);
+				aid = rs.getReplica(replica);
+			}
 			setupJmsMsg(jmsMsg, aid, index, delayMillisec);
 			getProducer(msg).send(jmsMsg);
 		} catch (Exception ex) {
@@ -124,7 +163,7 @@ public class MessageManagerBean implements MessageManager {
 		}
 	}
 
-	private void setupJmsMsg(ObjectMessage jmsMsg, AID aid, int index, long delayMillisec)
+	private void setupJmsMsg(Message jmsMsg, AID aid, int index, long delayMillisec)
 			throws JMSException {
 		// TODO See message grouping in a cluster
 		// http://docs.jboss.org/hornetq/2.2.5.Final/user-manual/en/html/message-grouping.html
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.regex.Pattern;
+
+/**
+ * A single constraint of a {@link MsgPattern}: the named public field of {@link ACLMessage} is
+ * either equal to the given value, or its string representation matches the given regular
+ * expression. The given value is the expression, and the whole field has to match it.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class MsgField implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final String name;
+	private final Object value;
+	private final boolean pattern;
+	private transient Field field;
+	private transient Pattern regex;
+
+	public MsgField(String name, Object value, boolean pattern) {
+		this.name = name;
+		this.value = value;
+		this.pattern = pattern;
+		getField();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public boolean isPattern() {
+		return pattern;
+	}
+
+	public boolean matches(ACLMessage msg) {
+		Object actual;
+		try {
+			actual = getField().get(msg);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+		if (actual == null)
+			return value == null;
+		if (value == null)
+			return false;
+		if (pattern) {
+			if (regex == null)
+				regex = Pattern.compile(value.toString());
+			return regex.matcher(actual.toString()).matches();
+		}
+		return value.equals(actual);
+	}
+
+	private Field getField() {
+		if (field == null) {
+			try {
+				field = ACLMessage.class.getField(name);
+			} catch (NoSuchFieldException ex) {
+				throw new IllegalArgumentException(ex);
+			}
+		}
+		return field;
+	}
+}
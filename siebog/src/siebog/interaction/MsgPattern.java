@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A conjunction of {@link MsgField} constraints, used for selective receive. Equality
+ * constraints on the indexed fields ({@link #INDEXED}) allow the {@link Mailbox} to locate the
+ * matching messages without scanning all of them.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class MsgPattern implements Serializable {
+	private static final long serialVersionUID = 1L;
+	public static final String[] INDEXED = { "inReplyTo", "conversationId", "performative" };
+	private final List<MsgField> fields;
+
+	public MsgPattern(List<MsgField> fields) {
+		this.fields = fields;
+	}
+
+	public boolean matched(ACLMessage msg) {
+		for (MsgField f : fields)
+			if (!f.matches(msg))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The equality constraint on the most selective indexed field, or null if there is
+	 *         none.
+	 */
+	public MsgField getIndexed() {
+		for (String name : INDEXED)
+			for (MsgField f : fields)
+				if (!f.isPattern() && f.getValue() != null && f.getName().equals(name))
+					return f;
+		return null;
+	}
+
+	public List<MsgField> getFields() {
+		return fields;
+	}
+}
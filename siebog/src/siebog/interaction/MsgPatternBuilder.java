@@ -18,7 +18,7 @@
  * and limitations under the License.
  */
 
-package siebog.test.framework.receivers;
+package siebog.interaction;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +37,18 @@ public class MsgPatternBuilder {
 		return new MsgPatternBuilder();
 	}
 
+	public static MsgPattern inReplyTo(String replyWith) {
+		return fromFields().field("inReplyTo").equalTo(replyWith).build();
+	}
+
+	public static MsgPattern conversationId(String conversationId) {
+		return fromFields().field("conversationId").equalTo(conversationId).build();
+	}
+
+	public static MsgPattern performative(Performative performative) {
+		return fromFields().field("performative").equalTo(performative).build();
+	}
+
 	public MsgPatternBuilder field(String name) {
 		fieldName = name;
 		return this;
@@ -46,8 +58,8 @@ public class MsgPatternBuilder {
 		return withValue(value, false);
 	}
 
-	public MsgPatternBuilder matches(String value) {
-		return withValue(value, true);
+	public MsgPatternBuilder matches(String regex) {
+		return withValue(regex, true);
 	}
 
 	public MsgPattern build() {
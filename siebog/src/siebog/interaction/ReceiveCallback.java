@@ -18,31 +18,19 @@
  * and limitations under the License.
  */
 
-package siebog.test.framework.receivers;
+package siebog.interaction;
+
+import java.io.Serializable;
 
 /**
+ * Completion of a selective receive. Since it is kept as a part of the agent's state, the
+ * implementation needs to be serializable.
+ * 
  * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
  */
-public class MsgField {
-	private final String name;
-	private final Object value;
-	private final boolean pattern;
-
-	public MsgField(String name, Object value, boolean pattern) {
-		this.name = name;
-		this.value = value;
-		this.pattern = pattern;
-	}
-
-	public String getName() {
-		return name;
-	}
-
-	public Object getValue() {
-		return value;
-	}
-
-	public boolean isPattern() {
-		return pattern;
-	}
+public interface ReceiveCallback extends Serializable {
+	/**
+	 * @param msg The received message, or null if the receive has timed out.
+	 */
+	void onReceive(ACLMessage msg);
 }
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import siebog.agents.AID;
+import siebog.agents.AIDTable;
+
+/**
+ * Binary representation of ACL messages exchanged between the nodes. AIDs of running agents,
+ * wherever they appear in the message (sender, receivers, content objects, etc.) are replaced by
+ * their compact identifiers from the {@link AIDTable}, and resolved back to the canonical
+ * instances on the receiving side.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class WireFormat {
+	private WireFormat() {
+	}
+
+	private static final class AIDRef implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final long id;
+
+		AIDRef(long id) {
+			this.id = id;
+		}
+	}
+
+	private static final class Output extends ObjectOutputStream {
+		private final AIDTable table = AIDTable.get();
+
+		Output(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof AID) {
+				long id = table.idOf((AID) obj);
+				if (id != AIDTable.NO_ID)
+					return new AIDRef(id);
+			}
+			return obj;
+		}
+	}
+
+	private static final class Input extends ObjectInputStream {
+		private final AIDTable table = AIDTable.get();
+
+		Input(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof AIDRef) {
+				AID aid = table.resolve(((AIDRef) obj).id);
+				if (aid == null)
+					throw new InvalidObjectException("Unknown AID identifier: " + ((AIDRef) obj).id);
+				return aid;
+			}
+			if (obj instanceof AID)
+				return table.canonical((AID) obj);
+			return obj;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException,
+				ClassNotFoundException {
+			// content objects can be defined in other deployments
+			ClassLoader loader = Thread.currentThread().getContextClassLoader();
+			if (loader != null) {
+				try {
+					return Class.forName(desc.getName(), false, loader);
+				} catch (ClassNotFoundException ex) {
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	public static byte[] encode(ACLMessage msg) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try (ObjectOutputStream out = new Output(bytes)) {
+			out.writeObject(msg);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static ACLMessage decode(byte[] data) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new Input(new ByteArrayInputStream(data))) {
+			return (ACLMessage) in.readObject();
+		}
+	}
+}
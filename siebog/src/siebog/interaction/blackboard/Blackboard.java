@@ -22,81 +22,204 @@ package siebog.interaction.blackboard;
 
 
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
+import siebog.agents.AgentInitArgs;
 
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
-import siebog.utils.ObjectFactory;
 
 /**
+ * Collects the estimates of the knowledge sources for each event, and lets the control component
+ * choose among them. Only the knowledge sources whose triggers match the event are notified, see
+ * {@link KnowledgeSource#sendTrigger(Trigger)}. The collection closes as soon as all of them have
+ * replied, once {@link #getQuorum()} estimates have arrived, or when the
+ * {@link #getEstimateTimeout()} expires, whichever comes first. Estimates arriving after that are
+ * ignored, and no per-event state is kept past that point.
+ * <p>
+ * A blackboard can be partitioned, see {@link BlackboardShards}. Each shard has its own control
+ * component, and handles the events whose names hash to it. Events of the other shards are
+ * forwarded to them.
+ * 
  * @author <a href="jovanai.191@gmail.com">Jovana Ivkovic<a>
  */
 
 public abstract class Blackboard extends XjafAgent {
 
 	//different ks need to be informed when different events occur
-	//hash map - key is the simple name of the event that triggered it,
-	//and the value is the collection of AIDs of the KSs that need to be informed
+	//the triggers of all KSs are compiled into a single discrimination network,
+	//which returns the AIDs of the KSs that need to be informed
 
 	private static final long serialVersionUID = 1L;
-	private HashMap<String,List<AID>> notifications = new HashMap<>();
-	private List<Event> events = new ArrayList<>();
-	private HashMap<String,List<Estimate>> estimates = new HashMap<>();
+	private static final Logger LOG = LoggerFactory.getLogger(Blackboard.class);
+	// how long to wait for the estimates of the knowledge sources
+	public static final long ESTIMATE_TIMEOUT = Long.getLong("siebog.blackboard.timeout", 2000);
+	// number of estimates after which the collection closes; 0 to wait for all
+	public static final int QUORUM = Integer.getInteger("siebog.blackboard.quorum", 0);
+	private TriggerNetwork notifications = new TriggerNetwork();
+	// open estimate collections, by event name; removed once closed
+	private HashMap<String, EstimateCollection> estimates = new HashMap<>();
+	private long round;
+	// name of the (partitioned) blackboard this agent belongs to
+	private String blackboardName;
+	private boolean primary;
+
+	private static class EstimateCollection implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final long round;
+		// knowledge sources that haven't replied yet
+		final Set<AID> expected;
+		final List<Estimate> received = new ArrayList<>();
+
+		EstimateCollection(long round, Set<AID> expected) {
+			this.round = round;
+			this.expected = expected;
+		}
+	}
+
+	@Override
+	public void init(AID aid, AgentInitArgs args) {
+		super.init(aid, args);
+		String shardOf = args != null ? args.get(BlackboardShards.SHARD_OF, null) : null;
+		primary = shardOf == null;
+		blackboardName = primary ? aid.getName() : shardOf;
+		int shards = args != null ? args.getInt(BlackboardShards.SHARDS, 0) : 0;
+		if (primary && shards > 1)
+			BlackboardShards.deploy(aid, args, shards);
+	}
+
+	@Override
+	protected void onTerminate() {
+		if (primary)
+			BlackboardShards.undeploy(myAid, agm());
+	}
 
 	public void startBlackboard(Event event){
-		events.add(event);
-		notifications.put(event.getName(), ObjectFactory.getAgentManager().getRunningAgents());
+		AID owner = BlackboardShards.route(blackboardName, myAid, event.getName());
+		if (!owner.equals(myAid)) {
+			// the estimates are collected by the shard that owns the event
+			forward(event, "START", owner);
+			return;
+		}
 		newEventNotification(event);
 	}
 
 	public void addTriggers(ACLMessage msg){
-		if (notifications.get(msg.content)==null ){
-			List<AID> list = new ArrayList<>();
-			list.add(msg.sender);
-			notifications.put(msg.content, list);
-		} else {
-			notifications.get(msg.content).add(msg.sender);
+		Trigger trigger = msg.contentObj instanceof Trigger ? (Trigger) msg.contentObj
+				: Trigger.on(msg.content);
+		// triggers not limited to a single event name are sent to all shards
+		String name = trigger.getName();
+		AID owner = name != null ? BlackboardShards.route(blackboardName, myAid, name) : myAid;
+		if (!owner.equals(myAid)) {
+			forward(msg, owner);
+			return;
 		}
+		notifications.add(trigger, msg.sender);
 	}
 
 	public void newEventNotification(Event event){
+		AID owner = BlackboardShards.route(blackboardName, myAid, event.getName());
+		if (!owner.equals(myAid)) {
+			forward(event, "CC", owner);
+			return;
+		}
 		ACLMessage msg = new ACLMessage(Performative.INFORM);
 		msg.sender=myAid;
 
 		msg.contentObj = event;
 
-		msg.receivers = notifications.get(event.getName());
+		msg.receivers = notifications.match(event);
 
-	
-		if (msg.receivers!=null){
-			msm().post(msg);
-		}
+		if (msg.receivers == null || msg.receivers.isEmpty())
+			return; // nobody to ask
+		// a new notification replaces the collection of an earlier event with the same name
+		EstimateCollection c = new EstimateCollection(++round, new HashSet<>(msg.receivers));
+		estimates.put(event.getName(), c);
+		msm().post(msg);
 
-		//send delayed message
+		//send delayed message, in case some of the KSs don't reply
 		ACLMessage delayedMsg = new ACLMessage();
 		delayedMsg.sender=myAid;
 		delayedMsg.receivers.add(myAid);
-		//wait for 2 seconds for KS to send their estimation
 		delayedMsg.content = event.getName();
-		msm().post(delayedMsg,2000);
+		delayedMsg.contentObj = c.round;
+		msm().post(delayedMsg, getEstimateTimeout());
 	}
 
 	public void handleProposal(ACLMessage msg){
 		Estimate e = (Estimate) msg.contentObj;
 		String eventName = e.getEvent().getName();
-		if (estimates.get(eventName)==null){
-			List<Estimate> list = new ArrayList<>();
-			list.add(e);
-			estimates.put(eventName, list);
-		} else {
-			estimates.get(eventName).add(e);
+		EstimateCollection c = estimates.get(eventName);
+		if (c == null) {
+			LOG.debug("Late estimate {} ignored.", e);
+			return;
 		}
+		c.received.add(e);
+		c.expected.remove(msg.sender);
+		int quorum = getQuorum();
+		if (c.expected.isEmpty() || (quorum > 0 && c.received.size() >= quorum))
+			close(eventName);
+	}
+
+	private void forward(ACLMessage msg, AID owner) {
+		ACLMessage fwd = new ACLMessage(msg.performative);
+		fwd.sender = msg.sender;
+		fwd.receivers.add(owner);
+		fwd.content = msg.content;
+		fwd.contentObj = msg.contentObj;
+		msm().post(fwd);
+	}
+
+	private void forward(Event event, String content, AID owner) {
+		ACLMessage fwd = new ACLMessage(Performative.INFORM);
+		fwd.sender = myAid;
+		fwd.receivers.add(owner);
+		fwd.content = content;
+		fwd.contentObj = event;
+		msm().post(fwd);
+	}
+
+	private void onEstimateTimeout(ACLMessage msg) {
+		EstimateCollection c = estimates.get(msg.content);
+		// the collection might have been closed already, and a new one opened for the same name
+		if (c != null && msg.contentObj instanceof Long && c.round == (Long) msg.contentObj) {
+			LOG.info("Estimate timeout for event {}, no reply from {}.", msg.content, c.expected);
+			close(msg.content);
+		}
+	}
+
+	private void close(String eventName) {
+		EstimateCollection c = estimates.remove(eventName);
+		if (c.received.isEmpty())
+			return;
+		if (c.received.size() > 1)
+			acceptProposal(getControlComponent().chooseBestProposal(c.received));
+		else
+			acceptProposal(c.received.get(0));
+	}
 
+	/**
+	 * Maximum time to wait for the estimates of an event, in milliseconds.
+	 */
+	protected long getEstimateTimeout() {
+		return ESTIMATE_TIMEOUT;
+	}
+
+	/**
+	 * Number of estimates after which the collection closes, even if some of the knowledge
+	 * sources haven't replied yet. Zero means all of them.
+	 */
+	protected int getQuorum() {
+		return QUORUM;
 	}
 
 	public abstract ControlComponent getControlComponent();
@@ -118,6 +241,8 @@ public abstract class Blackboard extends XjafAgent {
 		case INFORM:
 			if (msg.content.equals("CC"))
 				newEventNotification((Event)msg.contentObj);
+			else if (msg.content.equals("START"))
+				startBlackboard((Event) msg.contentObj);
 			else
 				getControlComponent().receiveEvent((Event) msg.contentObj, myAid);
 			break;
@@ -125,15 +250,7 @@ public abstract class Blackboard extends XjafAgent {
 			handleProposal(msg);
 			break;
 		default:
-
-			if (estimates.get(msg.content)!=null) {
-				if (estimates.get(msg.content).size()>1){
-					Estimate bestEstimate = getControlComponent().chooseBestProposal(estimates.get(msg.content));
-					acceptProposal(bestEstimate);
-				} else {
-					acceptProposal(estimates.get(msg.content).get(0));
-
-				} }
+			onEstimateTimeout(msg);
 			break;
 		}
 
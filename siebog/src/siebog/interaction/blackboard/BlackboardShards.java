@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.blackboard;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.utils.GlobalCache;
+
+/**
+ * Shards of a partitioned blackboard. A blackboard started with the init argument {@link #SHARDS}
+ * set to N becomes the first shard, and starts N-1 more instances of its own class, one per
+ * cluster node in a round-robin fashion. Event names are hashed to shards, so that the knowledge
+ * sources subscribe to, and the control components handle, each event on exactly one shard.
+ * Independent events are thus processed in parallel.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class BlackboardShards implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(BlackboardShards.class);
+	public static final String SHARDS = "shards";
+	public static final String SHARD_OF = "shardOf";
+	private static volatile Cache<String, BlackboardShards> cache;
+	private final ArrayList<AID> shards;
+
+	public BlackboardShards(List<AID> shards) {
+		this.shards = new ArrayList<>(shards);
+	}
+
+	public List<AID> getShards() {
+		return shards;
+	}
+
+	/**
+	 * @return The shard responsible for the given event name.
+	 */
+	public AID route(String eventName) {
+		return shards.get((eventName.hashCode() & 0x7fffffff) % shards.size());
+	}
+
+	/**
+	 * @return Shards of the blackboard, or null if it's not partitioned.
+	 */
+	public static BlackboardShards of(String blackboardName) {
+		return cache().get(blackboardName);
+	}
+
+	/**
+	 * @return The shard responsible for the given event name, or the blackboard itself if it's not
+	 *         partitioned.
+	 */
+	public static AID route(String blackboardName, AID blackboard, String eventName) {
+		BlackboardShards s = of(blackboardName);
+		return s != null ? s.route(eventName) : blackboard;
+	}
+
+	/**
+	 * @return All shards of the blackboard, or only the blackboard itself if it's not partitioned.
+	 */
+	public static List<AID> all(String blackboardName, AID blackboard) {
+		BlackboardShards s = of(blackboardName);
+		return s != null ? s.shards : Collections.singletonList(blackboard);
+	}
+
+	static void deploy(AID primary, AgentInitArgs args, int n) {
+		AgentInitArgs shardArgs = new AgentInitArgs();
+		for (Entry<String, String> e : args.toStringMap().entrySet())
+			if (!e.getKey().equals(SHARDS))
+				shardArgs.put(e.getKey(), e.getValue());
+		shardArgs.put(SHARD_OF, primary.getName());
+		shardArgs.put("noUIUpdate", "true");
+
+		Cache<AID, Agent> agents = GlobalCache.get().getRunningAgents();
+		List<Address> members = agents.getCacheManager().getMembers();
+		int self = Math.max(0, members.indexOf(agents.getCacheManager().getAddress()));
+		List<AID> shards = new ArrayList<>(n);
+		shards.add(primary);
+		for (int i = 1; i < n; i++)
+			shards.add(new AID(primary.getName() + "-shard" + i, primary.getHost(), primary
+					.getAgClass()));
+		// published first, so that the messages of the shards are routed from the start
+		cache().put(primary.getName(), new BlackboardShards(shards));
+		List<Future<Void>> futures = new ArrayList<>(n);
+		DistributedExecutorService des = new DefaultExecutorService(agents);
+		try {
+			for (int i = 1; i < n; i++) {
+				Address node = members.get((self + i) % members.size());
+				futures.add(des.submit(node, new ShardTask(shards.get(i), shardArgs)));
+			}
+			for (Future<Void> f : futures)
+				f.get();
+		} catch (InterruptedException | ExecutionException ex) {
+			cache().remove(primary.getName());
+			throw new IllegalStateException("Unable to start the shards of " + primary, ex);
+		} finally {
+			des.shutdown();
+		}
+		LOG.info("Started {} shards of blackboard {}.", n, primary);
+	}
+
+	static void undeploy(AID primary, AgentManager agm) {
+		BlackboardShards bs = cache().remove(primary.getName());
+		if (bs != null)
+			for (AID aid : bs.shards)
+				if (!aid.equals(primary))
+					try {
+						agm.stopAgent(aid);
+					} catch (Exception ex) {
+						LOG.warn("Unable to stop shard {}.", aid, ex);
+					}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Cache<String, BlackboardShards> cache() {
+		if (cache == null)
+			cache = (Cache<String, BlackboardShards>) GlobalCache.get().getCache(
+					GlobalCache.BLACKBOARD_SHARDS);
+		return cache;
+	}
+}
@@ -21,6 +21,7 @@
 package siebog.interaction.blackboard;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.List;
 
 import siebog.agents.AID;
@@ -31,10 +32,13 @@ import siebog.agents.AID;
 public class Event implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
+	public static final String NAME = "name";
+	public static final String CONTENT = "content";
 	private String name;
 	private String content;
 	private Serializable contentObj;
 	private List<AID> KSs;
+	private HashMap<String, Serializable> attributes;
 
 	public String getName() {
 		return name;
@@ -68,6 +72,26 @@ public class Event implements Serializable {
 		KSs = kSs;
 	}
 
+	/**
+	 * @return Value of the attribute, for use in {@link Trigger}s. The name and the content are
+	 *         available as the {@link #NAME} and {@link #CONTENT} attributes.
+	 */
+	public Serializable getAttribute(String attribute) {
+		if (NAME.equals(attribute))
+			return name;
+		if (CONTENT.equals(attribute))
+			return content;
+		return attributes != null ? attributes.get(attribute) : null;
+	}
+
+	public void setAttribute(String attribute, Serializable value) {
+		if (NAME.equals(attribute) || CONTENT.equals(attribute))
+			throw new IllegalArgumentException("Use setName and setContent instead.");
+		if (attributes == null)
+			attributes = new HashMap<>();
+		attributes.put(attribute, value);
+	}
+
 	@Override
 	public String toString() {
 		return "Event [name=" + name + ", content=" + content + ", KSs=" + KSs
@@ -20,15 +20,22 @@
 
 package siebog.interaction.blackboard;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import siebog.agents.AID;
+import siebog.agents.OnMessage;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
 import siebog.utils.ObjectFactory;
 
 /**
+ * Subscribes to the events of a blackboard, and proposes to handle them. Subscriptions are either
+ * event names, or {@link Trigger}s over the events' attributes. With a partitioned
+ * blackboard, each trigger is sent to the shard responsible for it, and the replies go to the
+ * shard that asked.
+ * 
  * @author <a href="jovanai.191@gmail.com">Jovana Ivkovic<a>
  */
 
@@ -38,21 +45,41 @@ public abstract class KnowledgeSource extends XjafAgent {
 
 	private List<String> trigers;
 	private AID blackboardAID;
+	private String blackboardName;
 	
+	@OnMessage(performative = Performative.REQUEST)
 	public abstract void defineTriggers();
 	
 	public void defineTriggers(List<String> triggers,String blackboardName){
-		this.trigers = triggers;
+		this.trigers = new ArrayList<>(triggers);
+		this.blackboardName = blackboardName;
 		blackboardAID = ObjectFactory.getAgentManager().getAIDByRuntimeName(blackboardName);
 		for (String trigger: triggers){
 			sendTrigger(trigger);
 		}
 	}
 	
+	public void defineTriggers(String blackboardName, Trigger... triggers) {
+		this.trigers = new ArrayList<>();
+		this.blackboardName = blackboardName;
+		blackboardAID = ObjectFactory.getAgentManager().getAIDByRuntimeName(blackboardName);
+		for (Trigger trigger : triggers)
+			sendTrigger(trigger);
+	}
+
 	public void sendTrigger(String trigger){
+		sendTrigger(Trigger.on(trigger));
+	}
+
+	public void sendTrigger(Trigger trigger) {
 		ACLMessage msg = new ACLMessage(Performative.SUBSCRIBE);
-		msg.receivers.add(blackboardAID);
-		msg.content = trigger;
+		String name = trigger.getName();
+		if (name != null)
+			msg.receivers.add(BlackboardShards.route(blackboardName, blackboardAID, name));
+		else
+			msg.receivers.addAll(BlackboardShards.all(blackboardName, blackboardAID));
+		msg.content = name;
+		msg.contentObj = trigger;
 		msg.sender=myAid;
 		msm().post(msg);
 	}
@@ -62,12 +89,13 @@ public abstract class KnowledgeSource extends XjafAgent {
 		sendTrigger(trigger);
 	}
 	
+	@OnMessage(performative = Performative.INFORM)
 	public void handleInform(ACLMessage msg){
 		Estimate e = giveEstimate((Event)msg.contentObj);
 		e.setEvent((Event)msg.contentObj);
 		ACLMessage proposal = new ACLMessage(Performative.PROPOSE);
 		proposal.sender=myAid;
-		proposal.receivers.add(blackboardAID);
+		proposal.receivers.add(replyTo(msg));
 		proposal.contentObj=e;
 		proposal.content=((Event)msg.contentObj).getName();
 		
@@ -76,33 +104,21 @@ public abstract class KnowledgeSource extends XjafAgent {
 	
 	public abstract Estimate giveEstimate(Event e);
 	
+	@OnMessage(performative = Performative.ACCEPT_PROPOSAL)
 	public void handleAcceptProposal(ACLMessage msg){
 		Event result = handleEvent(((Estimate)msg.contentObj).getEvent());
 		ACLMessage myResult = new ACLMessage(Performative.INFORM);
 		myResult.sender=myAid;
-		myResult.receivers.add(blackboardAID);
+		myResult.receivers.add(replyTo(msg));
 		myResult.contentObj=result;
 		myResult.content = "KS";
 		msm().post(myResult);
 	}
 	
 	public abstract Event handleEvent(Event e);
-	
-	@Override
-	protected void onMessage(ACLMessage msg) {
-		switch(msg.performative){
-		case INFORM:
-			handleInform(msg);
-			break;
-		case ACCEPT_PROPOSAL:
-			handleAcceptProposal(msg);
-			break;
-		case REQUEST:
-			defineTriggers();
-			break;
-		default:
-			break;
-		}
+
+	private AID replyTo(ACLMessage msg) {
+		return msg.sender != null ? msg.sender : blackboardAID;
 	}
 
 }
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.blackboard;
+
+import java.io.Serializable;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Starts a blackboard shard on the node it is submitted to.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ShardTask implements DistributedCallable<AID, Agent, Void>, Serializable {
+	private static final long serialVersionUID = 1L;
+	private final AID aid;
+	private final AgentInitArgs args;
+
+	public ShardTask(AID aid, AgentInitArgs args) {
+		this.aid = aid;
+		this.args = args;
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public Void call() throws Exception {
+		ObjectFactory.getAgentManager().startServerAgent(aid, args);
+		return null;
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.blackboard;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Conjunction of conditions over the attributes of an {@link Event}, see
+ * {@link Event#getAttribute(String)}. For example,
+ * {@code Trigger.on("SQUARE").where("count", Op.GT, 10)}, or
+ * {@code Trigger.prefix("SQUARE-")}. Triggers are compiled into the blackboard's
+ * {@link TriggerNetwork}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class Trigger implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Op {
+		// indexed in the network
+		EQ, PREFIX,
+		// tested one by one
+		LT, GT, MATCHES
+	}
+
+	private final ArrayList<Condition> conditions = new ArrayList<>();
+
+	public static Trigger on(String eventName) {
+		return any().where(Event.NAME, Op.EQ, eventName);
+	}
+
+	public static Trigger prefix(String eventNamePrefix) {
+		return any().where(Event.NAME, Op.PREFIX, eventNamePrefix);
+	}
+
+	public static Trigger any() {
+		return new Trigger();
+	}
+
+	public Trigger where(String attribute, Op op, Serializable value) {
+		if (attribute == null || op == null || value == null)
+			throw new IllegalArgumentException("Attribute, operator and value are required.");
+		if ((op == Op.PREFIX || op == Op.MATCHES) && !(value instanceof String))
+			throw new IllegalArgumentException(op + " requires a string value.");
+		if ((op == Op.LT || op == Op.GT) && !(value instanceof Comparable))
+			throw new IllegalArgumentException(op + " requires a comparable value.");
+		conditions.add(new Condition(attribute, op, value));
+		return this;
+	}
+
+	/**
+	 * @return The exact event name this trigger is limited to, or null if it can match events
+	 *         with different names.
+	 */
+	public String getName() {
+		for (Condition c : conditions)
+			if (c.op == Op.EQ && c.attribute.equals(Event.NAME))
+				return c.value.toString();
+		return null;
+	}
+
+	public boolean matches(Event e) {
+		for (Condition c : conditions)
+			if (!c.matches(e))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Conditions in the order in which they are compiled: the indexed ones first, starting with
+	 * the event name, so that the triggers share as much of the network as possible.
+	 */
+	List<Condition> compile() {
+		List<Condition> list = new ArrayList<>(conditions);
+		Collections.sort(list, ORDER);
+		return list;
+	}
+
+	@Override
+	public String toString() {
+		return conditions.toString();
+	}
+
+	private static final Comparator<Condition> ORDER = new Comparator<Condition>() {
+		@Override
+		public int compare(Condition a, Condition b) {
+			int c = a.op.compareTo(b.op);
+			if (c != 0)
+				return c;
+			boolean an = a.attribute.equals(Event.NAME), bn = b.attribute.equals(Event.NAME);
+			if (an != bn)
+				return an ? -1 : 1;
+			c = a.attribute.compareTo(b.attribute);
+			return c != 0 ? c : String.valueOf(a.value).compareTo(String.valueOf(b.value));
+		}
+	};
+
+	static class Condition implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final String attribute;
+		final Op op;
+		final Serializable value;
+		private transient Pattern pattern;
+
+		Condition(String attribute, Op op, Serializable value) {
+			this.attribute = attribute;
+			this.op = op;
+			this.value = value;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		boolean matches(Event e) {
+			Object v = e.getAttribute(attribute);
+			if (v == null)
+				return false;
+			switch (op) {
+			case EQ:
+				return key(value).equals(key(v));
+			case PREFIX:
+				return v instanceof String && ((String) v).startsWith((String) value);
+			case MATCHES:
+				if (!(v instanceof String))
+					return false;
+				if (pattern == null)
+					pattern = Pattern.compile((String) value);
+				return pattern.matcher((String) v).matches();
+			default:
+				int c;
+				if (value instanceof Number && v instanceof Number)
+					c = Double.compare(((Number) v).doubleValue(), ((Number) value).doubleValue());
+				else if (value.getClass().isInstance(v))
+					c = ((Comparable) v).compareTo(value);
+				else
+					return false;
+				return op == Op.LT ? c < 0 : c > 0;
+			}
+		}
+
+		/**
+		 * Numbers are compared by value, regardless of their type.
+		 */
+		static Object key(Object v) {
+			if (v instanceof Number) {
+				Number n = (Number) v;
+				if (n.doubleValue() == n.longValue())
+					return n.longValue();
+				return n.doubleValue();
+			}
+			return v;
+		}
+
+		@Override
+		public int hashCode() {
+			return (attribute.hashCode() * 31 + op.hashCode()) * 31 + key(value).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Condition))
+				return false;
+			Condition c = (Condition) obj;
+			return op == c.op && attribute.equals(c.attribute) && key(value).equals(key(c.value));
+		}
+
+		@Override
+		public String toString() {
+			return attribute + " " + op + " " + value;
+		}
+	}
+}
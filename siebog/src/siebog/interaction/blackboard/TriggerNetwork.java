@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.blackboard;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import siebog.agents.AID;
+import siebog.interaction.blackboard.Trigger.Condition;
+
+/**
+ * Discrimination network shared by the triggers of all knowledge sources, similar to the alpha
+ * network of Rete. Each trigger is a path of conditions from the root, and the knowledge source
+ * is stored at its last node. Triggers with common conditions share the nodes.
+ * <p>
+ * The equality and prefix conditions are hash-indexed by their value, so that an event only
+ * visits the children whose value it has. The remaining conditions are tested one by one, but only
+ * at the nodes the event has reached. The matching cost thus depends on the triggers which are
+ * (nearly) satisfied by the event, rather than on all registered triggers.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class TriggerNetwork implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final Node root = new Node();
+	private int size;
+
+	private static class Node implements Serializable {
+		private static final long serialVersionUID = 1L;
+		LinkedHashSet<AID> subscribers;
+		// attribute -> value -> child
+		HashMap<String, HashMap<Object, Node>> equal;
+		HashMap<String, PrefixIndex> prefix;
+		// other conditions
+		HashMap<Condition, Node> tests;
+
+		Node child(Condition c) {
+			switch (c.op) {
+			case EQ:
+				if (equal == null)
+					equal = new HashMap<>();
+				HashMap<Object, Node> byValue = equal.get(c.attribute);
+				if (byValue == null) {
+					byValue = new HashMap<>();
+					equal.put(c.attribute, byValue);
+				}
+				return getOrAdd(byValue, Condition.key(c.value));
+			case PREFIX:
+				if (prefix == null)
+					prefix = new HashMap<>();
+				PrefixIndex index = prefix.get(c.attribute);
+				if (index == null) {
+					index = new PrefixIndex();
+					prefix.put(c.attribute, index);
+				}
+				index.lengths.add(((String) c.value).length());
+				return getOrAdd(index.byPrefix, c.value);
+			default:
+				if (tests == null)
+					tests = new HashMap<>();
+				return getOrAdd(tests, c);
+			}
+		}
+
+		private static <K> Node getOrAdd(Map<K, Node> map, K key) {
+			Node n = map.get(key);
+			if (n == null) {
+				n = new Node();
+				map.put(key, n);
+			}
+			return n;
+		}
+	}
+
+	private static class PrefixIndex implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final HashMap<Object, Node> byPrefix = new HashMap<>();
+		// distinct lengths of the registered prefixes
+		final TreeSet<Integer> lengths = new TreeSet<>();
+	}
+
+	/**
+	 * Registers the trigger of a knowledge source. Registering the same trigger twice has no
+	 * effect.
+	 */
+	public void add(Trigger trigger, AID ks) {
+		Node n = root;
+		for (Condition c : trigger.compile())
+			n = n.child(c);
+		if (n.subscribers == null)
+			n.subscribers = new LinkedHashSet<>();
+		if (n.subscribers.add(ks))
+			++size;
+	}
+
+	/**
+	 * @return Knowledge sources with at least one trigger matching the event, without duplicates.
+	 */
+	public List<AID> match(Event e) {
+		Set<AID> result = new LinkedHashSet<>();
+		match(root, e, result);
+		return new ArrayList<>(result);
+	}
+
+	/**
+	 * @return Number of registered (trigger, knowledge source) pairs.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void match(Node n, Event e, Set<AID> result) {
+		if (n.subscribers != null)
+			result.addAll(n.subscribers);
+		if (n.equal != null)
+			for (Entry<String, HashMap<Object, Node>> entry : n.equal.entrySet()) {
+				Object v = e.getAttribute(entry.getKey());
+				Node child = v != null ? entry.getValue().get(Condition.key(v)) : null;
+				if (child != null)
+					match(child, e, result);
+			}
+		if (n.prefix != null)
+			for (Entry<String, PrefixIndex> entry : n.prefix.entrySet()) {
+				Object v = e.getAttribute(entry.getKey());
+				if (!(v instanceof String))
+					continue;
+				String s = (String) v;
+				PrefixIndex index = entry.getValue();
+				for (int len : index.lengths) {
+					if (len > s.length())
+						break;
+					Node child = index.byPrefix.get(s.substring(0, len));
+					if (child != null)
+						match(child, e, result);
+				}
+			}
+		if (n.tests != null)
+			for (Entry<Condition, Node> entry : n.tests.entrySet())
+				if (entry.getKey().matches(e))
+					match(entry.getValue(), e, result);
+	}
+}
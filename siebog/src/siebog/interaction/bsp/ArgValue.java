@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+
+/**
+ * A value together with its argument, e.g. a fitness and the position it was reached at. Reduced
+ * by {@link Combiners#ARGMIN} and {@link Combiners#ARGMAX}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ArgValue implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final Serializable arg;
+	private final double value;
+
+	public ArgValue(Serializable arg, double value) {
+		this.arg = arg;
+		this.value = value;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> T getArg() {
+		return (T) arg;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return arg + "=" + value;
+	}
+}
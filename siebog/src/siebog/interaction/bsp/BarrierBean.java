@@ -14,10 +14,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
 import siebog.agents.Agent;
-import siebog.agents.AgentManagerBean;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
+import siebog.utils.FailureDetector;
 import siebog.utils.ObjectFactory;
 
 @Stateful
@@ -28,13 +28,14 @@ public class BarrierBean extends XjafAgent {
 	private static final long serialVersionUID = 1L;
 	private static final Logger LOG = LoggerFactory.getLogger(BarrierBean.class);
 	public static final String PROTOCOL = "siebog-bsp";
-	private static final long TIMEOUT = 10000;
+	// how long to wait for the pending agents before checking if they are still alive
+	public static final long TIMEOUT = Long.getLong("siebog.bsp.timeout", 10000);
 	private int superstep;
 	private Set<AID> registered;
 	// agents that are processing messages in the current superste
 	private Set<AID> processing;
 	@Inject
-	private AgentManagerBean localAgm;
+	private FailureDetector failureDetector;
 
 	public BarrierBean() {
 		registered = new HashSet<>();
@@ -127,7 +128,7 @@ public class BarrierBean extends XjafAgent {
 		Iterator<AID> i = processing.iterator();
 		while (i.hasNext()) {
 			AID aid = i.next();
-			if (agentAlive(aid)) {
+			if (failureDetector.isAlive(aid)) {
 				signalSuperstep(superstep, Collections.singleton(aid));
 			} else {
 				i.remove();
@@ -135,16 +136,6 @@ public class BarrierBean extends XjafAgent {
 		}
 	}
 
-	private boolean agentAlive(AID aid) {
-		try {
-			Agent agent = localAgm.getAgentReference(aid);
-			agent.ping();
-			return true;
-		} catch (Exception ex) {
-			return false;
-		}
-	}
-
 	private Superstep buildSuperstep() {
 		return new Superstep(myAid.getName(), superstep);
 	}
@@ -1,5 +1,8 @@
 package siebog.interaction.bsp;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
 import javax.ejb.LocalBean;
 import javax.ejb.Singleton;
 import javax.inject.Inject;
@@ -9,13 +12,55 @@ import siebog.agents.AgentManagerBean;
 import siebog.interaction.ACLMsgBuilder;
 import siebog.interaction.Performative;
 
+/**
+ * Entry point of the BSP barriers. By default, barriers are implemented as combining trees, see
+ * {@link TreeBarrier}. Setting {@code siebog.bsp.barrier} to "flat" selects the single-agent
+ * {@link BarrierBean} instead.
+ * <p>
+ * With the tree barrier, participants can also exchange messages that are delivered at the start
+ * of the next superstep, see {@link #send(Superstep, AID, Serializable)}, and contribute to global
+ * aggregators, see {@link #agentCompletedSuperstep(Superstep, AID, Map)}. Agents with nothing left
+ * to do can {@link #voteToHalt(Superstep, AID) vote to halt}.
+ * <p>
+ * A barrier for which {@link #setStaleness(String, int)} has been called is handled by the
+ * {@link StaleBarrier} instead, and lets fast agents run ahead of the slow ones.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
 @Singleton
 @LocalBean
 public class BarrierManager {
+	public static final boolean FLAT = "flat".equals(System.getProperty("siebog.bsp.barrier",
+			"tree"));
 	@Inject
 	private AgentManagerBean agm;
+	@Inject
+	private TreeBarrier treeBarrier;
+	@Inject
+	private StaleBarrier staleBarrier;
+
+	/**
+	 * Switches the barrier to the stale-synchronous mode, where an agent may be up to
+	 * {@code staleness} supersteps ahead of the slowest one. Has to be called on each node before
+	 * the agents register, e.g. by all participants in their {@code onInit}.
+	 */
+	public void setStaleness(String barrierName, int staleness) {
+		staleBarrier.setStaleness(barrierName, staleness);
+	}
 
 	public void register(String barrierName, AID aid) {
+		register(barrierName, aid, FLAT);
+	}
+
+	public void register(String barrierName, AID aid, boolean flat) {
+		if (staleBarrier.manages(barrierName)) {
+			staleBarrier.register(barrierName, aid);
+			return;
+		}
+		if (!flat) {
+			treeBarrier.register(barrierName, aid);
+			return;
+		}
 		AID barrierAid = getBarrierAid(barrierName);
 		// @formatter:off
 		ACLMsgBuilder
@@ -27,6 +72,18 @@ public class BarrierManager {
 	}
 
 	public void deregister(String barrierName, AID aid) {
+		deregister(barrierName, aid, FLAT);
+	}
+
+	public void deregister(String barrierName, AID aid, boolean flat) {
+		if (staleBarrier.manages(barrierName)) {
+			staleBarrier.deregister(barrierName, aid);
+			return;
+		}
+		if (!flat) {
+			treeBarrier.deregister(barrierName, aid);
+			return;
+		}
 		AID barrierAid = getBarrierAid(barrierName);
 		// @formatter:off
 		ACLMsgBuilder
@@ -38,6 +95,18 @@ public class BarrierManager {
 	}
 
 	public void agentCompletedSuperstep(Superstep superstep, AID aid) {
+		agentCompletedSuperstep(superstep, aid, FLAT);
+	}
+
+	public void agentCompletedSuperstep(Superstep superstep, AID aid, boolean flat) {
+		if (staleBarrier.manages(superstep.getBarrierName())) {
+			staleBarrier.completed(superstep, aid);
+			return;
+		}
+		if (!flat) {
+			treeBarrier.completed(superstep, aid);
+			return;
+		}
 		AID barrierAid = getBarrierAid(superstep.getBarrierName());
 		// @formatter:off
 		ACLMsgBuilder
@@ -49,6 +118,74 @@ public class BarrierManager {
 
 	}
 
+	/**
+	 * Sends a value to another participant of the same barrier. The value is delivered with the
+	 * next superstep, in {@link Superstep#getMessages()}. Only supported by the tree barrier.
+	 * 
+	 * @throws IllegalStateException if the barrier is flat or stale-synchronous, the superstep is
+	 *         already over, or the sender has already completed it.
+	 */
+	public void send(Superstep current, AID receiver, Serializable value) {
+		checkTree(current.getBarrierName());
+		treeBarrier.send(current, receiver, value);
+	}
+
+	/**
+	 * Sets the combiner used to merge the values sent to the same receiver in a superstep. Should
+	 * be called on each node before the participants start sending.
+	 */
+	public void setCombiner(String barrierName, Combiner<? extends Serializable> combiner) {
+		checkTree(barrierName);
+		treeBarrier.setCombiner(barrierName, combiner);
+	}
+
+	/**
+	 * Completes the superstep, contributing the given values to the barrier's aggregators. The
+	 * reduced values are delivered with the next superstep, see
+	 * {@link Superstep#getAggregate(String)}. Only supported by the tree barrier.
+	 */
+	public void agentCompletedSuperstep(Superstep superstep, AID aid,
+			Map<String, ? extends Serializable> aggregates) {
+		checkTree(superstep.getBarrierName());
+		treeBarrier.completed(superstep, aid, aggregates, false);
+	}
+
+	public void agentCompletedSuperstep(Superstep superstep, AID aid, String aggregator,
+			Serializable value) {
+		agentCompletedSuperstep(superstep, aid, Collections.singletonMap(aggregator, value));
+	}
+
+	/**
+	 * Completes the superstep and makes the agent inactive. It won't be signalled in the following
+	 * supersteps until another agent sends it a message. The computation is over once all agents
+	 * have halted and there are no messages in flight. Only supported by the tree barrier.
+	 */
+	public void voteToHalt(Superstep superstep, AID aid) {
+		voteToHalt(superstep, aid, Collections.<String, Serializable> emptyMap());
+	}
+
+	public void voteToHalt(Superstep superstep, AID aid,
+			Map<String, ? extends Serializable> aggregates) {
+		checkTree(superstep.getBarrierName());
+		treeBarrier.completed(superstep, aid, aggregates, true);
+	}
+
+	/**
+	 * Adds a global aggregator to the barrier, e.g. one of {@link Combiners}. Should be called
+	 * before the participants start contributing to it.
+	 */
+	public void addAggregator(String barrierName, String name,
+			Combiner<? extends Serializable> aggregator) {
+		checkTree(barrierName);
+		treeBarrier.addAggregator(barrierName, name, aggregator);
+	}
+
+	private void checkTree(String barrierName) {
+		if (FLAT || staleBarrier.manages(barrierName))
+			throw new IllegalStateException("Superstep messages, aggregators and halting require "
+					+ "the tree barrier.");
+	}
+
 	private AID getBarrierAid(String barrierName) {
 		AID aid = agm.getAIDByRuntimeName(barrierName);
 		if (aid != null) {
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import siebog.agents.AID;
+import siebog.utils.GlobalCache;
+
+/**
+ * Manifest of a coordinated BSP checkpoint, taken by the {@link TreeBarrier} between two
+ * supersteps. The state of the participants and the messages buffered for the next superstep are
+ * stored next to it, in the {@link GlobalCache#BSP_CHECKPOINTS} cache. Each barrier uses two slots
+ * in turn, so that the last complete checkpoint stays intact while the next one is being written.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class Checkpoint implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final String LATEST = "#latest";
+	private final String barrier;
+	private final long step;
+	private final int slot;
+	private final HashMap<String, Serializable> aggregates;
+	private final ArrayList<AID> participants = new ArrayList<>();
+	private final ArrayList<String> nodes = new ArrayList<>();
+
+	public Checkpoint(String barrier, long step, int slot, HashMap<String, Serializable> aggregates) {
+		this.barrier = barrier;
+		this.step = step;
+		this.slot = slot;
+		this.aggregates = aggregates;
+	}
+
+	public String getBarrier() {
+		return barrier;
+	}
+
+	/**
+	 * @return The last superstep completed before the checkpoint.
+	 */
+	public long getStep() {
+		return step;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * @return The values of the aggregators in the checkpointed superstep.
+	 */
+	public HashMap<String, Serializable> getAggregates() {
+		return aggregates;
+	}
+
+	public List<AID> getParticipants() {
+		return participants;
+	}
+
+	/**
+	 * @return The nodes whose buffered messages are part of the checkpoint.
+	 */
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return Keys of the participants' states and of the buffered messages.
+	 */
+	List<String> getDataKeys() {
+		List<String> keys = new ArrayList<>(participants.size() + nodes.size());
+		for (AID aid : participants)
+			keys.add(agentKey(barrier, slot, aid));
+		for (String node : nodes)
+			keys.add(inboxKey(barrier, slot, node));
+		return keys;
+	}
+
+	void addParticipants(List<AID> aids) {
+		participants.addAll(aids);
+	}
+
+	void addNode(String node) {
+		nodes.add(node);
+	}
+
+	/**
+	 * Key of the slot holding the last complete checkpoint of the barrier.
+	 */
+	static String latestKey(String barrier) {
+		return barrier + LATEST;
+	}
+
+	static boolean isLatestKey(Object key) {
+		return key instanceof String && ((String) key).endsWith(LATEST);
+	}
+
+	static String barrierOf(String latestKey) {
+		return latestKey.substring(0, latestKey.length() - LATEST.length());
+	}
+
+	static String manifestKey(String barrier, int slot) {
+		return barrier + "#" + slot;
+	}
+
+	static String agentKey(String barrier, int slot, AID aid) {
+		return barrier + "#" + slot + "/" + aid.getStr();
+	}
+
+	static String inboxKey(String barrier, int slot, String node) {
+		return barrier + "#" + slot + "@" + node;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.distexec.DistributedCallable;
+
+/**
+ * Returns the barriers with a {@link Checkpoint} whose latest-slot entry is stored on the node.
+ * The checkpoints are distributed, so the root collects them from all nodes before a recovery.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class CheckpointIndexTask implements DistributedCallable<Object, Object, ArrayList<String>>,
+		Serializable {
+	private static final long serialVersionUID = 1L;
+	private transient Cache<Object, Object> cache;
+
+	@Override
+	public void setEnvironment(Cache<Object, Object> cache, Set<Object> inputKeys) {
+		this.cache = cache;
+	}
+
+	@Override
+	public ArrayList<String> call() {
+		ArrayList<String> result = new ArrayList<>();
+		for (Object key : cache.getAdvancedCache()
+				.withFlags(Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_LOAD).keySet())
+			if (Checkpoint.isLatestKey(key))
+				result.add(Checkpoint.barrierOf((String) key));
+		return result;
+	}
+}
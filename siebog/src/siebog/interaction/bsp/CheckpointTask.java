@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Asks a node to save its part of a BSP {@link Checkpoint}, or to roll back to one. Returns the
+ * participants registered at the node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class CheckpointTask implements DistributedCallable<AID, Agent, ArrayList<AID>>,
+		Serializable {
+	private static final long serialVersionUID = 1L;
+	private final boolean save;
+	private final String barrier;
+	private final int slot;
+	private final long generation;
+
+	private CheckpointTask(boolean save, String barrier, int slot, long generation) {
+		this.save = save;
+		this.barrier = barrier;
+		this.slot = slot;
+		this.generation = generation;
+	}
+
+	public static CheckpointTask save(String barrier, int slot) {
+		return new CheckpointTask(true, barrier, slot, 0);
+	}
+
+	/**
+	 * @param generation Generation of the barrier which starts with the rollback.
+	 */
+	public static CheckpointTask reset(String barrier, int slot, long generation) {
+		return new CheckpointTask(false, barrier, slot, generation);
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public ArrayList<AID> call() {
+		TreeBarrier tb = ObjectFactory.getTreeBarrier();
+		return save ? tb.onSave(barrier, slot) : tb.onReset(barrier, slot, generation);
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+
+/**
+ * Merges two BSP messages addressed to the same agent into one, see
+ * {@link BarrierManager#setCombiner(String, Combiner)}. The operation has to be commutative and
+ * associative, since the messages are combined in no particular order, both on the sending and
+ * on the receiving node. Global aggregators are combiners as well, see
+ * {@link BarrierManager#addAggregator(String, String, Combiner)}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public interface Combiner<T extends Serializable> extends Serializable {
+	T combine(T a, T b);
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+/**
+ * Common message combiners, also usable as aggregators.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public final class Combiners {
+	public static final Combiner<Double> SUM = new Combiner<Double>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Double combine(Double a, Double b) {
+			return a + b;
+		}
+	};
+
+	public static final Combiner<Long> COUNT = new Combiner<Long>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Long combine(Long a, Long b) {
+			return a + b;
+		}
+	};
+
+	public static final Combiner<Double> MIN = new Combiner<Double>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Double combine(Double a, Double b) {
+			return Math.min(a, b);
+		}
+	};
+
+	public static final Combiner<Double> MAX = new Combiner<Double>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Double combine(Double a, Double b) {
+			return Math.max(a, b);
+		}
+	};
+
+	public static final Combiner<ArgValue> ARGMIN = new Combiner<ArgValue>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public ArgValue combine(ArgValue a, ArgValue b) {
+			return b.getValue() < a.getValue() ? b : a;
+		}
+	};
+
+	public static final Combiner<ArgValue> ARGMAX = new Combiner<ArgValue>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public ArgValue combine(ArgValue a, ArgValue b) {
+			return b.getValue() > a.getValue() ? b : a;
+		}
+	};
+
+	private Combiners() {
+	}
+}
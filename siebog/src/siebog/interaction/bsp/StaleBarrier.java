@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
+import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MessageManagerBean;
+import siebog.interaction.Performative;
+import siebog.utils.ExecutorService;
+import siebog.utils.FailureDetector;
+import siebog.utils.GlobalCache;
+
+/**
+ * Stale-synchronous-parallel barrier. Instead of waiting for all agents at the end of each
+ * superstep, every agent has its own clock, the number of supersteps it has completed, and may
+ * start its next superstep as long as it is at most {@code staleness} supersteps ahead of the
+ * slowest agent. A staleness of 0 gives the usual BSP semantics.
+ * <p>
+ * Each node keeps the clocks of its own agents, and reports their minimum to the root (the
+ * cluster coordinator) whenever it changes. The root tracks the minimum per node, and broadcasts
+ * the global minimum when it advances, which releases the agents that have been waiting for the
+ * slow ones. The global minimum never decreases; agents joining a running barrier start from the
+ * last global minimum known to their node.
+ * <p>
+ * When the membership of the cluster changes, the nodes report their minimums to the (possibly
+ * new) root again. The root forgets the nodes that have left, and asks all members for their
+ * minimums, without advancing until each of them has answered, so that a new root cannot release
+ * the agents based on a partial view.
+ * <p>
+ * Superstep messages, aggregators and halting are not supported, since agents are not in the same
+ * superstep at the same time.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class StaleBarrier {
+	private static final Logger LOG = LoggerFactory.getLogger(StaleBarrier.class);
+	// reported by nodes without agents
+	private static final long NONE = Long.MAX_VALUE;
+	@Inject
+	private FailureDetector failureDetector;
+	@Inject
+	private MessageManagerBean msm;
+	@Inject
+	private ExecutorService executor;
+	private final ConcurrentHashMap<String, Clocks> barriers = new ConcurrentHashMap<>();
+	private Cache<AID, Agent> cache;
+	private DistributedExecutorService des;
+	private ViewListener viewListener;
+	private Address self;
+
+	@PostConstruct
+	public void postConstruct() {
+		cache = GlobalCache.get().getRunningAgents();
+		self = cache.getCacheManager().getAddress();
+		des = new DefaultExecutorService(cache);
+		viewListener = new ViewListener();
+		cache.getCacheManager().addListener(viewListener);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		cache.getCacheManager().removeListener(viewListener);
+		des.shutdown();
+	}
+
+	@Listener
+	public final class ViewListener {
+		@ViewChanged
+		public void viewChanged(ViewChangedEvent event) {
+			if (event.getNewMembers().containsAll(event.getOldMembers()))
+				return;
+			final boolean root = self.equals(event.getNewMembers().get(0));
+			final int view = event.getViewId();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (Clocks c : barriers.values())
+						if (root)
+							c.resync(view);
+						else
+							c.rereport();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Makes the given barrier stale-synchronous on this node. Should be called on each node,
+	 * with the same bound, before the agents register.
+	 */
+	public void setStaleness(String barrier, int staleness) {
+		if (staleness < 0)
+			throw new IllegalArgumentException("Staleness cannot be negative: " + staleness);
+		clocks(barrier).staleness = staleness;
+	}
+
+	/**
+	 * @return True if the staleness of the barrier has been set on this node.
+	 */
+	public boolean manages(String barrier) {
+		Clocks c = barriers.get(barrier);
+		return c != null && c.staleness >= 0;
+	}
+
+	public void register(String barrier, AID aid) {
+		clocks(barrier).register(aid);
+		LOG.info("Registered agent {}.", aid);
+	}
+
+	public void deregister(String barrier, AID aid) {
+		clocks(barrier).deregister(aid);
+		LOG.info("Deregistered agent {}.", aid);
+	}
+
+	public void completed(Superstep superstep, AID aid) {
+		clocks(superstep.getBarrierName()).completed(superstep.getCounter(), aid);
+	}
+
+	void onReport(String barrier, Address node, long min) {
+		clocks(barrier).report(node, min);
+	}
+
+	void onAdvance(String barrier, long min) {
+		clocks(barrier).advance(min);
+	}
+
+	void onSync(String barrier) {
+		clocks(barrier).rereport();
+	}
+
+	private int viewId() {
+		return cache.getCacheManager().getTransport().getViewId();
+	}
+
+	private Clocks clocks(String name) {
+		Clocks c = barriers.get(name);
+		if (c == null) {
+			c = new Clocks(name);
+			Clocks prev = barriers.putIfAbsent(name, c);
+			if (prev != null)
+				c = prev;
+		}
+		return c;
+	}
+
+	private void send(Address target, final StaleBarrierTask task) {
+		if (target.equals(self)) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					task.apply(StaleBarrier.this);
+				}
+			});
+		} else
+			des.submit(target, task);
+	}
+
+	private class Clocks {
+		final String name;
+		volatile int staleness = -1;
+		// supersteps completed by each local agent
+		final Map<AID, Long> clocks = new HashMap<>();
+		// local agents that are too far ahead to start their next superstep
+		final Set<AID> waiting = new HashSet<>();
+		// the last global minimum received from the root, and the last local minimum reported
+		long globalMin;
+		long reportedMin = NONE;
+		boolean timeoutScheduled;
+		// root only: the minimum clock of each node, the members yet to report after a view
+		// change, and the view in which they have been asked
+		final Map<Address, Long> nodeMins = new HashMap<>();
+		final Set<Address> awaiting = new HashSet<>();
+		int syncedView = -1;
+		long rootMin;
+
+		Clocks(String name) {
+			this.name = name;
+		}
+
+		synchronized void register(AID aid) {
+			clocks.put(aid, globalMin);
+			signal(aid, globalMin + 1);
+			reportMin();
+		}
+
+		synchronized void deregister(AID aid) {
+			clocks.remove(aid);
+			waiting.remove(aid);
+			reportMin();
+		}
+
+		synchronized void completed(long step, AID aid) {
+			Long clock = clocks.get(aid);
+			if (clock == null || clock != step - 1)
+				return;
+			clocks.put(aid, step);
+			if (step - globalMin <= staleness)
+				signal(aid, step + 1);
+			else
+				waiting.add(aid);
+			reportMin();
+		}
+
+		synchronized void advance(long min) {
+			if (min <= globalMin)
+				return;
+			globalMin = min;
+			// release the waiting agents, one message per superstep
+			Map<Long, ACLMessage> msgs = new HashMap<>();
+			for (AID aid : new ArrayList<>(waiting)) {
+				long clock = clocks.get(aid);
+				if (clock - globalMin <= staleness) {
+					waiting.remove(aid);
+					ACLMessage msg = msgs.get(clock + 1);
+					if (msg == null) {
+						msg = newSuperstepMsg(clock + 1);
+						msgs.put(clock + 1, msg);
+					}
+					msg.receivers.add(aid);
+				}
+			}
+			for (ACLMessage msg : msgs.values())
+				msm.post(msg);
+		}
+
+		/**
+		 * Root only: records the minimum clock of a node, and broadcasts the global minimum if it
+		 * has advanced.
+		 */
+		synchronized void report(Address node, long min) {
+			int view = viewId();
+			if (view > syncedView)
+				// the first report since the membership has changed, e.g. to a new root
+				resync(view);
+			if (min == NONE)
+				nodeMins.remove(node);
+			else
+				nodeMins.put(node, min);
+			awaiting.remove(node);
+			checkAdvance();
+		}
+
+		/**
+		 * Root only: forgets the nodes that have left, and asks all members for their minimums.
+		 */
+		synchronized void resync(int view) {
+			if (view <= syncedView)
+				return;
+			syncedView = view;
+			List<Address> members = cache.getCacheManager().getMembers();
+			nodeMins.keySet().retainAll(members);
+			awaiting.clear();
+			awaiting.addAll(members);
+			// a new root continues from the minimum it has last received
+			rootMin = Math.max(rootMin, globalMin);
+			for (Address member : members)
+				send(member, StaleBarrierTask.sync(name));
+		}
+
+		void checkAdvance() {
+			if (!awaiting.isEmpty())
+				return;
+			long newMin = NONE;
+			for (long m : nodeMins.values())
+				newMin = Math.min(newMin, m);
+			if (newMin == NONE || newMin <= rootMin)
+				return;
+			rootMin = newMin;
+			for (Address member : cache.getCacheManager().getMembers())
+				send(member, StaleBarrierTask.advance(name, rootMin));
+		}
+
+		/**
+		 * Reports the local minimum to the root, even if it hasn't changed.
+		 */
+		synchronized void rereport() {
+			reportedMin = -1;
+			reportMin();
+		}
+
+		void reportMin() {
+			long min = NONE;
+			for (long clock : clocks.values())
+				min = Math.min(min, clock);
+			if (min == reportedMin)
+				return;
+			reportedMin = min;
+			send(cache.getCacheManager().getMembers().get(0),
+					StaleBarrierTask.report(name, self, min));
+			if (min != NONE && !timeoutScheduled)
+				scheduleTimeout(min);
+		}
+
+		void signal(AID aid, long step) {
+			ACLMessage msg = newSuperstepMsg(step);
+			msg.receivers.add(aid);
+			msm.post(msg);
+		}
+
+		ACLMessage newSuperstepMsg(long step) {
+			ACLMessage msg = new ACLMessage(Performative.INFORM);
+			msg.protocol = BarrierBean.PROTOCOL;
+			msg.contentObj = new Superstep(name, step);
+			return msg;
+		}
+
+		/**
+		 * Checks the liveness of the slowest local agents if the local minimum doesn't move.
+		 */
+		void scheduleTimeout(final long min) {
+			timeoutScheduled = true;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					onTimeout(min);
+				}
+			}, BarrierBean.TIMEOUT);
+		}
+
+		synchronized void onTimeout(long min) {
+			timeoutScheduled = false;
+			if (reportedMin == NONE)
+				return;
+			if (reportedMin == min) {
+				List<AID> slowest = new ArrayList<>();
+				for (Entry<AID, Long> e : clocks.entrySet())
+					if (e.getValue() == min && !waiting.contains(e.getKey()))
+						slowest.add(e.getKey());
+				LOG.info("Barrier timeout at clock {}, slowest agents: {}", min, slowest);
+				for (AID aid : slowest) {
+					if (failureDetector.isAlive(aid))
+						signal(aid, min + 1);
+					else {
+						clocks.remove(aid);
+						waiting.remove(aid);
+					}
+				}
+				reportMin();
+			}
+			if (!timeoutScheduled && reportedMin != NONE)
+				scheduleTimeout(reportedMin);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.remoting.transport.Address;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Carries a message of the {@link StaleBarrier} protocol to another node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class StaleBarrierTask implements DistributedCallable<AID, Agent, Void>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Op {
+		/** Minimum clock of a node, sent to the root. */
+		REPORT,
+		/** New global minimum, sent by the root to all nodes. */
+		ADVANCE,
+		/** Sent by the root after a view change, asks the node to report its minimum again. */
+		SYNC
+	}
+
+	private final Op op;
+	private final String barrier;
+	private final Address node;
+	private final long clock;
+
+	private StaleBarrierTask(Op op, String barrier, Address node, long clock) {
+		this.op = op;
+		this.barrier = barrier;
+		this.node = node;
+		this.clock = clock;
+	}
+
+	public static StaleBarrierTask report(String barrier, Address node, long min) {
+		return new StaleBarrierTask(Op.REPORT, barrier, node, min);
+	}
+
+	public static StaleBarrierTask advance(String barrier, long min) {
+		return new StaleBarrierTask(Op.ADVANCE, barrier, null, min);
+	}
+
+	public static StaleBarrierTask sync(String barrier) {
+		return new StaleBarrierTask(Op.SYNC, barrier, null, 0);
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public Void call() {
+		apply(ObjectFactory.getStaleBarrier());
+		return null;
+	}
+
+	void apply(StaleBarrier sb) {
+		switch (op) {
+		case REPORT:
+			sb.onReport(barrier, node, clock);
+			break;
+		case ADVANCE:
+			sb.onAdvance(barrier, clock);
+			break;
+		default:
+			sb.onSync(barrier);
+		}
+	}
+}
@@ -1,15 +1,41 @@
 package siebog.interaction.bsp;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class Superstep implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private final String barrierName;
 	private final long counter;
+	// see TreeBarrier, 0 for the other barriers
+	private final long generation;
+	private final List<Serializable> messages;
+	private final Map<String, Serializable> aggregates;
+	// set once the agent holding this instance has completed the superstep
+	private boolean completed;
 
 	public Superstep(String barrierName, long counter) {
+		this(barrierName, counter, Collections.<Serializable> emptyList());
+	}
+
+	public Superstep(String barrierName, long counter, List<Serializable> messages) {
+		this(barrierName, counter, messages, Collections.<String, Serializable> emptyMap());
+	}
+
+	public Superstep(String barrierName, long counter, List<Serializable> messages,
+			Map<String, Serializable> aggregates) {
+		this(barrierName, counter, 0, messages, aggregates);
+	}
+
+	public Superstep(String barrierName, long counter, long generation,
+			List<Serializable> messages, Map<String, Serializable> aggregates) {
 		this.barrierName = barrierName;
 		this.counter = counter;
+		this.generation = generation;
+		this.messages = messages;
+		this.aggregates = aggregates;
 	}
 
 	public String getBarrierName() {
@@ -19,4 +45,37 @@ public class Superstep implements Serializable {
 	public long getCounter() {
 		return counter;
 	}
+
+	/**
+	 * @return Number of rollbacks of the barrier before this superstep was released. Completions
+	 *         of supersteps released before a rollback are ignored.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	void markCompleted() {
+		completed = true;
+	}
+
+	/**
+	 * @return The BSP messages sent to the agent during the previous superstep, see
+	 *         {@link BarrierManager#send(Superstep, siebog.agents.AID, Serializable)}.
+	 */
+	public List<Serializable> getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return The value of the given aggregator over the previous superstep, or null if no agent
+	 *         has contributed to it.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Serializable> T getAggregate(String name) {
+		return (T) aggregates.get(name);
+	}
 }
@@ -0,0 +1,909 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
+import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentManagerBean;
+import siebog.agents.CheckpointMessage;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MessageManagerBean;
+import siebog.interaction.Performative;
+import siebog.utils.ExecutorService;
+import siebog.utils.FailureDetector;
+import siebog.utils.GlobalCache;
+import siebog.utils.NearCache;
+
+/**
+ * Combining-tree barrier. Each node of the cluster hosts a sub-barrier, which collects the
+ * completions of the agents registered on that node. The nodes are arranged in a tree with
+ * {@link #FANOUT} children per node, rooted at the cluster coordinator. Once a sub-barrier and all
+ * of its children are done, it reports a single count to its parent. When the root is done, it
+ * releases the next superstep, which fans out down the tree, each node signalling its own agents.
+ * The barrier latency thus grows with the height of the tree, rather than with the number of
+ * agents, and no node handles more than FANOUT + 1 reports per superstep, plus its own agents.
+ * <p>
+ * Supersteps are numbered from 1, as in {@link BarrierBean}. The topology is fixed by the root at
+ * the start of each superstep, and sent down with the release, so that all nodes agree on it.
+ * When a node leaves the cluster in the middle of a superstep, the remaining nodes ask the (possibly
+ * new) root to rebuild the tree. The root releases the same superstep again over the new topology,
+ * with a higher epoch: the nodes keep the progress of their own agents, drop what they have
+ * collected from their children, and report again, while reports of the old tree are ignored. A new
+ * root takes over the superstep counter from the other nodes.
+ * <p>
+ * Messages that agents send to each other with {@link #send(Superstep, AID, Serializable)} are
+ * buffered in the sender's sub-barrier, merged by the barrier's {@link Combiner} if there is one,
+ * and shipped to the receivers' nodes in bulk once the sender's node is done with the superstep.
+ * A node reports to its parent only after its messages have been delivered, so all of them are
+ * in place when the next superstep is released, and are handed to the receivers along with it.
+ * <p>
+ * Aggregators are reduced the same way as the completion counts: each sub-barrier merges the
+ * values contributed by its agents and reported by its children, and the root sends the final
+ * values down with the release of the next superstep.
+ * <p>
+ * An agent can vote to halt when completing a superstep. Halted agents are not signalled in the
+ * following supersteps, until they receive a message, which makes them active again. Each
+ * sub-barrier reports the number of its active agents and sent messages instead of the number of
+ * its agents, and once the root sees neither, the computation is over and the barrier goes idle.
+ * <p>
+ * If {@code siebog.bsp.checkpoint} is set to N > 0, the root takes a coordinated {@link Checkpoint}
+ * after every N-th superstep, before releasing the next one: each node saves the
+ * {@link siebog.agents.Replicated} fields of its agents and the messages buffered for them. When a
+ * node leaves the cluster, the (possibly new) root rolls all surviving agents back, takes over the
+ * participants of the lost node that have failed over to other nodes, re-delivers the saved
+ * messages, and resumes from the superstep after the checkpoint. Each rollback starts a new
+ * generation of the barrier, and completions, messages and timeouts of the previous generations
+ * are ignored. Halted barriers are not rolled back, and their checkpoints are deleted.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TreeBarrier {
+	private static final Logger LOG = LoggerFactory.getLogger(TreeBarrier.class);
+	public static final int FANOUT = Integer.getInteger("siebog.bsp.fanout", 4);
+	// checkpoint interval, in supersteps; 0 to disable
+	public static final long CHECKPOINT = Long.getLong("siebog.bsp.checkpoint", 0);
+	private static final long IDLE = -1;
+	private static final int LOCATION_CACHE_SIZE = Integer.getInteger(
+			"siebog.bsp.locations.size", 100000);
+	private static final long LOCATION_CACHE_TTL = 10 * 60 * 1000;
+	@Inject
+	private AgentManagerBean agm;
+	@Inject
+	private MessageManagerBean msm;
+	@Inject
+	private ExecutorService executor;
+	@Inject
+	private FailureDetector failureDetector;
+	private final ConcurrentHashMap<String, SubBarrier> barriers = new ConcurrentHashMap<>();
+	// invalidated by the locations cache whenever an agent registers elsewhere or deregisters
+	private final NearCache<AID, Address> locationCache = new NearCache<>(LOCATION_CACHE_SIZE,
+			LOCATION_CACHE_TTL);
+	private Cache<AID, Agent> cache;
+	private Cache<AID, Address> locations;
+	private Cache<Object, Object> checkpoints;
+	private ViewListener viewListener;
+	private DistributedExecutorService des;
+	private Address self;
+
+	@SuppressWarnings("unchecked")
+	@PostConstruct
+	public void postConstruct() {
+		cache = GlobalCache.get().getRunningAgents();
+		locations = (Cache<AID, Address>) GlobalCache.get().getCache(GlobalCache.BSP_LOCATIONS);
+		checkpoints = (Cache<Object, Object>) GlobalCache.get().getCache(
+				GlobalCache.BSP_CHECKPOINTS);
+		self = cache.getCacheManager().getAddress();
+		des = new DefaultExecutorService(cache);
+		viewListener = new ViewListener();
+		cache.getCacheManager().addListener(viewListener);
+		locations.addListener(locationCache);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		locations.removeListener(locationCache);
+		cache.getCacheManager().removeListener(viewListener);
+		des.shutdown();
+	}
+
+	@Listener
+	public final class ViewListener {
+		@ViewChanged
+		public void viewChanged(ViewChangedEvent event) {
+			if (event.getNewMembers().containsAll(event.getOldMembers()))
+				return;
+			final boolean root = self.equals(event.getNewMembers().get(0));
+			final Address newRoot = event.getNewMembers().get(0);
+			final int view = event.getViewId();
+			// recovery involves remote calls, so it can't block the notification thread
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (root)
+						for (String barrier : checkpointedBarriers())
+							sub(barrier).recover();
+					// barriers without a checkpoint continue over the new tree
+					for (SubBarrier b : barriers.values())
+						b.requestRepair(newRoot, view);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return Names of the barriers which have a checkpoint, collected from all nodes.
+	 */
+	private Set<String> checkpointedBarriers() {
+		Set<String> result = new HashSet<>();
+		DistributedExecutorService cdes = new DefaultExecutorService(checkpoints);
+		try {
+			for (Future<ArrayList<String>> f : cdes.submitEverywhere(new CheckpointIndexTask()))
+				result.addAll(f.get());
+		} catch (InterruptedException | ExecutionException ex) {
+			LOG.warn("Unable to list the checkpoints.", ex);
+		} finally {
+			cdes.shutdown();
+		}
+		return result;
+	}
+
+	public void register(String barrier, AID aid) {
+		locations.put(aid, self);
+		if (sub(barrier).register(aid))
+			// the first active local agent, make sure the barrier is running
+			send(root(), TreeBarrierTask.kick(barrier));
+		LOG.info("Registered agent {}.", aid);
+	}
+
+	public void deregister(String barrier, AID aid) {
+		sub(barrier).deregister(aid);
+		locations.remove(aid);
+		LOG.info("Deregistered agent {}.", aid);
+	}
+
+	public void completed(Superstep superstep, AID aid) {
+		completed(superstep, aid, Collections.<String, Serializable> emptyMap(), false);
+	}
+
+	/**
+	 * Marks the agent as done with the superstep, contributing the given values to the barrier's
+	 * aggregators. If {@code halt} is set, the agent won't take part in the following supersteps
+	 * until it receives a message. Values for which there is no aggregator on this node are
+	 * dropped, but the agent still completes the superstep.
+	 */
+	public void completed(Superstep superstep, AID aid, Map<String, ? extends Serializable> values,
+			boolean halt) {
+		sub(superstep.getBarrierName()).completed(superstep.getCounter(),
+				superstep.getGeneration(), aid, values, halt);
+		superstep.markCompleted();
+	}
+
+	/**
+	 * Adds a global aggregator to the barrier on this node. The aggregator is propagated to the
+	 * parent nodes with the reports, so it's enough to add it on the nodes whose agents contribute.
+	 */
+	@SuppressWarnings("unchecked")
+	public void addAggregator(String barrier, String name,
+			Combiner<? extends Serializable> aggregator) {
+		sub(barrier).addAggregator(name, (Combiner<Serializable>) aggregator);
+	}
+
+	/**
+	 * Sends a message to another participant of the barrier, to be delivered at the start of the
+	 * next superstep.
+	 * 
+	 * @throws IllegalStateException if the sender has already completed the superstep.
+	 */
+	public void send(Superstep current, AID receiver, Serializable value) {
+		if (current.isCompleted())
+			throw new IllegalStateException("Cannot send in superstep #" + current.getCounter()
+					+ " of barrier " + current.getBarrierName() + " after completing it.");
+		sub(current.getBarrierName()).buffer(current.getCounter(), current.getGeneration(),
+				receiver, value);
+	}
+
+	/**
+	 * Sets the combiner of the barrier on this node. All nodes with participants of the barrier
+	 * should use the same combiner.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setCombiner(String barrier, Combiner<? extends Serializable> combiner) {
+		sub(barrier).combiner = (Combiner<Serializable>) combiner;
+	}
+
+	void onRelease(String barrier, long superstep, long generation, long epoch,
+			ArrayList<Address> topology, HashMap<String, Serializable> aggregates) {
+		sub(barrier).release(superstep, generation, epoch, topology, aggregates);
+	}
+
+	void onReport(String barrier, long superstep, long epoch, int members,
+			HashMap<String, Serializable> partials,
+			HashMap<String, Combiner<Serializable>> aggregators) {
+		sub(barrier).report(superstep, epoch, members, partials, aggregators);
+	}
+
+	void onRepair(String barrier, long superstep, HashMap<String, Serializable> aggregates,
+			int view) {
+		if (checkpoints.containsKey(Checkpoint.latestKey(barrier)))
+			return; // rolled back by recover() instead
+		sub(barrier).repair(superstep, aggregates, view);
+	}
+
+	void onKick(String barrier) {
+		sub(barrier).kick();
+	}
+
+	void onDeliver(String barrier, long superstep, long generation,
+			Map<AID, ArrayList<Serializable>> messages) {
+		sub(barrier).deliver(superstep, generation, messages);
+	}
+
+	ArrayList<AID> onSave(String barrier, int slot) {
+		return sub(barrier).save(slot);
+	}
+
+	ArrayList<AID> onReset(String barrier, int slot, long generation) {
+		return sub(barrier).reset(slot, generation);
+	}
+
+	private SubBarrier sub(String name) {
+		SubBarrier b = barriers.get(name);
+		if (b == null) {
+			b = new SubBarrier(name);
+			SubBarrier prev = barriers.putIfAbsent(name, b);
+			if (prev != null)
+				b = prev;
+		}
+		return b;
+	}
+
+	private Address root() {
+		return cache.getCacheManager().getMembers().get(0);
+	}
+
+	private Address locate(AID aid) {
+		Address a = locationCache.get(aid);
+		if (a == null) {
+			long stamp = locationCache.stamp();
+			a = locations.get(aid);
+			locationCache.put(aid, a, stamp);
+		}
+		return a;
+	}
+
+	private void send(Address target, final TreeBarrierTask task) {
+		if (target == null || target.equals(self)) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					task.apply(TreeBarrier.this);
+				}
+			});
+		} else
+			des.submit(target, task);
+	}
+
+	private class SubBarrier {
+		final String name;
+		final Set<AID> members = new HashSet<>();
+		// members which haven't voted to halt
+		final Set<AID> active = new HashSet<>();
+		// agents of this node which haven't completed the current superstep
+		final Set<AID> pending = new HashSet<>();
+		long superstep = IDLE;
+		// increased with each rollback to a checkpoint
+		long generation;
+		// generation of the tree, increased whenever it is rebuilt in the middle of a superstep
+		long epoch;
+		int childrenPending;
+		// active agents and message receivers reported by the children
+		int subtreeActive;
+		// receivers of the messages sent by the local agents in the current superstep
+		int localSent;
+		boolean reported = true;
+		ArrayList<Address> topology;
+		// root only: the last superstep released, and whether a superstep is in progress
+		long lastReleased;
+		boolean running;
+		// root only: whether this node has released any supersteps itself, or has yet to take
+		// over from a previous root, and the last view in which the tree was rebuilt
+		boolean leading;
+		int repairedView = -1;
+		// messages sent by the local agents in the current superstep
+		volatile Combiner<Serializable> combiner;
+		HashMap<AID, ArrayList<Serializable>> outbox = new HashMap<>();
+		// messages for the local agents, to be delivered in the next superstep
+		final HashMap<AID, ArrayList<Serializable>> inbox = new HashMap<>();
+		final HashMap<String, Combiner<Serializable>> aggregators = new HashMap<>();
+		// values of the aggregators in the current superstep, from the local agents, and merged
+		// over the children's subtrees
+		HashMap<String, Serializable> localPartials = new HashMap<>();
+		HashMap<String, Serializable> partials = new HashMap<>();
+		// final values of the aggregators in the previous superstep
+		HashMap<String, Serializable> aggregates = new HashMap<>();
+
+		SubBarrier(String name) {
+			this.name = name;
+		}
+
+		synchronized boolean register(AID aid) {
+			boolean first = active.isEmpty();
+			members.add(aid);
+			active.add(aid);
+			return first;
+		}
+
+		synchronized void deregister(AID aid) {
+			members.remove(aid);
+			active.remove(aid);
+			if (pending.remove(aid))
+				checkDone();
+		}
+
+		synchronized void completed(long step, long gen, AID aid,
+				Map<String, ? extends Serializable> values, boolean halt) {
+			if (step == superstep && gen == generation && pending.remove(aid)) {
+				if (halt)
+					active.remove(aid);
+				for (Entry<String, ? extends Serializable> e : values.entrySet())
+					if (aggregators.containsKey(e.getKey()))
+						aggregate(localPartials, e.getKey(), e.getValue());
+					else
+						LOG.warn("Dropping the value of agent {} for unknown aggregator {} in "
+								+ "barrier {}.", aid, e.getKey(), name);
+				checkDone();
+			}
+		}
+
+		synchronized void addAggregator(String key, Combiner<Serializable> aggregator) {
+			aggregators.put(key, aggregator);
+		}
+
+		void aggregate(HashMap<String, Serializable> target,
+				Map<String, ? extends Serializable> values) {
+			for (Entry<String, ? extends Serializable> e : values.entrySet())
+				aggregate(target, e.getKey(), e.getValue());
+		}
+
+		void aggregate(HashMap<String, Serializable> target, String key, Serializable value) {
+			Serializable prev = target.get(key);
+			target.put(key, prev == null ? value : aggregators.get(key).combine(prev, value));
+		}
+
+		synchronized void buffer(long step, long gen, AID receiver, Serializable value) {
+			if (step != superstep || gen != generation || reported)
+				throw new IllegalStateException("Superstep #" + step + " of barrier " + name
+						+ " is over.");
+			add(outbox, receiver, value);
+		}
+
+		void deliver(long step, long gen, Map<AID, ArrayList<Serializable>> messages) {
+			synchronized (this) {
+				if (gen < generation)
+					return; // sent before a rollback
+			}
+			synchronized (inbox) {
+				for (Entry<AID, ArrayList<Serializable>> e : messages.entrySet())
+					for (Serializable value : e.getValue())
+						add(inbox, e.getKey(), value);
+			}
+		}
+
+		synchronized void kick() {
+			// a new root that hasn't taken over yet will count the agent when it does
+			if (!running && (leading || superstep == IDLE))
+				releaseNext(new HashMap<String, Serializable>());
+		}
+
+		/**
+		 * Root only: starts the next superstep.
+		 */
+		void releaseNext(HashMap<String, Serializable> aggregates) {
+			running = true;
+			leading = true;
+			release(++lastReleased, generation, epoch, newTopology(), aggregates);
+		}
+
+		ArrayList<Address> newTopology() {
+			ArrayList<Address> topo = new ArrayList<>(cache.getCacheManager().getMembers());
+			topo.remove(self);
+			topo.add(0, self);
+			return topo;
+		}
+
+		/**
+		 * Asks the root to rebuild the tree, if this node is in the middle of a superstep.
+		 */
+		void requestRepair(Address root, int view) {
+			long step;
+			HashMap<String, Serializable> aggs;
+			synchronized (this) {
+				if (superstep == IDLE)
+					return;
+				step = superstep;
+				aggs = aggregates;
+			}
+			send(root, TreeBarrierTask.repair(name, step, aggs, view));
+		}
+
+		/**
+		 * Root only: releases the current superstep again, over the current members. A root that
+		 * has just taken over continues from the latest superstep known to any of the nodes.
+		 */
+		synchronized void repair(long step, HashMap<String, Serializable> aggs, int view) {
+			if (view <= repairedView)
+				return;
+			if (leading && !running)
+				return; // halted, nothing to repair
+			if (!leading) {
+				if (superstep > lastReleased)
+					lastReleased = superstep;
+				if (step > lastReleased) {
+					lastReleased = step;
+					aggregates = aggs;
+				}
+				leading = true;
+			}
+			repairedView = view;
+			running = true;
+			LOG.info("Rebuilding the tree of barrier {} in superstep #{}.", name, lastReleased);
+			release(lastReleased, generation, epoch + 1, newTopology(), aggregates);
+		}
+
+		synchronized void release(long step, long gen, long ep, ArrayList<Address> topo,
+				HashMap<String, Serializable> aggregates) {
+			if (gen < generation)
+				return; // released before a rollback
+			if (gen > generation) {
+				// the rollback hasn't reached this node
+				generation = gen;
+				superstep = IDLE;
+			}
+			if (step < superstep || (step == superstep && ep <= epoch))
+				return; // outdated, or already received from the previous parent
+			epoch = ep;
+			topology = topo;
+			if (step == superstep) {
+				// the tree has been rebuilt: keep the local progress, and collect the rest again
+				partials = new HashMap<>();
+				subtreeActive = 0;
+				reported = false;
+				List<Address> children = children(topology.indexOf(self));
+				childrenPending = children.size();
+				for (Address child : children)
+					send(child, TreeBarrierTask.release(name, step, gen, ep, topology, aggregates));
+				checkDone();
+				return;
+			}
+			superstep = step;
+			this.aggregates = aggregates;
+			localPartials = new HashMap<>();
+			partials = new HashMap<>();
+			reported = false;
+			subtreeActive = 0;
+			localSent = 0;
+			// wake up the halted agents that have received messages
+			HashMap<AID, ArrayList<Serializable>> received = takeInbox();
+			for (AID aid : received.keySet())
+				if (members.contains(aid))
+					active.add(aid);
+			pending.clear();
+			pending.addAll(active);
+			int index = topology.indexOf(self);
+			List<Address> children = children(index);
+			childrenPending = children.size();
+			for (Address child : children)
+				send(child, TreeBarrierTask.release(name, step, gen, ep, topology, aggregates));
+			if (!pending.isEmpty()) {
+				signal(pending, received);
+				scheduleTimeout(step, gen);
+			}
+			checkDone();
+		}
+
+		synchronized void report(long step, long ep, int count,
+				HashMap<String, Serializable> values,
+				HashMap<String, Combiner<Serializable>> childAggregators) {
+			if (step != superstep || ep != epoch || reported)
+				return;
+			for (Entry<String, Combiner<Serializable>> e : childAggregators.entrySet())
+				if (!aggregators.containsKey(e.getKey()))
+					aggregators.put(e.getKey(), e.getValue());
+			aggregate(partials, values);
+			subtreeActive += count;
+			--childrenPending;
+			checkDone();
+		}
+
+		void checkDone() {
+			if (reported || !pending.isEmpty() || childrenPending > 0)
+				return;
+			reported = true;
+			final long step = superstep;
+			final long gen = generation;
+			final long ep = epoch;
+			// the local part is kept, in case the report has to be repeated over a new tree
+			localSent += outbox.size();
+			final int count = subtreeActive + active.size() + localSent;
+			final HashMap<AID, ArrayList<Serializable>> sent = outbox;
+			outbox = new HashMap<>();
+			final HashMap<String, Serializable> values = new HashMap<>(partials);
+			aggregate(values, localPartials);
+			final HashMap<String, Combiner<Serializable>> aggs = new HashMap<>(aggregators);
+			// shipping the messages can block, so it's done outside of the lock
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					flush(step, gen, sent);
+					done(step, ep, count, values, aggs);
+				}
+			});
+		}
+
+		void done(long step, long ep, int count, HashMap<String, Serializable> values,
+				HashMap<String, Combiner<Serializable>> aggs) {
+			ArrayList<Address> topo;
+			synchronized (this) {
+				if (ep != epoch)
+					return; // the tree has been rebuilt in the meantime
+				topo = topology;
+			}
+			int index = topo.indexOf(self);
+			if (index == 0) {
+				if (count > 0 && CHECKPOINT > 0 && step % CHECKPOINT == 0)
+					checkpoint(step, values);
+				// the root: the superstep is over, start the next one unless everyone's halted
+				synchronized (this) {
+					if (step != superstep || ep != epoch)
+						return;
+					if (count > 0) {
+						releaseNext(values);
+						return;
+					}
+					running = false;
+					LOG.info("Barrier {} halted after superstep #{}.", name, step);
+				}
+				if (CHECKPOINT > 0)
+					discardCheckpoints();
+			} else
+				send(topo.get((index - 1) / FANOUT),
+						TreeBarrierTask.report(name, step, ep, count, values, aggs));
+		}
+
+		/**
+		 * Root only: asks all nodes to save their agents and messages, and commits the checkpoint
+		 * once they are all done. If any of them fails, the previous checkpoint is kept.
+		 */
+		void checkpoint(long step, HashMap<String, Serializable> values) {
+			int slot = (int) (step / CHECKPOINT % 2);
+			Checkpoint cp = new Checkpoint(name, step, slot, values);
+			try {
+				List<Future<ArrayList<AID>>> futures = new ArrayList<>(topology.size());
+				for (Address node : topology) {
+					cp.addNode(node.toString());
+					if (node.equals(self))
+						cp.addParticipants(save(slot));
+					else
+						futures.add(des.submit(node, CheckpointTask.save(name, slot)));
+				}
+				for (Future<ArrayList<AID>> f : futures)
+					cp.addParticipants(f.get());
+				checkpoints.put(Checkpoint.manifestKey(name, slot), cp);
+				checkpoints.put(Checkpoint.latestKey(name), slot);
+				LOG.info("Checkpoint of barrier {} after superstep #{}.", name, step);
+			} catch (InterruptedException | ExecutionException | RuntimeException ex) {
+				LOG.warn("Unable to checkpoint barrier {} after superstep #{}.", name, step, ex);
+			}
+		}
+
+		/**
+		 * Saves the local agents and the messages buffered for them.
+		 */
+		ArrayList<AID> save(int slot) {
+			ArrayList<AID> saved;
+			synchronized (this) {
+				saved = new ArrayList<>(members);
+			}
+			for (AID aid : saved)
+				agm.getAgentReference(aid).handleMessage(
+						CheckpointMessage.save(aid, Checkpoint.agentKey(name, slot, aid)));
+			HashMap<AID, ArrayList<Serializable>> msgs = new HashMap<>();
+			synchronized (inbox) {
+				for (Entry<AID, ArrayList<Serializable>> e : inbox.entrySet())
+					msgs.put(e.getKey(), new ArrayList<>(e.getValue()));
+			}
+			checkpoints.put(Checkpoint.inboxKey(name, slot, self.toString()), msgs);
+			return saved;
+		}
+
+		/**
+		 * Root only: rolls the barrier back to its last checkpoint, after a node has left.
+		 */
+		@SuppressWarnings("unchecked")
+		void recover() {
+			final long gen;
+			synchronized (this) {
+				if (leading && !running)
+					return; // halted, the checkpoint is about to be discarded
+				gen = generation + 1;
+			}
+			Integer slot = (Integer) checkpoints.get(Checkpoint.latestKey(name));
+			Checkpoint cp = slot != null ? (Checkpoint) checkpoints.get(Checkpoint.manifestKey(
+					name, slot)) : null;
+			if (cp == null)
+				return;
+			LOG.warn("Rolling barrier {} back to superstep #{}.", name, cp.getStep());
+			Set<AID> found = new HashSet<>();
+			try {
+				List<Future<ArrayList<AID>>> futures = new ArrayList<>();
+				for (Address node : cache.getCacheManager().getMembers()) {
+					if (node.equals(self))
+						found.addAll(reset(slot, gen));
+					else
+						futures.add(des.submit(node, CheckpointTask.reset(name, slot, gen)));
+				}
+				for (Future<ArrayList<AID>> f : futures)
+					found.addAll(f.get());
+			} catch (InterruptedException | ExecutionException ex) {
+				LOG.warn("Unable to roll back barrier {}.", name, ex);
+				return;
+			}
+			// participants of the lost nodes, which have failed over to this one
+			for (AID aid : cp.getParticipants()) {
+				if (found.contains(aid))
+					continue;
+				if (failureDetector.isAlive(aid)) {
+					synchronized (this) {
+						members.add(aid);
+						active.add(aid);
+					}
+					locations.put(aid, self);
+					restore(aid, slot);
+				} else
+					LOG.warn("Lost BSP participant {} of barrier {}.", aid, name);
+			}
+			HashMap<AID, ArrayList<Serializable>> msgs = new HashMap<>();
+			for (String node : cp.getNodes()) {
+				Object part = checkpoints.get(Checkpoint.inboxKey(name, slot, node));
+				if (part != null)
+					msgs.putAll((HashMap<AID, ArrayList<Serializable>>) part);
+			}
+			flush(cp.getStep(), gen, msgs);
+			synchronized (this) {
+				lastReleased = cp.getStep();
+				// reports of the abandoned superstep carry the old epoch
+				++epoch;
+				releaseNext(new HashMap<>(cp.getAggregates()));
+			}
+		}
+
+		/**
+		 * Root only: deletes the checkpoints of a halted barrier, so that it is not rolled back
+		 * if a node leaves afterwards.
+		 */
+		void discardCheckpoints() {
+			try {
+				checkpoints.remove(Checkpoint.latestKey(name));
+				for (int slot = 0; slot < 2; slot++) {
+					Checkpoint cp = (Checkpoint) checkpoints.remove(Checkpoint.manifestKey(name,
+							slot));
+					if (cp != null)
+						for (String key : cp.getDataKeys())
+							checkpoints.remove(key);
+				}
+			} catch (RuntimeException ex) {
+				LOG.warn("Unable to discard the checkpoints of barrier {}.", name, ex);
+			}
+		}
+
+		/**
+		 * Abandons the current superstep and rolls the local agents back to the checkpoint.
+		 */
+		ArrayList<AID> reset(int slot, long gen) {
+			ArrayList<AID> result;
+			synchronized (this) {
+				generation = Math.max(generation, gen);
+				superstep = IDLE;
+				reported = true;
+				running = false;
+				childrenPending = 0;
+				pending.clear();
+				outbox = new HashMap<>();
+				localPartials = new HashMap<>();
+				partials = new HashMap<>();
+				active.addAll(members);
+				result = new ArrayList<>(members);
+			}
+			synchronized (inbox) {
+				inbox.clear();
+			}
+			// agents of the lost nodes may now live elsewhere
+			locationCache.clear();
+			for (AID aid : result)
+				restore(aid, slot);
+			return result;
+		}
+
+		void restore(AID aid, int slot) {
+			try {
+				agm.getAgentReference(aid).handleMessage(
+						CheckpointMessage.restore(aid, Checkpoint.agentKey(name, slot, aid)));
+			} catch (RuntimeException ex) {
+				LOG.warn("Unable to restore BSP participant {}.", aid, ex);
+			}
+		}
+
+		/**
+		 * Delivers the messages sent in the given superstep to the receivers' nodes, and waits
+		 * until they have been accepted.
+		 */
+		void flush(long step, long gen, HashMap<AID, ArrayList<Serializable>> sent) {
+			if (sent.isEmpty())
+				return;
+			Map<Address, HashMap<AID, ArrayList<Serializable>>> byNode = new HashMap<>();
+			for (Entry<AID, ArrayList<Serializable>> e : sent.entrySet()) {
+				Address node = locate(e.getKey());
+				if (node == null) {
+					LOG.warn("Dropping BSP messages to unknown participant {}.", e.getKey());
+					continue;
+				}
+				HashMap<AID, ArrayList<Serializable>> part = byNode.get(node);
+				if (part == null) {
+					part = new HashMap<>();
+					byNode.put(node, part);
+				}
+				part.put(e.getKey(), e.getValue());
+			}
+			List<Future<Void>> futures = new ArrayList<>(byNode.size());
+			for (Entry<Address, HashMap<AID, ArrayList<Serializable>>> e : byNode.entrySet()) {
+				if (e.getKey().equals(self))
+					deliver(step + 1, gen, e.getValue());
+				else
+					futures.add(des.submit(e.getKey(),
+							TreeBarrierTask.deliver(name, step + 1, gen, e.getValue())));
+			}
+			for (Future<Void> f : futures) {
+				try {
+					f.get();
+				} catch (InterruptedException | ExecutionException ex) {
+					LOG.warn("Unable to deliver BSP messages of barrier {}.", name, ex);
+				}
+			}
+		}
+
+		HashMap<AID, ArrayList<Serializable>> takeInbox() {
+			synchronized (inbox) {
+				HashMap<AID, ArrayList<Serializable>> result = new HashMap<>(inbox);
+				inbox.clear();
+				return result;
+			}
+		}
+
+		void add(HashMap<AID, ArrayList<Serializable>> box, AID receiver, Serializable value) {
+			ArrayList<Serializable> list = box.get(receiver);
+			if (list == null) {
+				list = new ArrayList<>(1);
+				list.add(value);
+				box.put(receiver, list);
+			} else if (combiner != null)
+				list.set(0, combiner.combine(list.get(0), value));
+			else
+				list.add(value);
+		}
+
+		List<Address> children(int index) {
+			if (index < 0)
+				return Collections.emptyList();
+			List<Address> result = new ArrayList<>(FANOUT);
+			for (int i = index * FANOUT + 1; i <= index * FANOUT + FANOUT && i < topology.size(); i++)
+				result.add(topology.get(i));
+			return result;
+		}
+
+		void signal(Set<AID> receivers, Map<AID, ArrayList<Serializable>> messages) {
+			// agents with messages get their own copy of the superstep, the rest share one
+			ACLMessage shared = newSuperstepMsg(new Superstep(name, superstep, generation,
+					Collections.<Serializable> emptyList(), aggregates));
+			for (AID aid : receivers) {
+				ArrayList<Serializable> own = messages.get(aid);
+				if (own == null)
+					shared.receivers.add(aid);
+				else {
+					ACLMessage msg = newSuperstepMsg(new Superstep(name, superstep, generation,
+							own, aggregates));
+					msg.receivers.add(aid);
+					msm.post(msg);
+				}
+			}
+			if (!shared.receivers.isEmpty())
+				msm.post(shared);
+		}
+
+		ACLMessage newSuperstepMsg(Superstep content) {
+			ACLMessage msg = new ACLMessage(Performative.INFORM);
+			msg.protocol = BarrierBean.PROTOCOL;
+			msg.contentObj = content;
+			return msg;
+		}
+
+		void scheduleTimeout(final long step, final long gen) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					onTimeout(step, gen);
+				}
+			}, BarrierBean.TIMEOUT);
+		}
+
+		synchronized void onTimeout(long step, long gen) {
+			if (step != superstep || gen != generation || pending.isEmpty())
+				return;
+			LOG.info("Barrier timeout in superstep #{}, pending agents: {}", step, pending);
+			Set<AID> alive = new HashSet<>();
+			for (AID aid : new ArrayList<>(pending)) {
+				if (failureDetector.isAlive(aid))
+					alive.add(aid);
+				else {
+					pending.remove(aid);
+					members.remove(aid);
+					active.remove(aid);
+				}
+			}
+			if (!alive.isEmpty()) {
+				// the messages of this superstep have already been handed over
+				signal(alive, Collections.<AID, ArrayList<Serializable>> emptyMap());
+				scheduleTimeout(step, gen);
+			}
+			checkDone();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DistributedCallable;
+import org.infinispan.remoting.transport.Address;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Carries a message of the {@link TreeBarrier} protocol to another node.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class TreeBarrierTask implements DistributedCallable<AID, Agent, Void>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Op {
+		/** Start of a superstep, sent down the tree. */
+		RELEASE,
+		/** Completion of a subtree, sent up the tree. */
+		REPORT,
+		/** Sent to the root when a node gets its first agent. */
+		KICK,
+		/** BSP messages for the agents of the target node. */
+		DELIVER,
+		/** Sent to the (new) root when a node has left, to rebuild the tree. */
+		REPAIR
+	}
+
+	private final Op op;
+	private final String barrier;
+	private final long superstep;
+	// generation of the barrier and of its tree, see TreeBarrier
+	private long generation;
+	private long epoch;
+	private int members;
+	private int view;
+	private ArrayList<Address> topology;
+	private HashMap<AID, ArrayList<Serializable>> messages;
+	// partial or final values of the aggregators, and the aggregators themselves
+	private HashMap<String, Serializable> values;
+	private HashMap<String, Combiner<Serializable>> aggregators;
+
+	private TreeBarrierTask(Op op, String barrier, long superstep) {
+		this.op = op;
+		this.barrier = barrier;
+		this.superstep = superstep;
+	}
+
+	public static TreeBarrierTask release(String barrier, long superstep, long generation,
+			long epoch, ArrayList<Address> topology, HashMap<String, Serializable> aggregates) {
+		TreeBarrierTask task = new TreeBarrierTask(Op.RELEASE, barrier, superstep);
+		task.generation = generation;
+		task.epoch = epoch;
+		task.topology = topology;
+		task.values = aggregates;
+		return task;
+	}
+
+	public static TreeBarrierTask report(String barrier, long superstep, long epoch, int members,
+			HashMap<String, Serializable> partials,
+			HashMap<String, Combiner<Serializable>> aggregators) {
+		TreeBarrierTask task = new TreeBarrierTask(Op.REPORT, barrier, superstep);
+		task.epoch = epoch;
+		task.members = members;
+		task.values = partials;
+		task.aggregators = aggregators;
+		return task;
+	}
+
+	public static TreeBarrierTask kick(String barrier) {
+		return new TreeBarrierTask(Op.KICK, barrier, 0);
+	}
+
+	/**
+	 * @param superstep Superstep the sending node is in.
+	 * @param aggregates Aggregates released with that superstep.
+	 * @param view Identifier of the cluster view in which the node has noticed the change.
+	 */
+	public static TreeBarrierTask repair(String barrier, long superstep,
+			HashMap<String, Serializable> aggregates, int view) {
+		TreeBarrierTask task = new TreeBarrierTask(Op.REPAIR, barrier, superstep);
+		task.values = aggregates;
+		task.view = view;
+		return task;
+	}
+
+	public static TreeBarrierTask deliver(String barrier, long superstep, long generation,
+			HashMap<AID, ArrayList<Serializable>> messages) {
+		TreeBarrierTask task = new TreeBarrierTask(Op.DELIVER, barrier, superstep);
+		task.generation = generation;
+		task.messages = messages;
+		return task;
+	}
+
+	@Override
+	public void setEnvironment(Cache<AID, Agent> cache, Set<AID> inputKeys) {
+	}
+
+	@Override
+	public Void call() {
+		apply(ObjectFactory.getTreeBarrier());
+		return null;
+	}
+
+	void apply(TreeBarrier tb) {
+		switch (op) {
+		case RELEASE:
+			tb.onRelease(barrier, superstep, generation, epoch, topology, values);
+			break;
+		case REPORT:
+			tb.onReport(barrier, superstep, epoch, members, values, aggregators);
+			break;
+		case REPAIR:
+			tb.onRepair(barrier, superstep, values, view);
+			break;
+		case DELIVER:
+			tb.onDeliver(barrier, superstep, generation, messages);
+			break;
+		default:
+			tb.onKick(barrier);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams a text edge list from a memory-mapped file. Each line holds the source and the target
+ * vertex id, and an optional weight, separated by whitespace or commas; lines starting with '#'
+ * or '%' are comments. The file is mapped in windows of {@link #WINDOW} bytes, and the numbers are
+ * parsed straight from the mapped bytes, so that graphs with tens of millions of edges can be read
+ * without creating any per-line objects.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class EdgeListLoader {
+	public static final int WINDOW = Integer.getInteger("siebog.graph.window", 64 << 20);
+	private MappedByteBuffer buf;
+	// the last number parsed
+	private long number;
+
+	public interface EdgeHandler {
+		void edge(long source, long target, float weight);
+	}
+
+	/**
+	 * @return The number of edges read.
+	 */
+	public static long load(String path, EdgeHandler handler) throws IOException {
+		return new EdgeListLoader().read(path, handler);
+	}
+
+	private EdgeListLoader() {
+	}
+
+	private long read(String path, EdgeHandler handler) throws IOException {
+		long edges = 0;
+		try (RandomAccessFile file = new RandomAccessFile(path, "r");
+				FileChannel ch = file.getChannel()) {
+			final long size = ch.size();
+			long pos = 0;
+			while (pos < size) {
+				int limit = (int) Math.min(WINDOW, size - pos);
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, limit);
+				boolean last = pos + limit == size;
+				int lineStart = 0;
+				while (lineStart < limit) {
+					int lineEnd = lineStart;
+					while (lineEnd < limit && buf.get(lineEnd) != '\n')
+						++lineEnd;
+					if (lineEnd == limit && !last)
+						break; // incomplete line, continue in the next window
+					if (parseLine(lineStart, lineEnd, handler))
+						++edges;
+					lineStart = lineEnd + 1;
+				}
+				if (lineStart == 0)
+					throw new IOException("Line at offset " + pos + " is longer than " + WINDOW
+							+ " bytes.");
+				pos += Math.min(lineStart, limit);
+			}
+		} finally {
+			buf = null;
+		}
+		return edges;
+	}
+
+	private boolean parseLine(int from, int to, EdgeHandler handler) throws IOException {
+		int i = skipSpace(from, to);
+		if (i == to || buf.get(i) == '#' || buf.get(i) == '%')
+			return false;
+		i = parseLong(i, to);
+		long source = number;
+		i = parseLong(skipSpace(i, to), to);
+		long target = number;
+		i = skipSpace(i, to);
+		float weight = i < to ? parseFloat(i, to) : 1f;
+		handler.edge(source, target, weight);
+		return true;
+	}
+
+	private int skipSpace(int i, int to) {
+		while (i < to) {
+			byte b = buf.get(i);
+			if (b != ' ' && b != '\t' && b != '\r' && b != ',')
+				break;
+			++i;
+		}
+		return i;
+	}
+
+	private int parseLong(int i, int to) throws IOException {
+		boolean neg = i < to && buf.get(i) == '-';
+		if (neg)
+			++i;
+		int start = i;
+		long n = 0;
+		for (; i < to; i++) {
+			byte b = buf.get(i);
+			if (b < '0' || b > '9')
+				break;
+			n = n * 10 + (b - '0');
+		}
+		if (i == start)
+			throw new IOException("Invalid vertex id in the edge list.");
+		number = neg ? -n : n;
+		return i;
+	}
+
+	private float parseFloat(int from, int to) {
+		int i = from;
+		boolean neg = buf.get(i) == '-';
+		if (neg)
+			++i;
+		long mantissa = 0;
+		int scale = 0;
+		boolean dot = false;
+		for (; i < to; i++) {
+			byte b = buf.get(i);
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				if (dot)
+					++scale;
+			} else if (b == '.' && !dot)
+				dot = true;
+			else
+				break;
+		}
+		if (i < to && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+			// rare enough to go the slow way
+			int end = i;
+			while (end < to && buf.get(end) > ' ')
+				++end;
+			byte[] bytes = new byte[end - from];
+			for (int k = 0; k < bytes.length; k++)
+				bytes[k] = buf.get(from + k);
+			return Float.parseFloat(new String(bytes, StandardCharsets.US_ASCII));
+		}
+		double value = mantissa / Math.pow(10, scale);
+		return (float) (neg ? -value : value);
+	}
+}
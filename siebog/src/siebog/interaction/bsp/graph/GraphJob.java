@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.util.Map.Entry;
+import siebog.agents.AgentClass;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+
+/**
+ * Starts a vertex-centric graph job, one {@link PartitionAgent} per partition. The progress and
+ * the throughput of the job are written to the server log by the first partition.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class GraphJob {
+	public static final String JOB = "job";
+	public static final String VERTEX = "vertex";
+	public static final String INPUT = "input";
+	public static final String PARTITIONS = "partitions";
+	public static final String INDEX = "index";
+	public static final String UNDIRECTED = "undirected";
+	public static final String MAX_SUPERSTEPS = "maxSupersteps";
+
+	private GraphJob() {
+	}
+
+	/**
+	 * @param input Path of the edge list, see {@link EdgeListLoader}. It has to be accessible to
+	 *            all nodes, e.g. on a shared file system.
+	 * @param params Job parameters, available to the vertices through
+	 *            {@link Vertex#getParam(String, String)}. Can be null.
+	 */
+	public static void start(AgentManager agm, String job,
+			Class<? extends Vertex<?, ?>> vertexClass, String input, int partitions,
+			AgentInitArgs params) {
+		AgentClass agClass = AgentClass.forSiebogEjb(PartitionAgent.class);
+		for (int i = 0; i < partitions; i++) {
+			AgentInitArgs args = new AgentInitArgs();
+			if (params != null)
+				for (Entry<String, String> e : params.toStringMap().entrySet())
+					args.put(e.getKey(), e.getValue());
+			args.put(JOB, job);
+			args.put(VERTEX, vertexClass.getName());
+			args.put(INPUT, input);
+			args.put(PARTITIONS, String.valueOf(partitions));
+			args.put(INDEX, String.valueOf(i));
+			args.put("noUIUpdate", "true");
+			agm.startServerAgent(agClass, partitionName(job, i), args);
+		}
+	}
+
+	static String partitionName(String job, int index) {
+		return job + "-p" + index;
+	}
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import siebog.interaction.bsp.Combiner;
+
+/**
+ * The vertices hosted by a {@link PartitionAgent}, and the messages they send. Vertex {@code id}
+ * belongs to partition {@code id mod count}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+class Partition {
+	private final int index;
+	private final int count;
+	private final Class<? extends Vertex<?, ?>> vertexClass;
+	private final Map<String, String> params;
+	private final Combiner<Serializable> combiner;
+	private final Map<String, Combiner<? extends Serializable>> aggregators;
+	private final HashMap<Long, Vertex<?, ?>> vertices = new HashMap<>();
+	private VertexMessages[] outgoing;
+	private HashMap<String, Serializable> partials = new HashMap<>();
+	private Map<String, Serializable> aggregates = Collections.emptyMap();
+	private long superstep;
+	private long numVertices;
+	private long numEdges;
+	private long localEdges;
+	private long sent;
+
+	@SuppressWarnings("unchecked")
+	Partition(int index, int count, String vertexClass, Map<String, String> params) {
+		this.index = index;
+		this.count = count;
+		this.params = params;
+		try {
+			this.vertexClass = (Class<? extends Vertex<?, ?>>) Class.forName(vertexClass, true,
+					Partition.class.getClassLoader()).asSubclass(Vertex.class);
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalArgumentException("Unknown vertex class " + vertexClass + ".", ex);
+		}
+		Vertex<?, ?> prototype = newVertex();
+		combiner = (Combiner<Serializable>) prototype.combiner();
+		aggregators = prototype.aggregators();
+		outgoing = new VertexMessages[count];
+	}
+
+	static int partitionOf(long id, int count) {
+		return (int) ((id & Long.MAX_VALUE) % count);
+	}
+
+	Map<String, Combiner<? extends Serializable>> getAggregators() {
+		return aggregators;
+	}
+
+	/**
+	 * Reads the vertices of this partition, and their out-edges, from the edge list.
+	 * 
+	 * @param undirected If set, each edge is added in both directions.
+	 */
+	void load(String path, final boolean undirected) throws IOException {
+		EdgeListLoader.load(path, new EdgeListLoader.EdgeHandler() {
+			@Override
+			public void edge(long source, long target, float weight) {
+				if (owns(source)) {
+					vertex(source).addEdge(target, weight);
+					++localEdges;
+				}
+				if (owns(target)) {
+					Vertex<?, ?> v = vertex(target);
+					if (undirected) {
+						v.addEdge(source, weight);
+						++localEdges;
+					}
+				}
+			}
+		});
+		for (Vertex<?, ?> v : vertices.values())
+			v.trimEdges();
+	}
+
+	int getNumLocalVertices() {
+		return vertices.size();
+	}
+
+	long getNumLocalEdges() {
+		return localEdges;
+	}
+
+	/**
+	 * Prepares the given superstep of the job.
+	 */
+	void start(long superstep, long numVertices, long numEdges, Map<String, Serializable> aggregates) {
+		this.superstep = superstep;
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.aggregates = aggregates;
+		partials = new HashMap<>();
+		sent = 0;
+	}
+
+	/**
+	 * Delivers the messages for the current superstep to their vertices.
+	 */
+	void receive(VertexMessages msgs) {
+		for (int i = 0, n = msgs.size(); i < n; i++)
+			receive(msgs.getTarget(i), msgs.getValue(i));
+	}
+
+	private void receive(long target, Serializable msg) {
+		// messages to unknown vertices create them, as in Pregel
+		Vertex<?, ?> v = vertex(target);
+		if (v.inbox == null) {
+			if (combiner != null)
+				v.inbox = msg;
+			else {
+				Vertex.MessageList list = new Vertex.MessageList();
+				list.add(msg);
+				v.inbox = list;
+			}
+		} else if (combiner != null)
+			v.inbox = combiner.combine((Serializable) v.inbox, msg);
+		else
+			((Vertex.MessageList) v.inbox).add(msg);
+	}
+
+	/**
+	 * Runs the active vertices, and the ones with messages.
+	 * 
+	 * @return The number of vertices that are still active.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	long compute() {
+		long active = 0;
+		for (Vertex v : vertices.values()) {
+			if (v.halted && v.inbox == null)
+				continue;
+			v.halted = false;
+			v.compute(v.takeMessages());
+			if (!v.halted)
+				++active;
+		}
+		return active;
+	}
+
+	/**
+	 * Takes the messages sent to the vertices of the given partition in this superstep.
+	 */
+	VertexMessages takeOutgoing(int partition) {
+		VertexMessages msgs = outgoing[partition];
+		outgoing[partition] = null;
+		return msgs;
+	}
+
+	long getSent() {
+		return sent;
+	}
+
+	HashMap<String, Serializable> takePartials() {
+		HashMap<String, Serializable> result = partials;
+		partials = new HashMap<>();
+		return result;
+	}
+
+	long getSuperstep() {
+		return superstep;
+	}
+
+	long getNumVertices() {
+		return numVertices;
+	}
+
+	long getNumEdges() {
+		return numEdges;
+	}
+
+	String getParam(String name, String defaultValue) {
+		String value = params.get(name);
+		return value != null ? value : defaultValue;
+	}
+
+	void send(long target, Serializable msg) {
+		int p = partitionOf(target, count);
+		if (outgoing[p] == null)
+			outgoing[p] = new VertexMessages();
+		outgoing[p].add(target, msg, combiner);
+		++sent;
+	}
+
+	@SuppressWarnings("unchecked")
+	void aggregate(String name, Serializable value) {
+		Combiner<Serializable> c = (Combiner<Serializable>) aggregators.get(name);
+		if (c == null)
+			throw new IllegalArgumentException("No aggregator " + name + ".");
+		Serializable prev = partials.get(name);
+		partials.put(name, prev == null ? value : c.combine(prev, value));
+	}
+
+	@SuppressWarnings("unchecked")
+	<T extends Serializable> T getAggregate(String name) {
+		return (T) aggregates.get(name);
+	}
+
+	private boolean owns(long id) {
+		return partitionOf(id, count) == index;
+	}
+
+	private Vertex<?, ?> vertex(long id) {
+		Vertex<?, ?> v = vertices.get(id);
+		if (v == null) {
+			v = newVertex();
+			v.init(id, this);
+			vertices.put(id, v);
+		}
+		return v;
+	}
+
+	private Vertex<?, ?> newVertex() {
+		try {
+			return vertexClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalArgumentException("Cannot instantiate vertex class " + vertexClass
+					+ ".", ex);
+		}
+	}
+}
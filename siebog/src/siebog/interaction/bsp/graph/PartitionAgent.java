@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import javax.ejb.Remote;
+import javax.ejb.Stateful;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.XjafAgent;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+import siebog.interaction.bsp.BarrierManager;
+import siebog.interaction.bsp.Combiner;
+import siebog.interaction.bsp.Combiners;
+import siebog.interaction.bsp.Superstep;
+
+/**
+ * Hosts one partition of a vertex-centric graph job, see {@link Vertex} and {@link GraphJob}. The
+ * partitions of a job share a BSP barrier named after the job. In their first superstep, they
+ * load their vertices from the edge list; the job starts in the first superstep in which all
+ * partitions are known to be loaded, which is job superstep 0. In each job superstep, a partition
+ * runs its vertices, and sends the vertex messages to each of the other partitions as a single
+ * BSP message. A partition with no active vertices and no messages votes to halt.
+ * <p>
+ * The first partition never halts, so that it can detect the end of the job, from the global
+ * number of active vertices and messages, and report the duration and throughput. It then tells
+ * the other partitions, halted or not, that the job is finished, and each of them releases its
+ * vertices, leaves the barrier, and stops.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Stateful(passivationCapable = false)
+@Remote(Agent.class)
+public class PartitionAgent extends XjafAgent {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(PartitionAgent.class);
+	static final String LOADED = "graph.loaded";
+	static final String VERTICES = "graph.vertices";
+	static final String EDGES = "graph.edges";
+	static final String ACTIVE = "graph.active";
+	static final String MESSAGES = "graph.messages";
+	static final String FINISHED = "graph.finished";
+	@Inject
+	private BarrierManager barrierManager;
+	private transient Partition partition;
+	private boolean loaded;
+	private String job;
+	private String input;
+	private boolean undirected;
+	private int index;
+	private int count;
+	private long maxSupersteps;
+	private long lastSuperstep;
+	// a rollback of the barrier re-releases the supersteps under a new generation
+	private long lastGeneration;
+	// barrier superstep in which the job started, 0 if still loading
+	private long start;
+	private long startTime;
+	private long totalMessages;
+	// sizes of the whole graph, reduced once the partitions are loaded
+	private long totalVertices;
+	private long totalEdges;
+
+	@Override
+	protected void onInit(AgentInitArgs args) {
+		job = args.get(GraphJob.JOB, null);
+		input = args.get(GraphJob.INPUT, null);
+		index = args.getInt(GraphJob.INDEX, 0);
+		count = args.getInt(GraphJob.PARTITIONS, 1);
+		undirected = Boolean.parseBoolean(args.get(GraphJob.UNDIRECTED, "false"));
+		maxSupersteps = Long.parseLong(args.get(GraphJob.MAX_SUPERSTEPS,
+				String.valueOf(Long.MAX_VALUE)));
+		if (job == null || input == null)
+			throw new IllegalArgumentException("Graph job name and input file are required.");
+		partition = new Partition(index, count, args.get(GraphJob.VERTEX, null),
+				args.toStringMap());
+		barrierManager.addAggregator(job, LOADED, Combiners.COUNT);
+		barrierManager.addAggregator(job, VERTICES, Combiners.COUNT);
+		barrierManager.addAggregator(job, EDGES, Combiners.COUNT);
+		barrierManager.addAggregator(job, ACTIVE, Combiners.COUNT);
+		barrierManager.addAggregator(job, MESSAGES, Combiners.COUNT);
+		for (Entry<String, Combiner<? extends Serializable>> e : partition.getAggregators()
+				.entrySet())
+			barrierManager.addAggregator(job, e.getKey(), e.getValue());
+		barrierManager.register(job, myAid);
+	}
+
+	@Override
+	protected void onMessage(ACLMessage msg) {
+		if (FINISHED.equals(msg.content)) {
+			release();
+			return;
+		}
+		if (!(msg.contentObj instanceof Superstep) || partition == null)
+			return;
+		Superstep superstep = (Superstep) msg.contentObj;
+		// the barrier repeats the superstep if the partition is slow to respond
+		boolean repeated = superstep.getGeneration() == lastGeneration
+				&& superstep.getCounter() <= lastSuperstep;
+		if (repeated || superstep.getGeneration() < lastGeneration)
+			return;
+		lastGeneration = superstep.getGeneration();
+		lastSuperstep = superstep.getCounter();
+		HashMap<String, Serializable> values;
+		if (start == 0)
+			values = prepare(superstep);
+		else if (index == 0 && isFinished(superstep)) {
+			finish(superstep);
+			return;
+		} else
+			values = compute(superstep);
+		boolean idle = start > 0 && index != 0 && (Long) values.get(ACTIVE) == 0
+				&& (Long) values.get(MESSAGES) == 0;
+		if (idle)
+			barrierManager.voteToHalt(superstep, myAid, values);
+		else
+			barrierManager.agentCompletedSuperstep(superstep, myAid, values);
+	}
+
+	/**
+	 * Loads the partition in the first superstep, and waits for the others.
+	 */
+	private HashMap<String, Serializable> prepare(Superstep superstep) {
+		Long ready = superstep.getAggregate(LOADED);
+		if (ready != null && ready == count) {
+			start = superstep.getCounter();
+			startTime = System.currentTimeMillis();
+			totalVertices = superstep.<Long> getAggregate(VERTICES);
+			totalEdges = superstep.<Long> getAggregate(EDGES);
+			LOG.info("Graph job {} started, {} vertices, {} edges.", job, totalVertices,
+					totalEdges);
+			return compute(superstep);
+		}
+		HashMap<String, Serializable> values = new HashMap<>();
+		if (!loaded) {
+			try {
+				long t = System.currentTimeMillis();
+				partition.load(input, undirected);
+				LOG.info("Partition {} of graph job {} loaded {} vertices, {} edges in {} ms.",
+						index, job, partition.getNumLocalVertices(), partition.getNumLocalEdges(),
+						System.currentTimeMillis() - t);
+			} catch (IOException ex) {
+				throw new IllegalStateException("Unable to load " + input + ".", ex);
+			}
+			loaded = true;
+		}
+		values.put(LOADED, 1L);
+		values.put(VERTICES, (long) partition.getNumLocalVertices());
+		values.put(EDGES, partition.getNumLocalEdges());
+		return values;
+	}
+
+	private HashMap<String, Serializable> compute(Superstep superstep) {
+		partition.start(superstep.getCounter() - start, totalVertices, totalEdges,
+				aggregates(superstep));
+		for (Serializable m : superstep.getMessages())
+			partition.receive((VertexMessages) m);
+		long active = 0;
+		if (partition.getSuperstep() < maxSupersteps)
+			active = partition.compute();
+		for (int p = 0; p < count; p++) {
+			VertexMessages out = partition.takeOutgoing(p);
+			if (out != null)
+				barrierManager.send(superstep, peer(p), out);
+		}
+		HashMap<String, Serializable> values = partition.takePartials();
+		values.put(ACTIVE, active);
+		values.put(MESSAGES, partition.getSent());
+		return values;
+	}
+
+	private boolean isFinished(Superstep superstep) {
+		Long messages = superstep.getAggregate(MESSAGES);
+		Long active = superstep.getAggregate(ACTIVE);
+		if (messages != null)
+			totalMessages += messages;
+		return superstep.getCounter() - start >= maxSupersteps
+				|| (superstep.getCounter() > start && active == 0 && messages == 0);
+	}
+
+	private void finish(Superstep superstep) {
+		long steps = superstep.getCounter() - start;
+		long time = Math.max(1, System.currentTimeMillis() - startTime);
+		LOG.info("Graph job {} finished after {} supersteps in {} ms: {} messages, {} messages/s, "
+				+ "{} edges/s.", job, steps, time, totalMessages, totalMessages * 1000 / time,
+				totalEdges * steps * 1000 / time);
+		if (count > 1) {
+			ACLMessage done = new ACLMessage(Performative.INFORM);
+			done.sender = myAid;
+			for (int p = 1; p < count; p++)
+				done.receivers.add(peer(p));
+			done.content = FINISHED;
+			msm().post(done);
+		}
+		release();
+	}
+
+	private void release() {
+		if (partition == null)
+			return;
+		partition = null;
+		barrierManager.deregister(job, myAid);
+		agm().stopAgent(myAid);
+	}
+
+	private HashMap<String, Serializable> aggregates(Superstep superstep) {
+		HashMap<String, Serializable> result = new HashMap<>();
+		for (String name : partition.getAggregators().keySet()) {
+			Serializable value = superstep.getAggregate(name);
+			if (value != null)
+				result.put(name, value);
+		}
+		return result;
+	}
+
+	private AID peer(int p) {
+		return new AID(GraphJob.partitionName(job, p), myAid.getHost(), myAid.getAgClass());
+	}
+}
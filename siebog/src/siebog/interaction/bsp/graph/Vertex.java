@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import siebog.interaction.bsp.Combiner;
+
+/**
+ * A vertex of a graph processed in the vertex-centric (Pregel) style. In each superstep, every
+ * active vertex, and every halted vertex which has received messages, gets its
+ * {@link #compute(Iterable)} called with the messages sent to it in the previous superstep. A
+ * vertex can update its value, send messages along its edges or to any other vertex, contribute
+ * to global aggregators, and vote to halt. The job is over once all vertices have halted and there
+ * are no messages in flight.
+ * <p>
+ * Vertices are not agents: many of them are hosted by each {@link PartitionAgent}, which exchanges
+ * the messages with the other partitions in bulk, through the BSP barrier. Implementations need a
+ * public no-argument constructor.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public abstract class Vertex<V extends Serializable, M extends Serializable> {
+	private static final long[] NO_TARGETS = new long[0];
+	private long id;
+	private V value;
+	private long[] targets = NO_TARGETS;
+	private float[] weights;
+	private int degree;
+	boolean halted;
+	// messages for the current superstep: a single value with a combiner, a list otherwise
+	Object inbox;
+	Partition partition;
+
+	public abstract void compute(Iterable<M> messages);
+
+	/**
+	 * Optional combiner of the messages sent to the same vertex, called on a prototype instance
+	 * when the partition is created.
+	 */
+	protected Combiner<M> combiner() {
+		return null;
+	}
+
+	/**
+	 * Optional global aggregators, called on a prototype instance when the partition is created.
+	 */
+	protected Map<String, Combiner<? extends Serializable>> aggregators() {
+		return Collections.emptyMap();
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public V getValue() {
+		return value;
+	}
+
+	public void setValue(V value) {
+		this.value = value;
+	}
+
+	public int getNumEdges() {
+		return degree;
+	}
+
+	public long getEdgeTarget(int i) {
+		return targets[i];
+	}
+
+	/**
+	 * @return Weight of the given edge, 1 if the input graph is not weighted.
+	 */
+	public float getEdgeWeight(int i) {
+		return weights != null ? weights[i] : 1f;
+	}
+
+	/**
+	 * @return The current superstep of the job, starting at 0.
+	 */
+	protected long getSuperstep() {
+		return partition.getSuperstep();
+	}
+
+	protected long getTotalNumVertices() {
+		return partition.getNumVertices();
+	}
+
+	protected long getTotalNumEdges() {
+		return partition.getNumEdges();
+	}
+
+	/**
+	 * @return The value of a job parameter, i.e. of an argument of the partition agents.
+	 */
+	protected String getParam(String name, String defaultValue) {
+		return partition.getParam(name, defaultValue);
+	}
+
+	protected void sendMessage(long target, M message) {
+		partition.send(target, message);
+	}
+
+	protected void sendMessageToAllEdges(M message) {
+		for (int i = 0; i < degree; i++)
+			partition.send(targets[i], message);
+	}
+
+	/**
+	 * Deactivates the vertex until it receives a message.
+	 */
+	protected void voteToHalt() {
+		halted = true;
+	}
+
+	protected void aggregate(String name, Serializable value) {
+		partition.aggregate(name, value);
+	}
+
+	/**
+	 * @return The value of the aggregator over the previous superstep.
+	 */
+	protected <T extends Serializable> T getAggregate(String name) {
+		return partition.getAggregate(name);
+	}
+
+	void init(long id, Partition partition) {
+		this.id = id;
+		this.partition = partition;
+	}
+
+	void addEdge(long target, float weight) {
+		if (degree == targets.length)
+			targets = Arrays.copyOf(targets, Math.max(4, degree * 2));
+		if (weight != 1f && weights == null) {
+			weights = new float[targets.length];
+			Arrays.fill(weights, 0, degree, 1f);
+		}
+		if (weights != null) {
+			if (weights.length < targets.length)
+				weights = Arrays.copyOf(weights, targets.length);
+			weights[degree] = weight;
+		}
+		targets[degree++] = target;
+	}
+
+	void trimEdges() {
+		if (targets.length > degree)
+			targets = Arrays.copyOf(targets, degree);
+		if (weights != null && weights.length > degree)
+			weights = Arrays.copyOf(weights, degree);
+	}
+
+	@SuppressWarnings("unchecked")
+	List<M> takeMessages() {
+		Object msgs = inbox;
+		inbox = null;
+		if (msgs == null)
+			return Collections.emptyList();
+		if (msgs instanceof MessageList)
+			return (List<M>) msgs;
+		return Collections.singletonList((M) msgs);
+	}
+
+	/**
+	 * Marks the inbox of a vertex without a combiner, so that it's not confused with a message
+	 * which happens to be a list.
+	 */
+	static class MessageList extends ArrayList<Serializable> {
+		private static final long serialVersionUID = 1L;
+
+		MessageList() {
+			super(2);
+		}
+	}
+}
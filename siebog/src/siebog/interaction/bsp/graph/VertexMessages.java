@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.interaction.bsp.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import siebog.interaction.bsp.Combiner;
+
+/**
+ * Vertex messages sent from one partition to another in a superstep, shipped as a single BSP
+ * message. If the job has a combiner, the messages to the same vertex are merged on the way in.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class VertexMessages implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private long[] targets = new long[16];
+	private Serializable[] values = new Serializable[16];
+	private int size;
+	// position of each target, only used while combining
+	private transient HashMap<Long, Integer> index;
+
+	public void add(long target, Serializable value, Combiner<Serializable> combiner) {
+		if (combiner != null) {
+			if (index == null)
+				index = new HashMap<>();
+			Integer pos = index.get(target);
+			if (pos != null) {
+				values[pos] = combiner.combine(values[pos], value);
+				return;
+			}
+			index.put(target, size);
+		}
+		if (size == targets.length) {
+			targets = Arrays.copyOf(targets, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		targets[size] = target;
+		values[size++] = value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getTarget(int i) {
+		return targets[i];
+	}
+
+	public Serializable getValue(int i) {
+		return values[i];
+	}
+}
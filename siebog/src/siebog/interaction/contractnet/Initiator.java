@@ -5,10 +5,10 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
+import siebog.agents.RunningAgentsView;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
-import siebog.utils.ObjectFactory;
 
 /**
  * 
@@ -32,7 +32,7 @@ public abstract class Initiator extends XjafAgent {
 	public void cfp(CallForProposal proposal) {
 		status = 0;
 		proposal.setInitiator(myAid);
-		List<AID> participants = ObjectFactory.getAgentManager().getRunningAgents();
+		List<AID> participants = RunningAgentsView.get().getAgents();
 		ACLMessage msg = new ACLMessage(Performative.CALL_FOR_PROPOSAL);
 		msg.receivers.addAll(participants);
 		msg.contentObj = proposal;
@@ -5,8 +5,10 @@ package siebog.interaction.contractnet;
  * @author <a href="jovanai.191@gmail.com">Jovana Ivkovic</a>
  */
 
+import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import siebog.agents.ComputeCallback;
 import siebog.agents.XjafAgent;
 import siebog.interaction.ACLMessage;
 import siebog.interaction.Performative;
@@ -54,13 +56,55 @@ public abstract class Participant extends XjafAgent {
 
 	public abstract Proposal createProposal(CallForProposal cfp);
 
-	public abstract Result performTask(CallForProposal cfp);
+	/**
+	 * Performs the accepted call within the agent. Participants that offload their tasks, see
+	 * {@link #createTask(CallForProposal)}, don't need to override it.
+	 */
+	public Result performTask(CallForProposal cfp) {
+		throw new IllegalStateException(getClass().getName()
+				+ " must override either performTask or createTask.");
+	}
+
+	/**
+	 * Creates the task for the accepted call, to be run on the compute pool, concurrently with the
+	 * agent's message processing. The task must not reference the agent; everything it needs should
+	 * be copied into it here. By default there is no such task, and the call is performed by
+	 * {@link #performTask(CallForProposal)} within the agent.
+	 */
+	public Callable<Result> createTask(CallForProposal cfp) {
+		return null;
+	}
 
+	/**
+	 * An offloaded task is performed on the compute pool, so that the participant can keep
+	 * answering other calls in the meantime.
+	 */
 	public void handleAcceptProposal() {
-		Result result = performTask(cfp);
+		final CallForProposal accepted = cfp;
+		Callable<Result> task = createTask(accepted);
+		if (task == null) {
+			reportResult(accepted, performTask(accepted));
+			return;
+		}
+		offload(task, new ComputeCallback<Result>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void onComplete(Result result) {
+				reportResult(accepted, result);
+			}
+
+			@Override
+			public void onFailure(Throwable error) {
+				LOG.warn("{}: Error while performing the task.", myAid, error);
+				reportResult(accepted, null);
+			}
+		});
+	}
 
+	private void reportResult(CallForProposal cfp, Result result) {
 		ACLMessage msg = null;
-		if (result.isSuccesful()) {
+		if (result != null && result.isSuccesful()) {
 			msg = new ACLMessage(Performative.INFORM);
 			msg.sender = myAid;
 			msg.receivers.add(cfp.getInitiator());
@@ -21,10 +21,12 @@
 package siebog.interaction.contractnet.example;
 
 import java.util.Random;
+import java.util.concurrent.Callable;
 import javax.ejb.Remote;
 import javax.ejb.Stateful;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
 import siebog.agents.Agent;
 import siebog.interaction.contractnet.CallForProposal;
 import siebog.interaction.contractnet.Participant;
@@ -68,29 +70,44 @@ public class ParticipantExample extends Participant {
 	}
 
 	@Override
-	public Result performTask(CallForProposal cfp) {
-		String[] nums = cfp.getContent().split(",");
-		int sum = 0;
-		for (String num : nums) {
-			sum += Integer.parseInt(num);
-		}
-		Result result = new Result();
+	public Callable<Result> createTask(CallForProposal cfp) {
+		return new SumTask(myAid, cfp.getContent());
+	}
 
-		// simulate failure in performing task
+	private static class SumTask implements Callable<Result> {
+		private final AID aid;
+		private final String content;
 
-		Random rnd = new Random();
-		int rndNum = rnd.nextInt(20 - 1 + 1) + 1;
-
-		if (rndNum % 4 == 0) {
-			result.setSuccesful(false);
-			LOG.info("{}: Failure in preforming the task.", myAid);
-		} else {
-			result.setSuccesful(true);
-			result.setContent(Integer.toString(sum));
+		SumTask(AID aid, String content) {
+			this.aid = aid;
+			this.content = content;
+		}
 
-			LOG.info("{}: Task succesfully preformed.", myAid);
+		@Override
+		public Result call() {
+			String[] nums = content.split(",");
+			int sum = 0;
+			for (String num : nums) {
+				sum += Integer.parseInt(num);
+			}
+			Result result = new Result();
+
+			// simulate failure in performing task
+
+			Random rnd = new Random();
+			int rndNum = rnd.nextInt(20 - 1 + 1) + 1;
+
+			if (rndNum % 4 == 0) {
+				result.setSuccesful(false);
+				LOG.info("{}: Failure in preforming the task.", aid);
+			} else {
+				result.setSuccesful(true);
+				result.setContent(Integer.toString(sum));
+
+				LOG.info("{}: Task succesfully preformed.", aid);
+			}
+			return result;
 		}
-		return result;
 	}
 
 }
@@ -41,6 +41,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import siebog.agents.AID;
+import siebog.agents.RunningAgentsView;
 import siebog.interaction.ACLMessage;
 import siebog.jasonee.environment.ActionFeedbackMessage;
 import siebog.utils.ObjectFactory;
@@ -155,7 +156,7 @@ public class JasonEEAgArch extends AgArch implements Serializable {
 	@Override
 	public void broadcast(Message m) throws Exception {
 		ACLMessage acl = JasonMessage.toAclMessage(m);
-		List<AID> list = ObjectFactory.getAgentManager().getRunningAgents();
+		List<AID> list = RunningAgentsView.get().getAgents();
 		final AID myAid = agent.getAid();
 		for (AID aid : list)
 			if (!myAid.equals(aid))
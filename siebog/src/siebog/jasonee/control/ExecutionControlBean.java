@@ -31,9 +31,11 @@ package siebog.jasonee.control;
 import jason.runtime.RuntimeServicesInfraTier;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import javax.ejb.AccessTimeout;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
@@ -42,6 +44,7 @@ import javax.ejb.Stateful;
 import org.w3c.dom.Document;
 import siebog.agents.AID;
 import siebog.agents.Agent;
+import siebog.utils.FailureDetector;
 import siebog.utils.ObjectFactory;
 
 /**
@@ -53,7 +56,7 @@ import siebog.utils.ObjectFactory;
 @Lock(LockType.WRITE)
 @AccessTimeout(value = 60000, unit = TimeUnit.MILLISECONDS)
 public class ExecutionControlBean implements ExecutionControl {
-	// private static final Logger logger = Logger.getLogger(ExecutionControlBean.class.getName());
+	private static final Logger logger = Logger.getLogger(ExecutionControlBean.class.getName());
 	private static final long serialVersionUID = 1L;
 	private int cycleNum;
 	private Set<AID> registered;
@@ -168,21 +171,19 @@ public class ExecutionControlBean implements ExecutionControl {
 	}
 
 	private void filterUnavailableAgents() {
-		// TODO : Implement filterUnavailableAgents
-		// final MessageManager msm = ObjectFactory.getMessageManager();
-		// Iterator<AID> i = registered.iterator();
-		// while (i.hasNext()) {
-		// AID aid = i.next();
-		// ReasoningCycleTimeout tm = new ReasoningCycleTimeout(aid, cycleNum);
-		// try {
-		// int successful = msm.post(tm);
-		// if (successful != 1)
-		// throw new Exception(); // get() can also throw an exception
-		// } catch (Exception ex) {
-		// logger.info("Agent " + aid + " no longer available.");
-		// i.remove();
-		// running.remove(aid);
-		// }
-		// }
+		final FailureDetector fd = ObjectFactory.getFailureDetector();
+		Iterator<AID> i = registered.iterator();
+		while (i.hasNext()) {
+			AID aid = i.next();
+			if (!fd.isAlive(aid)) {
+				logger.info("Agent " + aid + " no longer available.");
+				i.remove();
+				running.remove(aid);
+			}
+		}
+		i = pending.iterator();
+		while (i.hasNext())
+			if (!fd.isAlive(i.next()))
+				i.remove();
 	}
 }
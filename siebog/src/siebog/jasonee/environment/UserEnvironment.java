@@ -53,6 +53,8 @@ import siebog.utils.ObjectFactory;
 public class UserEnvironment implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private static Logger logger = Logger.getLogger(UserEnvironment.class.getName());
+	// run the actions on the blocking pool, for environments whose actions sleep or wait
+	public static final boolean BLOCKING_ACTIONS = Boolean.getBoolean("siebog.jasonee.blocking");
 	private List<Literal> percepts = Collections.synchronizedList(new ArrayList<Literal>());
 	private Map<String, List<Literal>> agPercepts = new ConcurrentHashMap<String, List<Literal>>();
 	private boolean isRunning = true;
@@ -313,7 +315,7 @@ public class UserEnvironment implements Serializable {
 	 * Called by the agent infrastructure to schedule an action to be executed on the environment
 	 */
 	public void scheduleAction(final String agName, final Structure action, final Object infraData) {
-		ObjectFactory.getExecutorService().execute(new Runnable() {
+		Runnable task = new Runnable() {
 			public void run() {
 				if (isRunning)
 					try {
@@ -326,7 +328,11 @@ public class UserEnvironment implements Serializable {
 						}
 					}
 			}
-		});
+		};
+		if (BLOCKING_ACTIONS)
+			ObjectFactory.getExecutorService().executeBlocking(task);
+		else
+			ObjectFactory.getExecutorService().execute(task);
 	}
 
 	/**
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Work-stealing pool with per-key affinity. Each worker owns a bounded lane; tasks submitted with
+ * the same key (e.g. an agent's AID) always land in the same lane, so an agent's work tends to
+ * stay on the same thread and its state stays warm in that core's cache. An idle worker steals
+ * from the tail of the other lanes, so a hot lane doesn't leave the rest of the pool idle.
+ * Affinity is a locality hint only: a stolen task may run concurrently with the owner's next one.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class AffinityTaskPool extends TaskPool {
+	private static final long IDLE_WAIT_MS = 10;
+	private final LinkedBlockingDeque<Runnable>[] lanes;
+	private final Thread[] workers;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean running = true;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public AffinityTaskPool(String name, int threads, int laneSize, SaturationPolicy policy,
+			ThreadFactory threadFactory) {
+		super(name, policy);
+		lanes = new LinkedBlockingDeque[threads];
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+			lanes[i] = new LinkedBlockingDeque<>(laneSize);
+		for (int i = 0; i < threads; i++) {
+			workers[i] = threadFactory.newThread(new Worker(i));
+			workers[i].start();
+		}
+	}
+
+	@Override
+	protected boolean offer(Object key, Runnable task) {
+		if (!running)
+			return false;
+		int lane;
+		if (key != null)
+			lane = (key.hashCode() & 0x7fffffff) % lanes.length;
+		else
+			lane = (next.getAndIncrement() & 0x7fffffff) % lanes.length;
+		return lanes[lane].offerLast(task);
+	}
+
+	@Override
+	protected int queued() {
+		int n = 0;
+		for (LinkedBlockingDeque<Runnable> lane : lanes)
+			n += lane.size();
+		return n;
+	}
+
+	@Override
+	public void shutdown() {
+		running = false;
+		for (Thread w : workers)
+			w.interrupt();
+	}
+
+	private class Worker implements Runnable {
+		private final int index;
+
+		Worker(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void run() {
+			final LinkedBlockingDeque<Runnable> own = lanes[index];
+			while (running) {
+				Runnable task = own.pollFirst();
+				if (task == null)
+					task = steal();
+				if (task == null) {
+					try {
+						task = own.pollFirst(IDLE_WAIT_MS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException ex) {
+						break;
+					}
+				}
+				if (task != null)
+					task.run();
+			}
+		}
+
+		private Runnable steal() {
+			for (int i = 1; i < lanes.length; i++) {
+				Runnable task = lanes[(index + i) % lanes.length].pollLast();
+				if (task != null)
+					return task;
+			}
+			return null;
+		}
+	}
+}
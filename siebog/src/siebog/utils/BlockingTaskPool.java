@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool for tasks that spend most of their time blocked (sleeping, waiting on I/O or on remote
+ * calls). Each task gets its own thread, up to {@code maxThreads}; the threads are created on
+ * demand and discarded after a short idle period, so the pool costs nothing while unused. Once all
+ * threads are busy, the tasks are queued, and once the queue is full the saturation policy kicks
+ * in.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class BlockingTaskPool extends TaskPool {
+	private static final long KEEP_ALIVE_SEC = 30;
+	private final ThreadPoolExecutor executor;
+
+	public BlockingTaskPool(String name, int maxThreads, int queueSize, SaturationPolicy policy,
+			ThreadFactory threadFactory) {
+		super(name, policy);
+		executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queueSize), threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	protected boolean offer(Object key, Runnable task) {
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException ex) {
+			return false;
+		}
+	}
+
+	@Override
+	protected int queued() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork/join pool for CPU-bound work, sized to the number of cores. Tasks running in the pool can
+ * split themselves further with {@link java.util.concurrent.ForkJoinTask#fork()}. The queue is
+ * unbounded, since the submitters are agents waiting for the results anyway.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class ComputeTaskPool extends TaskPool {
+	private final ForkJoinPool pool;
+
+	public ComputeTaskPool(String name, int threads) {
+		super(name, SaturationPolicy.ABORT);
+		pool = new ForkJoinPool(threads);
+	}
+
+	@Override
+	protected boolean offer(Object key, Runnable task) {
+		if (pool.isShutdown())
+			return false;
+		pool.execute(task);
+		return true;
+	}
+
+	@Override
+	protected int queued() {
+		return pool.getQueuedSubmissionCount() + (int) pool.getQueuedTaskCount();
+	}
+
+	@Override
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+}
@@ -20,38 +20,159 @@
 
 package siebog.utils;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.LocalBean;
 import javax.ejb.Singleton;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import siebog.agents.AID;
-import siebog.agents.HeartbeatMessage;
+import siebog.agents.Agent;
+import siebog.agents.AgentManager;
+import siebog.agents.AgentManagerBean;
+import siebog.agents.ComputeResultMessage;
+import siebog.interaction.ACLMessage;
 
 /**
  * Wrapper around (managed) executor services.
+ * <p>
+ * Besides the container's default executor, two bounded, instrumented pools are available. The
+ * blocking pool gives each task its own thread and is meant for work that sleeps or waits, so
+ * that it doesn't tie up the shared executor. The affinity pool is a work-stealing pool which
+ * keeps the tasks of the same key (e.g. an agent) on the same worker. Both are created on first
+ * use. The backend used by {@link #execute(Runnable)} is selected with
+ * {@code siebog.executor.backend} (managed, blocking or affinity), and defaults to the managed
+ * executor. Work done on behalf of an agent, see {@link #execute(AID, Runnable)}, is keyed by
+ * its AID when the affinity backend is selected. The pools' metrics are available through
+ * {@link AgentManager#getPoolStats()}.
+ * <p>
+ * CPU-bound work offloaded by agents runs on a separate fork/join pool sized to the number of
+ * cores, see {@link #offload(AID, long, Callable)}.
  * 
  * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
  */
 @Singleton
 @LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class ExecutorService {
+	private static final Logger LOG = LoggerFactory.getLogger(ExecutorService.class);
+	public enum Backend {
+		MANAGED, BLOCKING, AFFINITY
+	}
+
+	public static final Backend BACKEND = Backend.valueOf(System.getProperty(
+			"siebog.executor.backend", "managed").trim().toUpperCase());
+	public static final int BLOCKING_THREADS = Integer.getInteger("siebog.executor.blocking.threads",
+			256);
+	public static final int BLOCKING_QUEUE = Integer.getInteger("siebog.executor.blocking.queue",
+			4096);
+	public static final int AFFINITY_THREADS = Integer.getInteger("siebog.executor.affinity.threads",
+			Runtime.getRuntime().availableProcessors());
+	public static final int AFFINITY_QUEUE = Integer.getInteger("siebog.executor.affinity.queue",
+			1024);
+	public static final int COMPUTE_THREADS = Integer.getInteger("siebog.executor.compute.threads",
+			Runtime.getRuntime().availableProcessors());
+	public static final int DELIVERY_RETRIES = Integer.getInteger("siebog.executor.delivery.retries",
+			3);
+	public static final long DELIVERY_BACKOFF = Long.getLong("siebog.executor.delivery.backoff", 50);
+	public static final SaturationPolicy POLICY = SaturationPolicy.fromProperty(
+			"siebog.executor.policy", SaturationPolicy.CALLER_RUNS);
 	@Resource(lookup = "java:jboss/ee/concurrency/executor/default")
 	private ManagedExecutorService executor;
+	@Resource(lookup = "java:jboss/ee/concurrency/factory/default")
+	private ManagedThreadFactory threadFactory;
+	private volatile TaskPool blockingPool;
+	private volatile TaskPool affinityPool;
+	private volatile TaskPool computePool;
 	@Resource(lookup = "java:jboss/ee/concurrency/scheduler/default")
 	private ManagedScheduledExecutorService scheduler;
-	private AtomicLong hbCounter = new AtomicLong();
-	private Map<Long, HeartbeatMessage> heartbeats = Collections.synchronizedMap(new HashMap<Long, HeartbeatMessage>());
+	@Inject
+	private TickService ticks;
+	@Inject
+	private AgentManagerBean agm;
 
 	public Future<?> execute(Runnable task) {
-		return executor.submit(task);
+		switch (BACKEND) {
+		case BLOCKING:
+			return blocking().submit(task);
+		case AFFINITY:
+			return affinity().submit(task);
+		default:
+			return executor.submit(task);
+		}
+	}
+
+	/**
+	 * Runs a task on behalf of the given agent. With the affinity backend, the tasks of the same
+	 * agent are kept on the same worker, otherwise it's the same as {@link #execute(Runnable)}.
+	 */
+	public Future<?> execute(AID aid, Runnable task) {
+		if (BACKEND == Backend.AFFINITY)
+			return executeWithAffinity(aid, task);
+		return execute(task);
+	}
+
+	/**
+	 * Runs a task that is expected to block, on a thread of its own.
+	 */
+	public Future<?> executeBlocking(Runnable task) {
+		return blocking().submit(task);
+	}
+
+	/**
+	 * Runs a task on the work-stealing pool, preferring the worker assigned to the key.
+	 */
+	public Future<?> executeWithAffinity(Object key, Runnable task) {
+		return affinity().submit(key, task);
+	}
+
+	/**
+	 * Runs a CPU-bound task on the compute pool, and delivers its outcome to the agent as a
+	 * {@link ComputeResultMessage} with the given handle. Cancelling the returned future
+	 * interrupts the task, in which case nothing is delivered. Compute tasks run outside of the
+	 * container's context, so they should do nothing but compute.
+	 */
+	public Future<?> offload(final AID aid, final long handle, final Callable<?> task) {
+		return compute().submit(new Runnable() {
+			@Override
+			public void run() {
+				Object result = null;
+				Throwable error = null;
+				try {
+					result = task.call();
+				} catch (Throwable ex) {
+					error = ex;
+				}
+				if (!Thread.currentThread().isInterrupted())
+					deliverLocally(aid, new ComputeResultMessage(aid, handle, result, error));
+			}
+		});
+	}
+
+	/**
+	 * @return Metrics of the pools created so far. The managed executor is not included.
+	 */
+	public List<PoolStats> getPoolStats() {
+		List<PoolStats> stats = new ArrayList<>(3);
+		if (blockingPool != null)
+			stats.add(blockingPool.getStats());
+		if (affinityPool != null)
+			stats.add(affinityPool.getStats());
+		if (computePool != null)
+			stats.add(computePool.getStats());
+		return stats;
 	}
 
 	public <T> Future<?> execute(final RunnableWithParam<T> task, final T param) {
@@ -90,34 +211,131 @@ public class ExecutorService {
 		}, initialDelayMillis, periodMillis);
 	}
 
-	public long registerHeartbeat(AID aid, long delayMilliseconds, String content) {
-		long handle = hbCounter.incrementAndGet();
-		HeartbeatMessage msg = new HeartbeatMessage(aid, handle);
-		msg.content = content;
-		heartbeats.put(handle, msg);
-		signalHeartbeat(handle);
-		return handle;
+	/**
+	 * Delivers the message directly to the agent, bypassing the message broker. A failed delivery
+	 * is retried up to {@link #DELIVERY_RETRIES} times, with a growing delay, after which (or if
+	 * the agent is not found, or the task is rejected) the message is re-posted through the
+	 * message manager.
+	 */
+	public Future<?> deliverLocally(final AID aid, final ACLMessage msg) {
+		return deliverLocally(aid, msg, 0);
 	}
 
-	public boolean signalHeartbeat(long handle) {
-		final HeartbeatMessage msg = heartbeats.get(handle);
-		if (msg != null) {
+	private Future<?> deliverLocally(final AID aid, final ACLMessage msg, final int attempt) {
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				Agent agent = agm.getAgentReference(aid);
+				if (agent == null) {
+					repost(aid, msg, null);
+					return;
+				}
+				try {
+					agent.handleMessage(msg);
+				} catch (RuntimeException ex) {
+					if (attempt < DELIVERY_RETRIES) {
+						LOG.debug("Retrying the delivery of {} to {}.", msg, aid, ex);
+						retry(aid, msg, attempt + 1);
+					} else
+						repost(aid, msg, ex);
+				}
+			}
+		};
+		try {
+			return execute(aid, task);
+		} catch (RuntimeException ex) {
+			repost(aid, msg, ex);
+			return null;
+		}
+	}
+
+	private void retry(final AID aid, final ACLMessage msg, final int attempt) {
+		try {
 			execute(new Runnable() {
 				@Override
 				public void run() {
-					ObjectFactory.getMessageManager().post(msg);
+					deliverLocally(aid, msg, attempt);
 				}
-			});
-			return true;
+			}, DELIVERY_BACKOFF << (attempt - 1));
+		} catch (RuntimeException ex) {
+			repost(aid, msg, ex);
+		}
+	}
+
+	private void repost(AID aid, ACLMessage msg, Exception cause) {
+		if (msg.receivers.size() != 1 || !msg.receivers.contains(aid)) {
+			// re-posting would reach the other receivers again
+			LOG.warn("Unable to deliver {} to {}.", msg, aid, cause);
+			return;
 		}
-		return false;
+		LOG.debug("Re-posting {} to {} through the message manager.", msg, aid, cause);
+		try {
+			ObjectFactory.getMessageManager().post(msg);
+		} catch (RuntimeException ex) {
+			LOG.warn("Unable to deliver {} to {}.", msg, aid, ex);
+		}
+	}
+
+	/**
+	 * Registers a periodic heartbeat, see {@link TickService}.
+	 */
+	public long registerHeartbeat(AID aid, long periodMillis, String content) {
+		return ticks.register(aid, periodMillis, content);
+	}
+
+	/**
+	 * Heartbeats are periodic, so there is no need to signal them explicitly.
+	 * 
+	 * @return True if the heartbeat is still active.
+	 */
+	public boolean signalHeartbeat(long handle) {
+		return ticks.isValid(handle);
 	}
 
 	public boolean isValidHeartbeatHandle(long handle) {
-		return heartbeats.containsKey(handle);
+		return ticks.isValid(handle);
 	}
 
 	public void cancelHeartbeat(long handle) {
-		heartbeats.remove(handle);
+		ticks.cancel(handle);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (blockingPool != null)
+			blockingPool.shutdown();
+		if (affinityPool != null)
+			affinityPool.shutdown();
+		if (computePool != null)
+			computePool.shutdown();
+	}
+
+	private TaskPool blocking() {
+		if (blockingPool == null)
+			synchronized (this) {
+				if (blockingPool == null)
+					blockingPool = new BlockingTaskPool("blocking", BLOCKING_THREADS,
+							BLOCKING_QUEUE, POLICY, threadFactory);
+			}
+		return blockingPool;
+	}
+
+	private TaskPool affinity() {
+		if (affinityPool == null)
+			synchronized (this) {
+				if (affinityPool == null)
+					affinityPool = new AffinityTaskPool("affinity", AFFINITY_THREADS,
+							AFFINITY_QUEUE, POLICY, threadFactory);
+			}
+		return affinityPool;
+	}
+
+	private TaskPool compute() {
+		if (computePool == null)
+			synchronized (this) {
+				if (computePool == null)
+					computePool = new ComputeTaskPool("compute", COMPUTE_THREADS);
+			}
+		return computePool;
 	}
 }
@@ -0,0 +1,399 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.ConcurrentAccessException;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import org.infinispan.AdvancedCache;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
+import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.transport.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+
+/**
+ * Cluster-wide failure detector. Each node periodically writes a heartbeat into a replicated
+ * cache, and every node keeps the arrival history of the others' heartbeats. A node is suspected
+ * once it leaves the cluster view, or once its phi-accrual suspicion level, computed from the
+ * history, exceeds {@link #THRESHOLD}. The latter catches nodes which are hung, but haven't been
+ * excluded from the view yet.
+ * <p>
+ * Agents announce their hosting node when initialized, and again after failing over to another
+ * node, see {@link #announce(AID, String)}, and withdraw it when stopped or discarded. The hosts
+ * are kept in a distributed cache, and entries left behind by the nodes which have left the
+ * cluster are compacted by their owners on each view change. Liveness queries are answered from
+ * cached state only, while an agent which keeps being queried gets pinged in the background, see
+ * {@link #isAlive(AID)}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@Startup
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class FailureDetector {
+	private static final Logger LOG = LoggerFactory.getLogger(FailureDetector.class);
+	public static final long INTERVAL = Long.getLong("siebog.fd.interval", 1000);
+	public static final double THRESHOLD = Double.parseDouble(System.getProperty("siebog.fd.phi",
+			"8"));
+	// number of inter-arrival times used to estimate the distribution
+	public static final int WINDOW = Integer.getInteger("siebog.fd.window", 100);
+	// tolerated pause on top of the expected interval, e.g. due to gc
+	public static final long PAUSE = Long.getLong("siebog.fd.pause", 3000);
+	// consecutive liveness queries of an agent on a live host, before the agent gets pinged
+	public static final int PING_AFTER = Integer.getInteger("siebog.fd.ping.after", 3);
+	private static final double MIN_STD_DEV = 100;
+	@Resource(lookup = "java:jboss/ee/concurrency/scheduler/default")
+	private ManagedScheduledExecutorService scheduler;
+	private final Map<Address, History> histories = new ConcurrentHashMap<>();
+	private final Map<AID, AtomicInteger> queries = new ConcurrentHashMap<>();
+	private final Set<AID> pinging = Collections.newSetFromMap(new ConcurrentHashMap<AID, Boolean>());
+	// agents which have failed a ping, until they're announced again or stop running
+	private final Set<AID> unresponsive = Collections
+			.newSetFromMap(new ConcurrentHashMap<AID, Boolean>());
+	private Cache<Address, Long> heartbeats;
+	private Cache<AID, Agent> agents;
+	private Cache<AID, Address> hosts;
+	private Address self;
+	private volatile Set<Address> members;
+	private Listeners listeners;
+	private ScheduledFuture<?> beat;
+
+	@SuppressWarnings("unchecked")
+	@PostConstruct
+	public void postConstruct() {
+		heartbeats = (Cache<Address, Long>) GlobalCache.get().getCache(GlobalCache.NODE_HEARTBEATS);
+		hosts = (Cache<AID, Address>) GlobalCache.get().getCache(GlobalCache.AGENT_HOSTS);
+		agents = GlobalCache.get().getRunningAgents();
+		self = heartbeats.getCacheManager().getAddress();
+		members = new HashSet<>(heartbeats.getCacheManager().getMembers());
+		listeners = new Listeners();
+		heartbeats.getCacheManager().addListener(listeners);
+		heartbeats.addListener(listeners);
+		beat = scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				heartbeats.putAsync(self, System.currentTimeMillis());
+			}
+		}, 0, INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		beat.cancel(false);
+		heartbeats.removeListener(listeners);
+		heartbeats.getCacheManager().removeListener(listeners);
+	}
+
+	@Listener
+	public final class Listeners {
+		@ViewChanged
+		public void viewChanged(ViewChangedEvent event) {
+			Set<Address> current = new HashSet<>(event.getNewMembers());
+			members = current;
+			histories.keySet().retainAll(current);
+			boolean left = false;
+			for (Address a : event.getOldMembers())
+				if (!current.contains(a)) {
+					LOG.info("Node {} has left the cluster.", a);
+					left = true;
+				}
+			if (left)
+				scheduler.execute(new Runnable() {
+					@Override
+					public void run() {
+						compact();
+					}
+				});
+		}
+
+		@CacheEntryCreated
+		@CacheEntryModified
+		public void heartbeat(CacheEntryEvent<Address, Long> event) {
+			if (event.isPre() || event.isOriginLocal())
+				return;
+			Address node = event.getKey();
+			if (!members.contains(node))
+				return;
+			History h = histories.get(node);
+			if (h == null) {
+				History newHist = new History();
+				h = histories.putIfAbsent(node, newHist);
+				if (h == null)
+					h = newHist;
+			}
+			h.arrived(System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Records the current node as the host of the given agent, unless it's the node announced
+	 * previously. Agents call it from {@code init} and on the first invocation after activation,
+	 * so only a failover results in another write.
+	 * 
+	 * @return Name of the current node, to be passed as {@code previous} next time.
+	 */
+	public static String announce(AID aid, String previous) {
+		@SuppressWarnings("unchecked")
+		Cache<AID, Address> hosts = (Cache<AID, Address>) GlobalCache.get().getCache(
+				GlobalCache.AGENT_HOSTS);
+		Address self = hosts.getCacheManager().getAddress();
+		String name = self.toString();
+		if (!name.equals(previous))
+			hosts.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).putAsync(aid, self);
+		return name;
+	}
+
+	/**
+	 * @return The node which has last announced the given agent, or null if unknown.
+	 */
+	public static Address hostOf(AID aid) {
+		return (Address) GlobalCache.get().getCache(GlobalCache.AGENT_HOSTS).get(aid);
+	}
+
+	public static void withdraw(AID aid) {
+		GlobalCache.get().getCache(GlobalCache.AGENT_HOSTS).removeAsync(aid);
+	}
+
+	public boolean isAlive(Address node) {
+		if (self.equals(node))
+			return true;
+		if (!members.contains(node))
+			return false;
+		return phi(node) < THRESHOLD;
+	}
+
+	/**
+	 * Suspicion level of the given node. Zero for nodes whose heartbeats haven't arrived yet, and
+	 * infinite for nodes outside the current view.
+	 */
+	public double phi(Address node) {
+		if (self.equals(node))
+			return 0;
+		if (!members.contains(node))
+			return Double.POSITIVE_INFINITY;
+		History h = histories.get(node);
+		return h != null ? h.phi(System.currentTimeMillis()) : 0;
+	}
+
+	/**
+	 * An agent is considered alive if its host is. Agents of the nodes that have left the cluster
+	 * are assumed to fail over, unless they have been removed from the running agents in the
+	 * meantime. They announce their new host with their next invocation.
+	 * <p>
+	 * A live host doesn't guarantee a live agent, since the container can discard the bean without
+	 * the agent being withdrawn, e.g. after a system exception. The callers ask about agents that
+	 * have missed a deadline, so every {@link #PING_AFTER} consecutive queries the agent is pinged
+	 * once. The ping is asynchronous, since the callers usually hold their own locks, and an agent
+	 * which fails it is withdrawn and reported as dead by the subsequent queries.
+	 */
+	public boolean isAlive(AID aid) {
+		Address host = hosts.get(aid);
+		if (host == null) {
+			queries.remove(aid);
+			if (!agents.containsKey(aid)) {
+				unresponsive.remove(aid);
+				return false;
+			}
+			return !unresponsive.contains(aid);
+		}
+		unresponsive.remove(aid); // announced again
+		if (isAlive(host)) {
+			probe(aid);
+			return true;
+		}
+		queries.remove(aid);
+		if (members.contains(host))
+			return false; // suspected, but still in the view, so the agent can't fail over
+		return agents.containsKey(aid);
+	}
+
+	private void probe(AID aid) {
+		AtomicInteger n = queries.get(aid);
+		if (n == null) {
+			AtomicInteger newN = new AtomicInteger();
+			n = queries.putIfAbsent(aid, newN);
+			if (n == null)
+				n = newN;
+		}
+		if (n.incrementAndGet() < PING_AFTER)
+			return;
+		n.set(0);
+		ping(aid);
+	}
+
+	private void ping(final AID aid) {
+		if (!pinging.add(aid))
+			return;
+		try {
+			scheduler.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (!responds(aid)) {
+							unresponsive.add(aid);
+							queries.remove(aid);
+							hosts.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+									.remove(aid);
+						}
+					} catch (Exception ex) {
+						LOG.warn("Unable to withdraw agent {}.", aid, ex);
+					} finally {
+						pinging.remove(aid);
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			pinging.remove(aid);
+		}
+	}
+
+	private boolean responds(AID aid) {
+		Agent agent = agents.get(aid);
+		if (agent == null)
+			return false;
+		try {
+			agent.ping();
+			return true;
+		} catch (ConcurrentAccessException ex) {
+			return true; // busy, but there
+		} catch (Exception ex) {
+			LOG.info("Agent {} doesn't respond to ping: {}", aid, ex.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Removes the locally owned hosts entries which point to the nodes outside the view, and
+	 * whose agents are no longer running. The agents which are still running fail over, and
+	 * overwrite their entries with the next invocation.
+	 */
+	private void compact() {
+		try {
+			AdvancedCache<AID, Address> local = hosts.getAdvancedCache().withFlags(
+					Flag.CACHE_MODE_LOCAL, Flag.SKIP_CACHE_LOAD);
+			DistributionManager dm = hosts.getAdvancedCache().getDistributionManager();
+			Set<Address> current = members;
+			List<AID> stale = new ArrayList<>();
+			for (Map.Entry<AID, Address> e : local.entrySet())
+				if (!current.contains(e.getValue())
+						&& (dm == null || self.equals(dm.getPrimaryLocation(e.getKey()))))
+					stale.add(e.getKey());
+			int removed = 0;
+			for (AID aid : stale)
+				if (!agents.containsKey(aid)) {
+					hosts.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).remove(aid);
+					++removed;
+				}
+			if (removed > 0)
+				LOG.info("Removed {} stale agent hosts.", removed);
+		} catch (Exception ex) {
+			LOG.warn("Unable to compact the agent hosts.", ex);
+		}
+	}
+
+	public Set<Address> getSuspects() {
+		Set<Address> result = new HashSet<>();
+		for (Address a : members)
+			if (!isAlive(a))
+				result.add(a);
+		return result;
+	}
+
+	/**
+	 * Inter-arrival times of a node's heartbeats, in a sliding window.
+	 */
+	private static class History {
+		private final long[] intervals = new long[WINDOW];
+		private int count;
+		private int next;
+		private double sum;
+		private double sumSq;
+		private long last;
+
+		History() {
+			// bootstrap with the expected interval, until real samples arrive
+			add(INTERVAL - INTERVAL / 4);
+			add(INTERVAL + INTERVAL / 4);
+		}
+
+		synchronized void arrived(long now) {
+			if (last > 0)
+				add(now - last);
+			last = now;
+		}
+
+		private void add(long interval) {
+			if (count == intervals.length) {
+				long old = intervals[next];
+				sum -= old;
+				sumSq -= (double) old * old;
+			} else
+				++count;
+			intervals[next] = interval;
+			next = (next + 1) % intervals.length;
+			sum += interval;
+			sumSq += (double) interval * interval;
+		}
+
+		// logistic approximation of the normal cdf, as in akka's phi-accrual detector
+		synchronized double phi(long now) {
+			if (last == 0)
+				return 0;
+			double mean = sum / count + PAUSE;
+			double var = sumSq / count - (sum / count) * (sum / count);
+			double std = Math.max(Math.sqrt(Math.max(var, 0)), MIN_STD_DEV);
+			double y = (now - last - mean) / std;
+			double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+			if (now - last > mean)
+				return -Math.log10(e / (1 + e));
+			return -Math.log10(1 - 1 / (1 + e));
+		}
+	}
+}
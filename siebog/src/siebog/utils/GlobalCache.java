@@ -1,7 +1,10 @@
 package siebog.utils;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.infinispan.Cache;
 import org.infinispan.manager.CacheContainer;
+import org.infinispan.notifications.Listenable;
 import siebog.agents.AID;
 import siebog.agents.Agent;
 import siebog.jasonee.control.ExecutionControl;
@@ -14,6 +17,31 @@ public class GlobalCache {
 	private static final String RUNNING_AGENTS = "running-agents";
 	private static final String EXECUTION_CONTROLS = "execution-controls";
 	private static final String ENVIRONMENTS = "environments";
+	public static final String AID_IDS = "aid-ids";
+	public static final String AGENT_REGISTRY_LOG = "agent-registry-log";
+	public static final String AGENT_STATE = "agent-state";
+	public static final String AGENT_REPLICAS = "agent-replicas";
+	public static final String BSP_LOCATIONS = "bsp-locations";
+	public static final String BSP_CHECKPOINTS = "bsp-checkpoints";
+	public static final String NODE_HEARTBEATS = "node-heartbeats";
+	public static final String AGENT_HOSTS = "agent-hosts";
+	public static final String BLACKBOARD_SHARDS = "blackboard-shards";
+	// should not exceed the l1-lifespan of the running-agents cache
+	private static final long NEAR_CACHE_TTL = Long.getLong("siebog.nearcache.ttl", 30000);
+	private static final int NEAR_CACHE_SIZE = Integer.getInteger("siebog.nearcache.size", 10000);
+	private volatile NearCache<AID, Agent> runningAgentsNear;
+	// listeners of the node-local singletons, removed on undeploy
+	private final List<Registration> listeners = new ArrayList<>();
+
+	private static class Registration {
+		final Listenable target;
+		final Object listener;
+
+		Registration(Listenable target, Object listener) {
+			this.target = target;
+			this.listener = listener;
+		}
+	}
 
 	public static GlobalCache get() {
 		if (instance == null) {
@@ -33,6 +61,26 @@ public class GlobalCache {
 		return cacheContainer.getCache(RUNNING_AGENTS);
 	}
 
+	/**
+	 * Node-local near cache of the hot entries of the running-agents cache.
+	 */
+	public NearCache<AID, Agent> getRunningAgentsNear() {
+		if (runningAgentsNear == null) {
+			synchronized (this) {
+				if (runningAgentsNear == null) {
+					NearCache<AID, Agent> near = new NearCache<>(NEAR_CACHE_SIZE, NEAR_CACHE_TTL);
+					addListener(getRunningAgents(), near);
+					runningAgentsNear = near;
+				}
+			}
+		}
+		return runningAgentsNear;
+	}
+
+	public boolean isDistributed(Cache<?, ?> cache) {
+		return cache.getCacheConfiguration().clustering().cacheMode().isDistributed();
+	}
+
 	public Cache<String, ExecutionControl> getExecutionControls() {
 		return cacheContainer.getCache(EXECUTION_CONTROLS);
 	}
@@ -44,4 +92,30 @@ public class GlobalCache {
 	public Cache<?, ?> getCache(String name) {
 		return cacheContainer.getCache(name);
 	}
+
+	/**
+	 * Adds a listener owned by a static, node-local object, to a cache or to the cache manager.
+	 * The cache container outlives the application, so such listeners have to be removed on
+	 * undeploy, see {@link #shutdown()}.
+	 */
+	public void addListener(Listenable target, Object listener) {
+		target.addListener(listener);
+		synchronized (listeners) {
+			listeners.add(new Registration(target, listener));
+		}
+	}
+
+	/**
+	 * Removes all listeners added through {@link #addListener(Listenable, Object)}.
+	 */
+	public static void shutdown() {
+		GlobalCache gc = instance;
+		if (gc == null)
+			return;
+		synchronized (gc.listeners) {
+			for (Registration r : gc.listeners)
+				r.target.removeListener(r.listener);
+			gc.listeners.clear();
+		}
+	}
 }
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryInvalidated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+
+/**
+ * Bounded, node-local cache of the most recently used entries of a clustered cache. Entries are
+ * evicted in LRU order once the maximum size is reached, expire after a fixed time-to-live, and
+ * are invalidated as soon as the backing cache reports a creation, modification, removal or L1
+ * invalidation of the corresponding key. Creations matter when the cached value records the
+ * absence of a key.
+ * <p>
+ * The time-to-live should not exceed the L1 lifespan of the backing cache, because a
+ * non-owner node stops receiving invalidations once its L1 entry expires.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Listener
+public class NearCache<K, V> {
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final Map<K, Entry<V>> entries;
+	// sequence numbers of the recent invalidations, see stamp()
+	private final Map<K, Long> tombstones;
+	private long sequence;
+	private long evictedTombstone;
+
+	private static class Entry<V> {
+		final V value;
+		final long expires;
+
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	public NearCache(final int maxEntries, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		entries = new LinkedHashMap<K, NearCache.Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, NearCache.Entry<V>> eldest) {
+				return size() > NearCache.this.maxEntries;
+			}
+		};
+		tombstones = new LinkedHashMap<K, Long>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Long> eldest) {
+				if (size() <= Math.max(NearCache.this.maxEntries, 16))
+					return false;
+				evictedTombstone = eldest.getValue();
+				return true;
+			}
+		};
+	}
+
+	public V get(K key) {
+		synchronized (entries) {
+			Entry<V> e = entries.get(key);
+			if (e == null) {
+				return null;
+			}
+			if (e.expires < System.currentTimeMillis()) {
+				entries.remove(key);
+				return null;
+			}
+			return e.value;
+		}
+	}
+
+	public void put(K key, V value) {
+		if (maxEntries <= 0 || value == null) {
+			return;
+		}
+		Entry<V> e = new Entry<>(value, System.currentTimeMillis() + ttlMillis);
+		synchronized (entries) {
+			entries.put(key, e);
+		}
+	}
+
+	/**
+	 * Should be taken before reading the value from the backing cache, and passed to
+	 * {@link #put(Object, Object, long)}.
+	 */
+	public long stamp() {
+		synchronized (entries) {
+			return sequence;
+		}
+	}
+
+	/**
+	 * Caches a value read from the backing cache, unless the key has been invalidated since the
+	 * stamp was taken, in which case the value might already be stale.
+	 */
+	public void put(K key, V value, long stamp) {
+		if (maxEntries <= 0 || value == null) {
+			return;
+		}
+		Entry<V> e = new Entry<>(value, System.currentTimeMillis() + ttlMillis);
+		synchronized (entries) {
+			Long removed = tombstones.get(key);
+			if ((removed != null && removed > stamp) || evictedTombstone > stamp) {
+				return;
+			}
+			entries.put(key, e);
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+			tombstones.remove(key);
+			tombstones.put(key, ++sequence);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			tombstones.clear();
+			evictedTombstone = ++sequence;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Removes all expired entries.
+	 */
+	public void purge() {
+		final long now = System.currentTimeMillis();
+		synchronized (entries) {
+			Iterator<Entry<V>> i = entries.values().iterator();
+			while (i.hasNext()) {
+				if (i.next().expires < now) {
+					i.remove();
+				}
+			}
+		}
+	}
+
+	// invalidate on both the pre- and the post-event, so that a concurrent read cannot re-insert
+	// the old value in between
+	@CacheEntryCreated
+	@CacheEntryModified
+	@CacheEntryRemoved
+	@CacheEntryInvalidated
+	public void entryChanged(CacheEntryEvent<K, V> event) {
+		invalidate(event.getKey());
+	}
+}
@@ -25,9 +25,12 @@ import javax.naming.NamingException;
 import siebog.agents.Agent;
 import siebog.agents.AgentManager;
 import siebog.agents.AgentManagerBean;
+import siebog.agents.lite.LiteAgentContainer;
 import siebog.interaction.JMSFactory;
 import siebog.interaction.MessageManager;
 import siebog.interaction.MessageManagerBean;
+import siebog.interaction.bsp.StaleBarrier;
+import siebog.interaction.bsp.TreeBarrier;
 import siebog.jasonee.JasonEEStarter;
 import siebog.jasonee.JasonEEStarterImpl;
 import siebog.jasonee.RemoteObjectFactory;
@@ -47,6 +50,15 @@ public abstract class ObjectFactory {
 	public static final String WebClientManagerLookup = "ejb:/" + Agent.SIEBOG_MODULE + "//"
 			+ WebClientManager.class.getSimpleName() + "!" + WebClientManager.class.getName()
 			+ "?stateful";
+	public static final String LiteAgentContainerLookup = "java:global/" + Agent.SIEBOG_MODULE
+			+ "/" + LiteAgentContainer.class.getSimpleName() + "!"
+			+ LiteAgentContainer.class.getName();
+	public static final String TreeBarrierLookup = "java:global/" + Agent.SIEBOG_MODULE + "/"
+			+ TreeBarrier.class.getSimpleName() + "!" + TreeBarrier.class.getName();
+	public static final String StaleBarrierLookup = "java:global/" + Agent.SIEBOG_MODULE + "/"
+			+ StaleBarrier.class.getSimpleName() + "!" + StaleBarrier.class.getName();
+	public static final String FailureDetectorLookup = "java:global/" + Agent.SIEBOG_MODULE + "/"
+			+ FailureDetector.class.getSimpleName() + "!" + FailureDetector.class.getName();
 	public static final String JMSFactoryLookup = "java:app/" + Agent.SIEBOG_MODULE + "/"
 			+ JMSFactory.class.getSimpleName();
 
@@ -66,6 +78,22 @@ public abstract class ObjectFactory {
 		return lookup(ExecutorServiceLookup, ExecutorService.class);
 	}
 
+	public static LiteAgentContainer getLiteAgentContainer() {
+		return lookup(LiteAgentContainerLookup, LiteAgentContainer.class);
+	}
+
+	public static TreeBarrier getTreeBarrier() {
+		return lookup(TreeBarrierLookup, TreeBarrier.class);
+	}
+
+	public static StaleBarrier getStaleBarrier() {
+		return lookup(StaleBarrierLookup, StaleBarrier.class);
+	}
+
+	public static FailureDetector getFailureDetector() {
+		return lookup(FailureDetectorLookup, FailureDetector.class);
+	}
+
 	public static SessionContext getSessionContext() {
 		return lookup("java:comp/EJBContext", SessionContext.class);
 	}
@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.io.Serializable;
+
+/**
+ * Point-in-time metrics of a {@link TaskPool}. Latency is the time a task has spent waiting in the
+ * queue before it was started.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class PoolStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final String name;
+	private final int active;
+	private final int queued;
+	private final long completed;
+	private final long rejected;
+	private final long avgLatencyMicros;
+	private final long maxLatencyMicros;
+
+	public PoolStats(String name, int active, int queued, long completed, long rejected,
+			long avgLatencyMicros, long maxLatencyMicros) {
+		this.name = name;
+		this.active = active;
+		this.queued = queued;
+		this.completed = completed;
+		this.rejected = rejected;
+		this.avgLatencyMicros = avgLatencyMicros;
+		this.maxLatencyMicros = maxLatencyMicros;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public int getQueued() {
+		return queued;
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getAvgLatencyMicros() {
+		return avgLatencyMicros;
+	}
+
+	public long getMaxLatencyMicros() {
+		return maxLatencyMicros;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[active=%d, queued=%d, completed=%d, rejected=%d, "
+				+ "latency avg=%dus max=%dus]", name, active, queued, completed, rejected,
+				avgLatencyMicros, maxLatencyMicros);
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+/**
+ * What a {@link TaskPool} does with a task when its queue is full.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public enum SaturationPolicy {
+	/** Throw a {@link java.util.concurrent.RejectedExecutionException}. */
+	ABORT,
+	/** Run the task on the submitting thread, which also slows down the producer. */
+	CALLER_RUNS,
+	/** Silently drop the task. */
+	DISCARD;
+
+	public static SaturationPolicy fromProperty(String name, SaturationPolicy def) {
+		String value = System.getProperty(name);
+		if (value == null)
+			return def;
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Unknown saturation policy for " + name + ": "
+					+ value);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class of the bounded, instrumented pools used by {@link ExecutorService}. Subclasses only
+ * need to implement the queueing; the saturation policy and the metrics are handled here.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public abstract class TaskPool {
+	private static final Logger LOG = LoggerFactory.getLogger(TaskPool.class);
+	private final String name;
+	private final SaturationPolicy policy;
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder totalLatency = new LongAdder();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	protected TaskPool(String name, SaturationPolicy policy) {
+		this.name = name;
+		this.policy = policy;
+	}
+
+	/**
+	 * Submits a task, optionally bound to an affinity key. Pools that don't support affinity
+	 * ignore the key.
+	 */
+	public Future<?> submit(Object key, Runnable task) {
+		Task t = new Task(task);
+		if (!offer(key, t)) {
+			rejected.increment();
+			switch (policy) {
+			case CALLER_RUNS:
+				t.run();
+				break;
+			case DISCARD:
+				t.cancel(false);
+				break;
+			default:
+				throw new RejectedExecutionException("Pool " + name + " is saturated.");
+			}
+		}
+		return t;
+	}
+
+	public Future<?> submit(Runnable task) {
+		return submit(null, task);
+	}
+
+	public PoolStats getStats() {
+		long done = completed.sum();
+		long avg = done == 0 ? 0 : totalLatency.sum() / done / 1000;
+		return new PoolStats(name, active.get(), queued(), done, rejected.sum(), avg,
+				maxLatency.get() / 1000);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public abstract void shutdown();
+
+	/**
+	 * @return False if the task could not be queued because the pool is saturated.
+	 */
+	protected abstract boolean offer(Object key, Runnable task);
+
+	protected abstract int queued();
+
+	private class Task extends FutureTask<Void> {
+		private final long created = System.nanoTime();
+
+		Task(Runnable task) {
+			super(task, null);
+		}
+
+		@Override
+		public void run() {
+			long latency = System.nanoTime() - created;
+			totalLatency.add(latency);
+			long max;
+			while (latency > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, latency))
+				;
+			active.incrementAndGet();
+			try {
+				super.run();
+			} finally {
+				active.decrementAndGet();
+				completed.increment();
+			}
+		}
+
+		@Override
+		protected void setException(Throwable t) {
+			super.setException(t);
+			LOG.warn("Task failed in pool " + name + ".", t);
+		}
+	}
+}
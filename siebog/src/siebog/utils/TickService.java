@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.AID;
+import siebog.agents.Agent;
+import siebog.agents.AgentManagerBean;
+import siebog.agents.HeartbeatMessage;
+
+/**
+ * Coalesced heartbeats. Registrations with the same period are grouped into a bucket. To avoid
+ * bursts, each bucket is divided into {@link #SLOTS} slots, each driven by its own task that is
+ * scheduled with the bucket's period and offset by its share of it, so that the ticks are spread
+ * evenly across the period. The due ticks of a slot are handed to the executor in batches of up
+ * to {@link #BATCH}, and delivered to the agents directly, without going through the message
+ * broker. The agent reference is looked up once and kept with the tick. If an agent has not yet
+ * processed its previous tick, the new one is skipped.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Singleton
+@LocalBean
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TickService {
+	private static final Logger LOG = LoggerFactory.getLogger(TickService.class);
+	public static final int SLOTS = Integer.getInteger("siebog.tick.slots", 10);
+	// ticks delivered by a single executor task
+	public static final int BATCH = Math.max(1, Integer.getInteger("siebog.tick.batch", 32));
+	public static final long MIN_PERIOD = 10;
+	@Resource(lookup = "java:jboss/ee/concurrency/executor/default")
+	private ManagedExecutorService executor;
+	@Resource(lookup = "java:jboss/ee/concurrency/scheduler/default")
+	private ManagedScheduledExecutorService scheduler;
+	@Inject
+	private AgentManagerBean agm;
+	private final AtomicLong counter = new AtomicLong();
+	private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+	private final Map<Long, Tick> ticks = new ConcurrentHashMap<>();
+
+	private static class Tick {
+		final long handle;
+		final HeartbeatMessage msg;
+		final Bucket bucket;
+		final int slot;
+		final AtomicBoolean inFlight = new AtomicBoolean();
+		volatile Agent agent;
+
+		Tick(long handle, HeartbeatMessage msg, Bucket bucket, int slot) {
+			this.handle = handle;
+			this.msg = msg;
+			this.bucket = bucket;
+			this.slot = slot;
+		}
+	}
+
+	private class Slot implements Runnable {
+		final Map<Long, Tick> members = new ConcurrentHashMap<>();
+		ScheduledFuture<?> future;
+
+		@Override
+		public void run() {
+			List<Tick> batch = new ArrayList<>(BATCH);
+			for (Tick t : members.values())
+				if (t.inFlight.compareAndSet(false, true)) {
+					batch.add(t);
+					if (batch.size() == BATCH) {
+						deliver(batch);
+						batch = new ArrayList<>(BATCH);
+					}
+				}
+			if (batch.size() > 0)
+				deliver(batch);
+		}
+	}
+
+	private class Bucket {
+		final long period;
+		final List<Slot> slots = new ArrayList<>(SLOTS);
+
+		Bucket(long period) {
+			this.period = period;
+			for (int i = 0; i < SLOTS; i++)
+				slots.add(new Slot());
+		}
+
+		void start() {
+			// the offsets are computed from the full period, so that the rounding does not add up
+			for (int i = 0; i < SLOTS; i++) {
+				long offset = period * (i + 1) / SLOTS;
+				Slot s = slots.get(i);
+				s.future = scheduler.scheduleAtFixedRate(s, offset, period, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		void stop() {
+			for (Slot s : slots)
+				if (s.future != null)
+					s.future.cancel(false);
+		}
+
+		int leastLoadedSlot() {
+			int min = 0;
+			for (int i = 1; i < SLOTS; i++)
+				if (slots.get(i).members.size() < slots.get(min).members.size())
+					min = i;
+			return min;
+		}
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		for (Bucket b : buckets.values())
+			b.stop();
+	}
+
+	/**
+	 * Registers a periodic heartbeat for the agent.
+	 * 
+	 * @return Handle which can be used to cancel the heartbeat.
+	 */
+	public long register(AID aid, long periodMillis, String content) {
+		long period = Math.max(MIN_PERIOD, periodMillis);
+		long handle = counter.incrementAndGet();
+		HeartbeatMessage msg = new HeartbeatMessage(aid, handle);
+		msg.content = content;
+		Bucket bucket = getBucket(period);
+		int slot = bucket.leastLoadedSlot();
+		Tick tick = new Tick(handle, msg, bucket, slot);
+		ticks.put(handle, tick);
+		bucket.slots.get(slot).members.put(handle, tick);
+		return handle;
+	}
+
+	public boolean isValid(long handle) {
+		return ticks.containsKey(handle);
+	}
+
+	public void cancel(long handle) {
+		Tick tick = ticks.remove(handle);
+		if (tick != null)
+			tick.bucket.slots.get(tick.slot).members.remove(handle);
+		// empty buckets are kept, since they are likely to be re-used
+	}
+
+	public int size() {
+		return ticks.size();
+	}
+
+	private Bucket getBucket(long period) {
+		Bucket bucket = buckets.get(period);
+		if (bucket == null) {
+			synchronized (buckets) {
+				bucket = buckets.get(period);
+				if (bucket == null) {
+					bucket = new Bucket(period);
+					bucket.start();
+					buckets.put(period, bucket);
+				}
+			}
+		}
+		return bucket;
+	}
+
+	private void deliver(final List<Tick> batch) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (Tick t : batch)
+						deliver(t);
+				}
+			});
+		} catch (RuntimeException ex) {
+			// rejected, try again on the next pass
+			for (Tick t : batch)
+				t.inFlight.set(false);
+			LOG.debug("{} heartbeats rejected by the executor.", batch.size(), ex);
+		}
+	}
+
+	private void deliver(Tick t) {
+		try {
+			if (ticks.containsKey(t.handle)) {
+				Agent agent = t.agent;
+				if (agent == null)
+					t.agent = agent = agm.getAgentReference(t.msg.receivers.get(0));
+				if (agent != null)
+					agent.handleMessage(t.msg);
+				else
+					cancel(t.handle);
+			}
+		} catch (Exception ex) {
+			t.agent = null; // looked up again on the next tick
+			LOG.warn("Cannot deliver a heartbeat to {}.", t.msg.receivers.get(0), ex);
+		} finally {
+			t.inFlight.set(false);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.blackboard;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.interaction.blackboard.ControlComponent;
+import siebog.interaction.blackboard.Estimate;
+import siebog.interaction.blackboard.Event;
+import siebog.interaction.blackboard.example.ControlComponentExample;
+
+/**
+ * Moves each stream of {@link BlackboardBenchmark} through START-n, GENERATE-n and SQUARE-n, and
+ * back to GENERATE-n until its rounds are over. The remaining rounds and the start time travel in
+ * the event's content object.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class BenchControlComponent extends ControlComponent {
+	private static final Logger LOG = LoggerFactory.getLogger(BenchControlComponent.class);
+	private final ControlComponentExample example = new ControlComponentExample();
+
+	@Override
+	public Estimate chooseBestProposal(List<Estimate> proposals) {
+		return example.chooseBestProposal(proposals);
+	}
+
+	@Override
+	protected Event handleEvent(Event e) {
+		int n = e.getName().lastIndexOf('-');
+		String stage = e.getName().substring(0, n);
+		String stream = e.getName().substring(n + 1);
+		long[] state = (long[]) e.getContentObj();
+		Event event = new Event();
+		event.setContent(e.getContent());
+		event.setContentObj(state);
+		switch (stage) {
+		case "START":
+			event.setName("GENERATE-" + stream);
+			break;
+		case "GENERATE":
+			event.setName("SQUARE-" + stream);
+			break;
+		case "SQUARE":
+			if (state[0] > 1) {
+				event.setContentObj(new long[] { state[0] - 1, state[1] });
+				event.setName("GENERATE-" + stream);
+			} else {
+				LOG.info("Stream {} done in {} ms.", stream, System.currentTimeMillis() - state[1]);
+				event.setName("DONE-" + stream);
+			}
+			break;
+		default:
+			event.setName("DONE-" + stream);
+			break;
+		}
+		return event;
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.blackboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.ejb.Remote;
+import javax.ejb.Stateful;
+import siebog.agents.Agent;
+import siebog.interaction.blackboard.Event;
+import siebog.interaction.blackboard.example.SquareKS;
+
+/**
+ * {@link SquareKS} which subscribes to the SQUARE-n events of all streams of
+ * {@link BlackboardBenchmark}.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Stateful
+@Remote(Agent.class)
+public class BenchSquareKS extends SquareKS {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public void defineTriggers() {
+		List<String> list = new ArrayList<>(BlackboardBenchmark.MAX_STREAMS);
+		for (int i = 0; i < BlackboardBenchmark.MAX_STREAMS; i++)
+			list.add("SQUARE-" + i);
+		defineTriggers(list, BenchBlackboard.NAME);
+	}
+
+	@Override
+	public Event handleEvent(Event e) {
+		Event result = super.handleEvent(e);
+		result.setContentObj(e.getContentObj());
+		return result;
+	}
+}
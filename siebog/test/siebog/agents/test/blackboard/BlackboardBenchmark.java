@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.blackboard;
+
+import siebog.SiebogClient;
+import siebog.agents.AID;
+import siebog.agents.AgentClass;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.agents.test.TestProps;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MessageManager;
+import siebog.interaction.Performative;
+import siebog.interaction.blackboard.BlackboardShards;
+import siebog.interaction.blackboard.Event;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Throughput of the partitioned blackboard. Runs a number of independent streams of the
+ * GENERATE/SQUARE example, each for the given number of rounds, on a blackboard with the given
+ * number of shards (1 for the single-agent blackboard). The duration of each stream is written to
+ * the server log by the shard which completes it, and the slowest one is the total time.
+ * <p>
+ * Usage: BlackboardBenchmark [shards] [streams] [rounds] [knowledge sources per stage]
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class BlackboardBenchmark {
+	// the knowledge sources subscribe to this many streams
+	public static final int MAX_STREAMS = 64;
+
+	public static void main(String[] args) throws InterruptedException {
+		int shards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int streams = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int kss = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		if (streams > MAX_STREAMS)
+			throw new IllegalArgumentException("At most " + MAX_STREAMS + " streams supported.");
+
+		TestProps props = TestProps.get();
+		SiebogClient.connect(props.getMaster(), props.getSlaves());
+		AgentManager agm = ObjectFactory.getAgentManager();
+		MessageManager msm = ObjectFactory.getMessageManager();
+
+		AgentInitArgs boardArgs = new AgentInitArgs(BlackboardShards.SHARDS + "=" + shards,
+				"noUIUpdate=true");
+		AID board = agm.startServerAgent(AgentClass.forSiebogEjb(BenchBlackboard.class),
+				BenchBlackboard.NAME, boardArgs);
+
+		// the knowledge sources subscribe on request
+		ACLMessage subscribe = new ACLMessage(Performative.REQUEST);
+		AgentInitArgs ksArgs = new AgentInitArgs("noUIUpdate=true");
+		for (int i = 0; i < kss; i++) {
+			subscribe.receivers.add(agm.startServerAgent(
+					AgentClass.forSiebogEjb(BenchGenerateKS.class), "BenchGenerate" + i, ksArgs));
+			subscribe.receivers.add(agm.startServerAgent(
+					AgentClass.forSiebogEjb(BenchSquareKS.class), "BenchSquare" + i, ksArgs));
+		}
+		msm.post(subscribe);
+		Thread.sleep(2000);
+
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < streams; i++) {
+			Event e = new Event();
+			e.setName("START-" + i);
+			e.setContentObj(new long[] { rounds, now });
+			ACLMessage msg = new ACLMessage(Performative.INFORM);
+			msg.receivers.add(board);
+			msg.content = "Bench";
+			msg.contentObj = e;
+			msm.post(msg);
+		}
+		System.out.printf("Started %d streams of %d rounds on %d shards, see the server log.%n",
+				streams, rounds, shards);
+	}
+}
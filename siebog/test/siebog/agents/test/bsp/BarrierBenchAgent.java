@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.bsp;
+
+import java.util.Random;
+import javax.ejb.Remote;
+import javax.ejb.Stateful;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import siebog.agents.Agent;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.XjafAgent;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.bsp.BarrierManager;
+import siebog.interaction.bsp.Superstep;
+
+/**
+ * Participant of {@link BarrierBenchmark}. Completes each superstep after a random amount of work,
+ * or right away if there is none, so that the measured time is the cost of the barrier itself. The first participant reports the average
+ * superstep duration once the given number of supersteps is over.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+@Stateful
+@Remote(Agent.class)
+public class BarrierBenchAgent extends XjafAgent {
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(BarrierBenchAgent.class);
+	@Inject
+	private BarrierManager barrierManager;
+	private String barrier;
+	private boolean flat;
+	private int staleness;
+	private int work;
+	private Random random;
+	private int supersteps;
+	private boolean reporter;
+	private long startTime;
+
+	@Override
+	protected void onInit(AgentInitArgs args) {
+		barrier = args.get("barrier", "bench");
+		flat = Boolean.parseBoolean(args.get("flat", "false"));
+		supersteps = args.getInt("supersteps", 100);
+		reporter = Boolean.parseBoolean(args.get("reporter", "false"));
+		work = args.getInt("work", 0);
+		staleness = args.getInt("staleness", 0);
+		random = new Random();
+		if (staleness > 0)
+			barrierManager.setStaleness(barrier, staleness);
+		barrierManager.register(barrier, myAid, flat);
+	}
+
+	@Override
+	protected void onMessage(ACLMessage msg) {
+		if (!(msg.contentObj instanceof Superstep))
+			return;
+		Superstep superstep = (Superstep) msg.contentObj;
+		if (superstep.getCounter() >= supersteps) {
+			if (reporter) {
+				long elapsed = System.nanoTime() - startTime;
+				String mode = flat ? "Flat" : staleness > 0 ? "SSP(" + staleness + ")" : "Tree";
+				LOG.info("{} barrier, {} supersteps: {} us per superstep.", mode,
+						supersteps - 1, elapsed / 1000 / (supersteps - 1));
+			}
+			barrierManager.deregister(barrier, myAid, flat);
+			agm().stopAgent(myAid);
+			return;
+		}
+		if (reporter && superstep.getCounter() == 1)
+			startTime = System.nanoTime();
+		if (work > 0) {
+			try {
+				Thread.sleep(random.nextInt(work + 1));
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		barrierManager.agentCompletedSuperstep(superstep, myAid, flat);
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.bsp;
+
+import siebog.SiebogClient;
+import siebog.agents.AgentClass;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.agents.test.TestProps;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Compares the flat, single-agent barrier with the combining-tree and the stale-synchronous
+ * barriers. Starts the given number of participants and runs them through a number of
+ * supersteps, in which each participant works for a random time up to the given maximum (0 by
+ * default, i.e. empty supersteps). The average superstep duration is written to the server log by
+ * the first participant.
+ * <p>
+ * Usage: BarrierBenchmark flat|tree|ssp [participants] [supersteps] [max work ms] [staleness]
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class BarrierBenchmark {
+	public static void main(String[] args) {
+		String mode = args.length > 0 ? args[0] : "tree";
+		boolean flat = mode.equals("flat");
+		int participants = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int supersteps = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int work = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		int staleness = mode.equals("ssp") ? (args.length > 4 ? Integer.parseInt(args[4]) : 2) : 0;
+
+		TestProps props = TestProps.get();
+		SiebogClient.connect(props.getMaster(), props.getSlaves());
+		AgentManager agm = ObjectFactory.getAgentManager();
+		AgentClass agClass = AgentClass.forSiebogEjb(BarrierBenchAgent.class);
+		String barrier = mode + "-bench-" + System.currentTimeMillis();
+		for (int i = 0; i < participants; i++) {
+			AgentInitArgs initArgs = new AgentInitArgs("barrier=" + barrier, "flat=" + flat,
+					"supersteps=" + supersteps, "reporter=" + (i == 0), "work=" + work,
+					"staleness=" + staleness, "noUIUpdate=true");
+			agm.startServerAgent(agClass, "BarrierBench" + i, initArgs);
+		}
+		System.out.printf("Started %d participants of the %s barrier %s, see the server log.%n",
+				participants, mode, barrier);
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.dispatch;
+
+import siebog.agents.MessageDispatcher;
+import siebog.agents.OnMessage;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+
+/**
+ * Compares the cost of {@link OnMessage} dispatch with a hand-written chain of performative and
+ * content checks, as found in the ACO Map agent. Runs standalone, no server is needed.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class DispatchBenchmark {
+	private static final int WARMUP = 2_000_000;
+	private static final int ITERATIONS = 10_000_000;
+	private static final String[] COMMANDS = { "MapSize?", "PheromoneLevels? 1 2 3",
+			"EdgeWeight? 1 2", "UpdateBestTour 1.0 1 2", "UpdatePheromone 1 2 0.9 0.1",
+			"UpdateLocalPheromone 1 2 0.1" };
+	private static final Performative[] PERFORMATIVES = { Performative.REQUEST,
+			Performative.REQUEST, Performative.REQUEST, Performative.INFORM, Performative.INFORM,
+			Performative.INFORM };
+
+	public static class Annotated {
+		long counter;
+
+		@OnMessage(performative = Performative.REQUEST, command = "MapSize?")
+		void mapSize(ACLMessage msg) {
+			counter += 1;
+		}
+
+		@OnMessage(performative = Performative.REQUEST, command = "PheromoneLevels?")
+		void pheromoneLevels(ACLMessage msg) {
+			counter += 2;
+		}
+
+		@OnMessage(performative = Performative.REQUEST, command = "EdgeWeight?")
+		void edgeWeight(ACLMessage msg) {
+			counter += 3;
+		}
+
+		@OnMessage(performative = Performative.INFORM, command = "UpdateBestTour")
+		void updateBestTour(String content) {
+			counter += 4;
+		}
+
+		@OnMessage(performative = Performative.INFORM, command = "UpdatePheromone")
+		void updatePheromone(String content) {
+			counter += 5;
+		}
+
+		@OnMessage(performative = Performative.INFORM, command = "UpdateLocalPheromone")
+		void updateLocalPheromone(String content) {
+			counter += 6;
+		}
+	}
+
+	public static class HandWritten {
+		long counter;
+
+		void onMessage(ACLMessage msg) {
+			final String content = msg.content;
+			if (msg.performative == Performative.REQUEST) {
+				if (content.equals("MapSize?"))
+					counter += 1;
+				else if (content.startsWith("PheromoneLevels?"))
+					counter += 2;
+				else if (content.startsWith("EdgeWeight?"))
+					counter += 3;
+			} else if (msg.performative == Performative.INFORM) {
+				if (content.startsWith("UpdateBestTour"))
+					counter += 4;
+				else if (content.startsWith("UpdatePheromone"))
+					counter += 5;
+				else if (content.startsWith("UpdateLocalPheromone"))
+					counter += 6;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		ACLMessage[] msgs = new ACLMessage[COMMANDS.length];
+		for (int i = 0; i < msgs.length; i++) {
+			msgs[i] = new ACLMessage(PERFORMATIVES[i]);
+			msgs[i].content = COMMANDS[i];
+		}
+
+		Annotated annotated = new Annotated();
+		MessageDispatcher dispatcher = MessageDispatcher.of(Annotated.class);
+		HandWritten handWritten = new HandWritten();
+
+		runDispatcher(dispatcher, annotated, msgs, WARMUP);
+		runHandWritten(handWritten, msgs, WARMUP);
+
+		long t0 = System.nanoTime();
+		runDispatcher(dispatcher, annotated, msgs, ITERATIONS);
+		long t1 = System.nanoTime();
+		runHandWritten(handWritten, msgs, ITERATIONS);
+		long t2 = System.nanoTime();
+
+		System.out.printf("@OnMessage dispatch: %.1f ns/msg (checksum %d)%n", (t1 - t0)
+				/ (double) ITERATIONS, annotated.counter);
+		System.out.printf("hand-written chain:  %.1f ns/msg (checksum %d)%n", (t2 - t1)
+				/ (double) ITERATIONS, handWritten.counter);
+	}
+
+	private static void runDispatcher(MessageDispatcher dispatcher, Annotated agent,
+			ACLMessage[] msgs, int n) throws Exception {
+		for (int i = 0; i < n; i++)
+			dispatcher.dispatch(agent, msgs[i % msgs.length]);
+	}
+
+	private static void runHandWritten(HandWritten agent, ACLMessage[] msgs, int n) {
+		for (int i = 0; i < n; i++)
+			agent.onMessage(msgs[i % msgs.length]);
+	}
+}
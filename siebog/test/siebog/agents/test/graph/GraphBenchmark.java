@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.agents.test.graph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import siebog.SiebogClient;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentManager;
+import siebog.agents.test.TestProps;
+import siebog.agents.xjaf.graph.PageRankVertex;
+import siebog.agents.xjaf.graph.ShortestPathVertex;
+import siebog.interaction.bsp.graph.EdgeListLoader;
+import siebog.interaction.bsp.graph.GraphJob;
+import siebog.utils.ObjectFactory;
+
+/**
+ * Throughput of the vertex-centric graph jobs. Generates a random weighted graph with the given
+ * number of vertices and edges, unless the edge list already exists, measures how fast it is read
+ * by the {@link EdgeListLoader}, and then runs PageRank or SSSP on it. The duration of the job and
+ * the number of messages and edges processed per second are written to the server log by the
+ * first partition. The edge list has to be reachable at the same path from all nodes.
+ * <p>
+ * Usage: GraphBenchmark pagerank|sssp edgeListFile [partitions] [edges] [vertices]
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class GraphBenchmark {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: GraphBenchmark pagerank|sssp edgeListFile [partitions] "
+					+ "[edges] [vertices]");
+			return;
+		}
+		boolean pageRank = args[0].equals("pagerank");
+		String path = new File(args[1]).getAbsolutePath();
+		int partitions = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		long edges = args.length > 3 ? Long.parseLong(args[3]) : 20_000_000L;
+		long vertices = args.length > 4 ? Long.parseLong(args[4]) : edges / 16;
+
+		if (!new File(path).exists())
+			generate(path, vertices, edges);
+		long start = System.currentTimeMillis();
+		long read = EdgeListLoader.load(path, new EdgeListLoader.EdgeHandler() {
+			@Override
+			public void edge(long source, long target, float weight) {
+			}
+		});
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		System.out.printf("Read %d edges in %d ms, %d edges/s.%n", read, time, read * 1000 / time);
+
+		TestProps props = TestProps.get();
+		SiebogClient.connect(props.getMaster(), props.getSlaves());
+		AgentManager agm = ObjectFactory.getAgentManager();
+		String job = args[0] + "-" + System.currentTimeMillis();
+		AgentInitArgs params = new AgentInitArgs();
+		if (pageRank)
+			GraphJob.start(agm, job, PageRankVertex.class, path, partitions, params);
+		else
+			GraphJob.start(agm, job, ShortestPathVertex.class, path, partitions, params);
+		System.out.printf("Started graph job %s with %d partitions, see the server log.%n", job,
+				partitions);
+	}
+
+	/**
+	 * Writes a random graph with a skewed in-degree distribution and weights from 1 to 10.
+	 */
+	private static void generate(String path, long vertices, long edges) throws IOException {
+		System.out.printf("Generating %d edges over %d vertices into %s...%n", edges, vertices,
+				path);
+		Random rnd = new Random(42);
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(path), 1 << 20)) {
+			out.write("# source target weight\n");
+			for (long i = 0; i < edges; i++) {
+				long source = (long) (rnd.nextDouble() * vertices);
+				double r = rnd.nextDouble();
+				long target = (long) (r * r * vertices);
+				out.write(Long.toString(source));
+				out.write(' ');
+				out.write(Long.toString(target));
+				out.write(' ');
+				out.write(Integer.toString(1 + rnd.nextInt(10)));
+				out.write('\n');
+			}
+		}
+	}
+}
@@ -60,7 +60,7 @@ public class WordCounter extends XjafAgent {
 		}
 		ACLMessage msg = new ACLMessage(Performative.INFORM);
 		msg.receivers.add(myAid);
-		msm().post(msg);
+		yieldStep(msg);
 	}
 
 	private ArrayList<String> readLines(String fileName) {
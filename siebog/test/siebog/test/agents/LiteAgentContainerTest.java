@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.test.agents;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import siebog.agents.AID;
+import siebog.agents.AgentInitArgs;
+import siebog.agents.AgentMetrics;
+import siebog.agents.lite.LiteAgent;
+import siebog.agents.lite.LiteAgentContainer;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Performative;
+import siebog.utils.ExecutorService;
+
+/**
+ * Runs the lightweight container without a server, on an executor whose tasks are started by the
+ * test itself.
+ * 
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class LiteAgentContainerTest {
+	private static final String HOST = "test-node";
+	private static final List<String> events = new ArrayList<>();
+	private ManualExecutor executor;
+	private LiteAgentContainer container;
+	private AID aid;
+
+	public static class RecordingAgent extends LiteAgent {
+		@Override
+		protected void onInit(AgentInitArgs args) {
+			events.add("init");
+		}
+
+		@Override
+		protected void onMessage(ACLMessage msg) {
+			events.add(msg.content);
+		}
+
+		@Override
+		protected void onTerminate() {
+			events.add("terminate");
+		}
+	}
+
+	private static class ManualExecutor extends ExecutorService {
+		final Queue<Runnable> tasks = new LinkedList<>();
+
+		@Override
+		public Future<?> execute(AID aid, Runnable task) {
+			tasks.add(task);
+			return null;
+		}
+
+		void runNext() {
+			tasks.remove().run();
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty())
+				runNext();
+		}
+	}
+
+	@BeforeClass
+	public static void setupSampling() {
+		// every agent gets a metrics recorder
+		System.setProperty("siebog.lite.metrics.sample", "1");
+	}
+
+	@Before
+	public void setup() throws Exception {
+		events.clear();
+		executor = new ManualExecutor();
+		container = new LiteAgentContainer();
+		set("executor", executor);
+		set("host", HOST);
+		aid = new AID("lite" + System.nanoTime(), HOST, LiteAgent.agentClass(RecordingAgent.class));
+		container.start(aid, null, false);
+		executor.runAll();
+		events.clear();
+	}
+
+	@Test
+	public void testScheduledOnce() {
+		for (int i = 0; i < 3; i++)
+			container.deliver(aid, message("m" + i));
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		Assert.assertEquals(3, events.size());
+		Assert.assertEquals("m0", events.get(0));
+		Assert.assertEquals("m2", events.get(2));
+	}
+
+	@Test
+	public void testThroughputYield() {
+		final int n = LiteAgentContainer.THROUGHPUT + 5;
+		for (int i = 0; i < n; i++)
+			container.deliver(aid, message("m" + i));
+		executor.runNext();
+		Assert.assertEquals(LiteAgentContainer.THROUGHPUT, events.size());
+		// the rest is processed by a new task, not by the one that yielded
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.runNext();
+		Assert.assertEquals(n, events.size());
+		Assert.assertEquals("m" + (n - 1), events.get(n - 1));
+		Assert.assertTrue(executor.tasks.isEmpty());
+	}
+
+	@Test
+	public void testTermination() {
+		container.deliver(aid, message("before"));
+		container.stop(aid);
+		container.deliver(aid, message("after"));
+		Assert.assertEquals(0, container.size());
+		executor.runAll();
+		Assert.assertEquals(2, events.size());
+		Assert.assertEquals("before", events.get(0));
+		Assert.assertEquals("terminate", events.get(1));
+	}
+
+	@Test
+	public void testRecorderRemovedOnTermination() {
+		container.deliver(aid, message("m"));
+		container.stop(aid);
+		// still in use until the queued message is processed
+		Assert.assertNotNull(AgentMetrics.get().find(aid));
+		executor.runAll();
+		Assert.assertNull(AgentMetrics.get().find(aid));
+	}
+
+	@Test
+	public void testRecorderKeptOnReplace() {
+		container.start(aid, null, true);
+		executor.runAll();
+		Assert.assertEquals(1, container.size());
+		Assert.assertNotNull(AgentMetrics.get().find(aid));
+		container.deliver(aid, message("m"));
+		executor.runAll();
+		Assert.assertEquals(1, AgentMetrics.get().find(aid).snapshot().getMessagesIn());
+	}
+
+	private ACLMessage message(String content) {
+		ACLMessage msg = new ACLMessage(Performative.INFORM);
+		msg.receivers.add(aid);
+		msg.content = content;
+		return msg;
+	}
+
+	private void set(String name, Object value) throws Exception {
+		Field f = LiteAgentContainer.class.getDeclaredField(name);
+		f.setAccessible(true);
+		f.set(container, value);
+	}
+}
@@ -27,9 +27,9 @@ import siebog.agents.AID;
 import siebog.agents.AgentBuilder;
 import siebog.agents.test.loadbalancing.LoadBalanced;
 import siebog.interaction.ACLMsgBuilder;
+import siebog.interaction.MsgPatternBuilder;
 import siebog.interaction.Performative;
 import siebog.test.framework.MessageBasedTest;
-import siebog.test.framework.receivers.MsgPatternBuilder;
 
 /**
  * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
@@ -27,9 +27,9 @@ import org.junit.Test;
 import siebog.agents.AID;
 import siebog.agents.AgentBuilder;
 import siebog.interaction.ACLMsgBuilder;
+import siebog.interaction.MsgPatternBuilder;
 import siebog.interaction.Performative;
 import siebog.test.framework.MessageBasedTest;
-import siebog.test.framework.receivers.MsgPatternBuilder;
 import siebog.utils.ObjectFactory;
 
 /**
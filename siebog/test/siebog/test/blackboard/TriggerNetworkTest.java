@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.test.blackboard;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import siebog.agents.AID;
+import siebog.agents.AgentClass;
+import siebog.interaction.blackboard.Event;
+import siebog.interaction.blackboard.Trigger;
+import siebog.interaction.blackboard.Trigger.Op;
+import siebog.interaction.blackboard.TriggerNetwork;
+
+/**
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class TriggerNetworkTest {
+	private static final AgentClass KS_CLASS = new AgentClass("siebog", "KS");
+	private static final AID A = new AID("a", KS_CLASS);
+	private static final AID B = new AID("b", KS_CLASS);
+	private static final AID C = new AID("c", KS_CLASS);
+	private TriggerNetwork network;
+
+	@Before
+	public void setup() {
+		network = new TriggerNetwork();
+	}
+
+	@Test
+	public void testEquals() {
+		network.add(Trigger.on("SQUARE"), A);
+		network.add(Trigger.on("CUBE"), B);
+		network.add(Trigger.any().where("count", Op.EQ, 3), C);
+		assertMatch(network.match(event("SQUARE")), A);
+		assertMatch(network.match(event("CUBE")), B);
+		assertMatch(network.match(event("ROOT")));
+		// numbers are compared by value
+		assertMatch(network.match(event("ROOT", "count", 3L)), C);
+		assertMatch(network.match(event("ROOT", "count", 3.0)), C);
+		assertMatch(network.match(event("ROOT", "count", 4)));
+	}
+
+	@Test
+	public void testPrefix() {
+		network.add(Trigger.prefix("SQ"), A);
+		network.add(Trigger.prefix("SQUARE-"), B);
+		network.add(Trigger.on("SQUARE-1"), C);
+		assertMatch(network.match(event("SQUARE-1")), A, B, C);
+		assertMatch(network.match(event("SQUARE")), A);
+		assertMatch(network.match(event("S")));
+		assertMatch(network.match(event("CUBE")));
+	}
+
+	@Test
+	public void testLessAndGreater() {
+		network.add(Trigger.on("SQUARE").where("count", Op.GT, 10), A);
+		network.add(Trigger.on("SQUARE").where("count", Op.LT, 10), B);
+		network.add(Trigger.any().where("label", Op.LT, "m"), C);
+		assertMatch(network.match(event("SQUARE", "count", 11)), A);
+		assertMatch(network.match(event("SQUARE", "count", 9.5)), B);
+		assertMatch(network.match(event("SQUARE", "count", 10)));
+		assertMatch(network.match(event("CUBE", "count", 11)));
+		assertMatch(network.match(event("CUBE", "label", "abc")), C);
+		assertMatch(network.match(event("CUBE", "label", "xyz")));
+		// values of incomparable types don't match
+		assertMatch(network.match(event("CUBE", "label", 1)));
+	}
+
+	@Test
+	public void testMatches() {
+		network.add(Trigger.any().where(Event.NAME, Op.MATCHES, "SQUARE-\\d+"), A);
+		network.add(Trigger.prefix("SQUARE").where(Event.CONTENT, Op.MATCHES, "[a-z]+"), B);
+		Event e = event("SQUARE-12");
+		e.setContent("abc");
+		assertMatch(network.match(e), A, B);
+		e.setContent("ABC");
+		assertMatch(network.match(e), A);
+		assertMatch(network.match(event("SQUARE-x")));
+	}
+
+	@Test
+	public void testDeduplication() {
+		network.add(Trigger.on("SQUARE"), A);
+		network.add(Trigger.on("SQUARE"), A);
+		Assert.assertEquals(1, network.size());
+		// different triggers of the same knowledge source, all matching the event
+		network.add(Trigger.prefix("SQ"), A);
+		network.add(Trigger.on("SQUARE").where("count", Op.GT, 1), A);
+		network.add(Trigger.on("SQUARE"), B);
+		Assert.assertEquals(4, network.size());
+		List<AID> matched = network.match(event("SQUARE", "count", 2));
+		Assert.assertEquals(2, matched.size());
+		assertMatch(matched, A, B);
+	}
+
+	private static Event event(String name) {
+		Event e = new Event();
+		e.setName(name);
+		return e;
+	}
+
+	private static Event event(String name, String attribute, Serializable value) {
+		Event e = event(name);
+		e.setAttribute(attribute, value);
+		return e;
+	}
+
+	private static void assertMatch(List<AID> matched, AID... expected) {
+		Assert.assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(matched));
+		Assert.assertEquals(expected.length, matched.size());
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.test.bsp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import siebog.interaction.bsp.graph.EdgeListLoader;
+import siebog.interaction.bsp.graph.EdgeListLoader.EdgeHandler;
+
+/**
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class EdgeListLoaderTest {
+	private File file;
+
+	@BeforeClass
+	public static void setupWindow() {
+		// small windows, so that the lines cross the window boundaries
+		System.setProperty("siebog.graph.window", "16");
+	}
+
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("edges", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testLinesCrossingWindows() throws IOException {
+		Assert.assertEquals(16, EdgeListLoader.WINDOW);
+		StringBuilder text = new StringBuilder("# comment\n");
+		for (int i = 0; i < 50; i++)
+			text.append(i).append(' ').append(i * 7).append(i % 3 == 0 ? " 0.5\n" : "\n");
+		write(text.toString());
+		List<long[]> edges = new ArrayList<>();
+		List<Float> weights = new ArrayList<>();
+		Assert.assertEquals(50, load(edges, weights));
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(i, edges.get(i)[0]);
+			Assert.assertEquals(i * 7, edges.get(i)[1]);
+			Assert.assertEquals(i % 3 == 0 ? 0.5f : 1f, weights.get(i), 0f);
+		}
+	}
+
+	@Test
+	public void testNoTrailingNewline() throws IOException {
+		write("% comment\r\n1,2\r\n3\t4 2.5e1\r\n5 6");
+		List<long[]> edges = new ArrayList<>();
+		List<Float> weights = new ArrayList<>();
+		Assert.assertEquals(3, load(edges, weights));
+		Assert.assertArrayEquals(new long[] { 3, 4 }, edges.get(1));
+		Assert.assertEquals(25f, weights.get(1), 0f);
+		Assert.assertArrayEquals(new long[] { 5, 6 }, edges.get(2));
+		Assert.assertEquals(1f, weights.get(2), 0f);
+	}
+
+	@Test(expected = IOException.class)
+	public void testLineLongerThanWindow() throws IOException {
+		write("12345678 12345678 1.0\n1 2\n");
+		load(new ArrayList<long[]>(), new ArrayList<Float>());
+	}
+
+	private void write(String text) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(text.getBytes(StandardCharsets.US_ASCII));
+		}
+	}
+
+	private long load(final List<long[]> edges, final List<Float> weights) throws IOException {
+		return EdgeListLoader.load(file.getPath(), new EdgeHandler() {
+			@Override
+			public void edge(long source, long target, float weight) {
+				edges.add(new long[] { source, target });
+				weights.add(weight);
+			}
+		});
+	}
+}
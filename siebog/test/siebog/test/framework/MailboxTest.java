@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.test.framework;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.Mailbox;
+import siebog.interaction.MsgPattern;
+import siebog.interaction.MsgPatternBuilder;
+import siebog.interaction.Performative;
+
+/**
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class MailboxTest {
+	private Mailbox mailbox;
+
+	@Before
+	public void setup() {
+		mailbox = new Mailbox();
+	}
+
+	@Test
+	public void testPollInArrivalOrder() {
+		ACLMessage a = msg(Performative.INFORM, "a", null, null);
+		ACLMessage b = msg(Performative.REQUEST, "b", null, null);
+		mailbox.put(a);
+		mailbox.put(b);
+		Assert.assertEquals(2, mailbox.size());
+		Assert.assertSame(a, mailbox.poll());
+		Assert.assertSame(b, mailbox.poll());
+		Assert.assertNull(mailbox.poll());
+	}
+
+	@Test
+	public void testTakeByIndexedField() {
+		ACLMessage first = msg(Performative.INFORM, "first", "r1", "c1");
+		ACLMessage reply = msg(Performative.INFORM, "reply", "r2", "c1");
+		ACLMessage later = msg(Performative.INFORM, "later", "r2", "c2");
+		mailbox.put(first);
+		mailbox.put(reply);
+		mailbox.put(later);
+		// the oldest of the messages with the indexed value
+		Assert.assertSame(reply, mailbox.take(MsgPatternBuilder.inReplyTo("r2")));
+		Assert.assertSame(later, mailbox.take(MsgPatternBuilder.inReplyTo("r2")));
+		Assert.assertNull(mailbox.take(MsgPatternBuilder.inReplyTo("r2")));
+		Assert.assertSame(first, mailbox.take(MsgPatternBuilder.conversationId("c1")));
+		Assert.assertEquals(0, mailbox.size());
+	}
+
+	@Test
+	public void testTakeByIndexedAndOtherFields() {
+		ACLMessage a = msg(Performative.INFORM, "a", null, "c1");
+		ACLMessage b = msg(Performative.INFORM, "b", null, "c1");
+		mailbox.put(a);
+		mailbox.put(b);
+		MsgPattern p = MsgPatternBuilder.fromFields().field("conversationId").equalTo("c1")
+				.field("content").equalTo("b").build();
+		Assert.assertSame(b, mailbox.take(p));
+		Assert.assertSame(a, mailbox.poll());
+	}
+
+	@Test
+	public void testTakeByScan() {
+		ACLMessage a = msg(Performative.INFORM, "ping 1", null, null);
+		ACLMessage b = msg(Performative.INFORM, "pong 2", null, null);
+		mailbox.put(a);
+		mailbox.put(b);
+		MsgPattern p = MsgPatternBuilder.fromFields().field("content").matches("pong \\d").build();
+		Assert.assertSame(b, mailbox.take(p));
+		Assert.assertNull(mailbox.take(p));
+		Assert.assertEquals(1, mailbox.size());
+	}
+
+	@Test
+	public void testPollKeepsIndexConsistent() {
+		ACLMessage a = msg(Performative.INFORM, "a", "r1", null);
+		mailbox.put(a);
+		Assert.assertSame(a, mailbox.poll());
+		Assert.assertNull(mailbox.take(MsgPatternBuilder.inReplyTo("r1")));
+		ACLMessage b = msg(Performative.INFORM, "b", "r1", null);
+		mailbox.put(b);
+		Assert.assertSame(b, mailbox.take(MsgPatternBuilder.inReplyTo("r1")));
+	}
+
+	@Test
+	public void testEvictionAtCapacity() {
+		for (int i = 0; i <= Mailbox.CAPACITY; i++)
+			mailbox.put(msg(Performative.INFORM, String.valueOf(i), "r" + i, null));
+		Assert.assertEquals(Mailbox.CAPACITY, mailbox.size());
+		// the oldest message has been discarded, along with its index entries
+		Assert.assertNull(mailbox.take(MsgPatternBuilder.inReplyTo("r0")));
+		Assert.assertEquals("1", mailbox.poll().content);
+		Assert.assertNotNull(mailbox.take(MsgPatternBuilder.inReplyTo("r" + Mailbox.CAPACITY)));
+	}
+
+	@Test
+	public void testClear() {
+		mailbox.put(msg(Performative.INFORM, "a", "r1", "c1"));
+		mailbox.clear();
+		Assert.assertEquals(0, mailbox.size());
+		Assert.assertNull(mailbox.take(MsgPatternBuilder.inReplyTo("r1")));
+		Assert.assertNull(mailbox.poll());
+	}
+
+	private static ACLMessage msg(Performative performative, String content, String inReplyTo,
+			String conversationId) {
+		ACLMessage msg = new ACLMessage(performative);
+		msg.content = content;
+		msg.inReplyTo = inReplyTo;
+		msg.conversationId = conversationId;
+		return msg;
+	}
+}
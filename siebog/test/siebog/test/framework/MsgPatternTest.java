@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one 
+ * or more contributor license agreements. See the NOTICE file 
+ * distributed with this work for additional information regarding 
+ * copyright ownership. The ASF licenses this file to you under 
+ * the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may 
+ * obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an 
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+ * either express or implied. 
+ * 
+ * See the License for the specific language governing permissions 
+ * and limitations under the License.
+ */
+
+package siebog.test.framework;
+
+import org.junit.Assert;
+import org.junit.Test;
+import siebog.interaction.ACLMessage;
+import siebog.interaction.MsgField;
+import siebog.interaction.MsgPattern;
+import siebog.interaction.MsgPatternBuilder;
+import siebog.interaction.Performative;
+
+/**
+ * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
+ */
+public class MsgPatternTest {
+
+	@Test
+	public void testEquality() {
+		MsgPattern p = MsgPatternBuilder.fromFields().field("performative")
+				.equalTo(Performative.INFORM).field("content").equalTo("hello").build();
+		Assert.assertTrue(p.matched(msg(Performative.INFORM, "hello")));
+		Assert.assertFalse(p.matched(msg(Performative.REQUEST, "hello")));
+		Assert.assertFalse(p.matched(msg(Performative.INFORM, "hello world")));
+	}
+
+	@Test
+	public void testRegexIsTheExpectedValue() {
+		MsgPattern p = MsgPatternBuilder.fromFields().field("content")
+				.matches("Node name: \\p{Alnum}+").build();
+		Assert.assertTrue(p.matched(msg(Performative.INFORM, "Node name: node1")));
+		Assert.assertFalse(p.matched(msg(Performative.INFORM, "Node name: node-1")));
+		// the actual content is not used as a pattern
+		Assert.assertFalse(p.matched(msg(Performative.INFORM, ".*")));
+	}
+
+	@Test
+	public void testRegexMatchesTheWholeValue() {
+		MsgPattern p = MsgPatternBuilder.fromFields().field("content").matches("ping").build();
+		Assert.assertTrue(p.matched(msg(Performative.INFORM, "ping")));
+		Assert.assertFalse(p.matched(msg(Performative.INFORM, "ping pong")));
+	}
+
+	@Test
+	public void testNullValues() {
+		MsgPattern noReply = MsgPatternBuilder.fromFields().field("inReplyTo").equalTo(null)
+				.build();
+		ACLMessage msg = msg(Performative.INFORM, "a");
+		Assert.assertTrue(noReply.matched(msg));
+		msg.inReplyTo = "r1";
+		Assert.assertFalse(noReply.matched(msg));
+		Assert.assertFalse(MsgPatternBuilder.inReplyTo("r1").matched(msg(Performative.INFORM,
+				"a")));
+	}
+
+	@Test
+	public void testIndexedField() {
+		MsgPattern p = MsgPatternBuilder.fromFields().field("content").equalTo("a")
+				.field("performative").equalTo(Performative.INFORM).field("inReplyTo")
+				.equalTo("r1").build();
+		// inReplyTo is the most selective indexed field
+		MsgField indexed = p.getIndexed();
+		Assert.assertEquals("inReplyTo", indexed.getName());
+		Assert.assertEquals("r1", indexed.getValue());
+		// neither regular expressions nor null values can be looked up
+		Assert.assertNull(MsgPatternBuilder.fromFields().field("inReplyTo").matches("r.*")
+				.build().getIndexed());
+		Assert.assertNull(MsgPatternBuilder.fromFields().field("inReplyTo").equalTo(null)
+				.build().getIndexed());
+		Assert.assertNull(MsgPatternBuilder.fromFields().field("content").equalTo("a").build()
+				.getIndexed());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownField() {
+		MsgPatternBuilder.fromFields().field("noSuchField").equalTo("a");
+	}
+
+	private static ACLMessage msg(Performative performative, String content) {
+		ACLMessage msg = new ACLMessage(performative);
+		msg.content = content;
+		return msg;
+	}
+}
@@ -22,6 +22,7 @@ package siebog.test.framework.receivers;
 
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
+import siebog.interaction.MsgPattern;
 
 /**
  * @author <a href="mitrovic.dejan@gmail.com">Dejan Mitrovic</a>
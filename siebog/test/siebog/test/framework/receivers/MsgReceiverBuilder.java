@@ -22,6 +22,8 @@ package siebog.test.framework.receivers;
 
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import siebog.interaction.MsgPattern;
+import siebog.interaction.MsgPatternBuilder;
 import siebog.test.framework.MessageBasedTest;
 import siebog.test.framework.receivers.MsgReceiver.ReceiveType;
 